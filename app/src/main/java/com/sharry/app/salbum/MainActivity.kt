@@ -91,8 +91,9 @@ class MainActivity : AppCompatActivity() {
         }
 
         override fun loadVideoThumbnails(context: Context, mediaMeta: MediaMeta, imageView: ImageView) {
-            // Android 10 以后, 需要使用 URI 进行加载
-            Glide.with(context).asBitmap().load(mediaMeta.contentUri).into(imageView)
+            // 优先使用相册提取的视频封面, 避免重新解码整个视频
+            val thumbnailPath = mediaMeta.thumbnailPath
+            Glide.with(context).asBitmap().load(thumbnailPath ?: mediaMeta.contentUri).into(imageView)
         }
     }
 
@@ -0,0 +1,107 @@
+package com.sharry.lib.album;
+
+import android.content.ContentUris;
+import android.os.Parcel;
+import android.os.SystemClock;
+import android.provider.MediaStore;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 选中 10/100/1000 项时, 完整 {@link MediaMeta} 列表与 {@link CompactMediaMetas} 的序列化开销对比
+ * <p>
+ * Parcel 只能在设备上运行, 结果输出到 logcat.
+ *
+ * @author Sharry <a href="sharrychoochn@gmail.com">Contact me.</a>
+ * @version 1.0
+ * @since 2020-03-27 10:40
+ */
+@RunWith(AndroidJUnit4.class)
+public class CompactMediaMetasBenchmark {
+
+    private static final String TAG = CompactMediaMetasBenchmark.class.getSimpleName();
+
+    private static final int ROUNDS = 50;
+
+    /**
+     * Binder 事务缓冲区为 1MB, 由进程内所有事务共享, 单个 Intent 应远小于该值
+     */
+    private static final int COMPACT_BYTES_LIMIT = 16 * 1024;
+
+    @Test
+    public void marshal10() {
+        marshal(10);
+    }
+
+    @Test
+    public void marshal100() {
+        marshal(100);
+    }
+
+    @Test
+    public void marshal1000() {
+        marshal(1000);
+    }
+
+    private void marshal(int count) {
+        ArrayList<MediaMeta> metas = createMetas(count);
+        int fullBytes = 0;
+        int compactBytes = 0;
+        long fullNanos = 0;
+        long compactNanos = 0;
+        for (int i = 0; i < ROUNDS; i++) {
+            // 完整列表
+            Parcel parcel = Parcel.obtain();
+            long start = SystemClock.elapsedRealtimeNanos();
+            parcel.writeTypedList(metas);
+            parcel.setDataPosition(0);
+            ArrayList<MediaMeta> full = parcel.createTypedArrayList(MediaMeta.CREATOR);
+            fullNanos += SystemClock.elapsedRealtimeNanos() - start;
+            fullBytes = parcel.dataSize();
+            parcel.recycle();
+            assertEquals(count, full.size());
+            // 紧凑格式
+            parcel = Parcel.obtain();
+            start = SystemClock.elapsedRealtimeNanos();
+            new CompactMediaMetas(metas).writeToParcel(parcel, 0);
+            parcel.setDataPosition(0);
+            ArrayList<MediaMeta> compact = CompactMediaMetas.CREATOR.createFromParcel(parcel).getMetas();
+            compactNanos += SystemClock.elapsedRealtimeNanos() - start;
+            compactBytes = parcel.dataSize();
+            parcel.recycle();
+            assertEquals(metas, compact);
+        }
+        Log.i(TAG, "count = " + count
+                + ", full = " + fullBytes + " bytes / " + fullNanos / ROUNDS / 1000 + " us"
+                + ", compact = " + compactBytes + " bytes / " + compactNanos / ROUNDS / 1000 + " us");
+        assertTrue(compactBytes < fullBytes);
+        assertTrue(compactBytes < COMPACT_BYTES_LIMIT);
+    }
+
+    private static ArrayList<MediaMeta> createMetas(int count) {
+        ArrayList<MediaMeta> metas = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            boolean isPicture = i % 4 != 0;
+            MediaMeta meta = MediaMeta.create(ContentUris.withAppendedId(isPicture
+                            ? MediaStore.Images.Media.EXTERNAL_CONTENT_URI
+                            : MediaStore.Video.Media.EXTERNAL_CONTENT_URI, 100000 + i),
+                    "/storage/emulated/0/DCIM/Camera/IMG_20200327_" + (100000 + i) + ".jpg", isPicture);
+            meta.mimeType = isPicture ? "image/jpeg" : "video/mp4";
+            meta.size = 3 * 1024 * 1024;
+            meta.date = 1585276800L + i;
+            meta.dateModified = meta.date;
+            metas.add(meta);
+        }
+        return metas;
+    }
+
+}
@@ -0,0 +1,321 @@
+package com.sharry.lib.album;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Parcel;
+import android.os.Parcelable;
+import android.provider.MediaStore;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link MediaMeta} 集合的紧凑序列化格式
+ * <p>
+ * MediaStore 中的资源仅写入 volume + id, 其他资源写入 URI 字符串.
+ * 仅用于进程被杀后的数据恢复, 读取出的 {@link MediaMeta} 只保证 URI 与类型有效,
+ * 需要通过 {@link #restore(Context, List, OnRestoredListener)} 从 MediaStore 中补全其他字段.
+ *
+ * @author Sharry <a href="sharrychoochn@gmail.com">Contact me.</a>
+ * @version 1.0
+ * @since 2020-03-12 15:20
+ */
+final class CompactMediaMetas implements Parcelable {
+
+    private static final byte VOLUME_EXTERNAL_IMAGES = 0;
+    private static final byte VOLUME_EXTERNAL_VIDEO = 1;
+    private static final byte VOLUME_RAW_PICTURE = 2;
+    private static final byte VOLUME_RAW_VIDEO = 3;
+
+    /**
+     * MediaStore 查询单次携带的 id 上限, SQLite 默认最多支持 999 个参数
+     */
+    private static final int MAX_QUERY_IDS = 500;
+
+    private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+
+    /**
+     * 将集合写入 Parcel
+     */
+    static void write(@NonNull Parcel dest, @Nullable List<MediaMeta> metas) {
+        if (metas == null) {
+            dest.writeInt(-1);
+            return;
+        }
+        dest.writeInt(metas.size());
+        for (MediaMeta meta : metas) {
+            byte volume = parseVolume(meta);
+            dest.writeByte(volume);
+            if (volume == VOLUME_EXTERNAL_IMAGES || volume == VOLUME_EXTERNAL_VIDEO) {
+                dest.writeLong(ContentUris.parseId(meta.contentUri));
+            } else {
+                dest.writeString(meta.contentUri.toString());
+            }
+        }
+    }
+
+    /**
+     * 从 Parcel 中读取集合
+     */
+    @Nullable
+    static ArrayList<MediaMeta> read(@NonNull Parcel in) {
+        int size = in.readInt();
+        if (size < 0) {
+            return null;
+        }
+        ArrayList<MediaMeta> metas = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            byte volume = in.readByte();
+            switch (volume) {
+                case VOLUME_EXTERNAL_IMAGES:
+                    metas.add(MediaMeta.create(ContentUris.withAppendedId(
+                            MediaStore.Images.Media.EXTERNAL_CONTENT_URI, in.readLong()), "", true));
+                    break;
+                case VOLUME_EXTERNAL_VIDEO:
+                    metas.add(MediaMeta.create(ContentUris.withAppendedId(
+                            MediaStore.Video.Media.EXTERNAL_CONTENT_URI, in.readLong()), "", false));
+                    break;
+                default:
+                    metas.add(MediaMeta.create(Uri.parse(in.readString()), "",
+                            volume == VOLUME_RAW_PICTURE));
+                    break;
+            }
+        }
+        return metas;
+    }
+
+    /**
+     * 补全结果的回调
+     */
+    interface OnRestoredListener {
+
+        /**
+         * @param missing 在 MediaStore 中已不存在的资源, 由调用方决定是否移除
+         */
+        @MainThread
+        void onRestored(@NonNull List<MediaMeta> missing);
+
+    }
+
+    /**
+     * 从 MediaStore 中补全 {@link #read(Parcel)} 恢复出的数据
+     * <p>
+     * 图片与视频各使用一次 {@code _id IN (...)} 的批量查询, 查询在工作线程执行,
+     * 结果在主线程写回, 非 MediaStore 的资源保持不变. 查询失败时保留原数据, 不视为缺失.
+     */
+    @MainThread
+    static void restore(@NonNull Context context, @Nullable List<MediaMeta> metas,
+                        @NonNull final OnRestoredListener listener) {
+        final List<MediaMeta> images = new ArrayList<>();
+        final List<MediaMeta> videos = new ArrayList<>();
+        if (metas != null) {
+            for (MediaMeta meta : metas) {
+                byte volume = parseVolume(meta);
+                if (volume == VOLUME_EXTERNAL_IMAGES) {
+                    images.add(meta);
+                } else if (volume == VOLUME_EXTERNAL_VIDEO) {
+                    videos.add(meta);
+                }
+            }
+        }
+        if (images.isEmpty() && videos.isEmpty()) {
+            listener.onRestored(new ArrayList<MediaMeta>());
+            return;
+        }
+        // 工作线程中只访问 id, 不访问 MediaMeta
+        final long[] imageIds = parseIds(images);
+        final long[] videoIds = parseIds(videos);
+        final ContentResolver resolver = context.getApplicationContext().getContentResolver();
+        CompressService.execute(new Runnable() {
+            @Override
+            public void run() {
+                final Map<Long, Row> imageRows = query(resolver,
+                        MediaStore.Images.Media.EXTERNAL_CONTENT_URI, imageIds, true);
+                final Map<Long, Row> videoRows = query(resolver,
+                        MediaStore.Video.Media.EXTERNAL_CONTENT_URI, videoIds, false);
+                MAIN_HANDLER.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        List<MediaMeta> missing = new ArrayList<>();
+                        apply(images, imageIds, imageRows, missing);
+                        apply(videos, videoIds, videoRows, missing);
+                        listener.onRestored(missing);
+                    }
+                });
+            }
+        });
+    }
+
+    private static long[] parseIds(List<MediaMeta> metas) {
+        long[] ids = new long[metas.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = ContentUris.parseId(metas.get(i).contentUri);
+        }
+        return ids;
+    }
+
+    private static void apply(List<MediaMeta> metas, long[] ids, @Nullable Map<Long, Row> rows,
+                              List<MediaMeta> missing) {
+        // 查询失败时保留原数据
+        if (rows == null) {
+            return;
+        }
+        for (int i = 0; i < ids.length; i++) {
+            MediaMeta meta = metas.get(i);
+            Row row = rows.get(ids[i]);
+            if (row == null) {
+                missing.add(meta);
+                continue;
+            }
+            meta.path = row.path;
+            meta.mimeType = row.mimeType;
+            meta.size = row.size;
+            // 与 PickerModel 保持一致, 使用以秒为单位的原始值
+            meta.date = row.date;
+            meta.dateModified = row.dateModified;
+            if (!meta.isPicture) {
+                meta.duration = row.duration;
+            }
+        }
+    }
+
+    /**
+     * 批量查询 MediaStore
+     *
+     * @return key 为 id, 查询失败返回 null
+     */
+    @Nullable
+    @WorkerThread
+    private static Map<Long, Row> query(ContentResolver resolver, Uri uri, long[] ids, boolean isPicture) {
+        Map<Long, Row> rows = new HashMap<>(ids.length);
+        String[] projection = isPicture ? new String[]{
+                MediaStore.MediaColumns._ID,
+                MediaStore.MediaColumns.DATA,
+                MediaStore.MediaColumns.MIME_TYPE,
+                MediaStore.MediaColumns.SIZE,
+                MediaStore.MediaColumns.DATE_ADDED,
+                MediaStore.MediaColumns.DATE_MODIFIED
+        } : new String[]{
+                MediaStore.MediaColumns._ID,
+                MediaStore.MediaColumns.DATA,
+                MediaStore.MediaColumns.MIME_TYPE,
+                MediaStore.MediaColumns.SIZE,
+                MediaStore.MediaColumns.DATE_ADDED,
+                MediaStore.MediaColumns.DATE_MODIFIED,
+                MediaStore.Video.VideoColumns.DURATION
+        };
+        for (int start = 0; start < ids.length; start += MAX_QUERY_IDS) {
+            int count = Math.min(MAX_QUERY_IDS, ids.length - start);
+            StringBuilder selection = new StringBuilder(MediaStore.MediaColumns._ID).append(" IN (");
+            String[] selectionArgs = new String[count];
+            for (int i = 0; i < count; i++) {
+                selection.append(i == 0 ? "?" : ",?");
+                selectionArgs[i] = String.valueOf(ids[start + i]);
+            }
+            selection.append(')');
+            Cursor cursor = null;
+            try {
+                cursor = resolver.query(uri, projection, selection.toString(), selectionArgs, null);
+                if (cursor == null) {
+                    return null;
+                }
+                while (cursor.moveToNext()) {
+                    Row row = new Row();
+                    row.path = cursor.getString(1);
+                    row.mimeType = cursor.getString(2);
+                    row.size = cursor.getLong(3);
+                    row.date = cursor.getLong(4);
+                    row.dateModified = cursor.getLong(5);
+                    if (!isPicture) {
+                        row.duration = cursor.getLong(6);
+                    }
+                    rows.put(cursor.getLong(0), row);
+                }
+            } catch (RuntimeException e) {
+                // 权限被收回等情况, 保留原数据
+                return null;
+            } finally {
+                if (cursor != null) {
+                    cursor.close();
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * MediaStore 中的一行数据
+     */
+    private static final class Row {
+        String path;
+        String mimeType;
+        long size;
+        long date;
+        long dateModified;
+        long duration;
+    }
+
+    private static byte parseVolume(MediaMeta meta) {
+        Uri baseUri = meta.isPicture ? MediaStore.Images.Media.EXTERNAL_CONTENT_URI :
+                MediaStore.Video.Media.EXTERNAL_CONTENT_URI;
+        Uri uri = meta.contentUri;
+        if (baseUri.getScheme().equals(uri.getScheme())
+                && baseUri.getAuthority().equals(uri.getAuthority())
+                && uri.getPath() != null
+                && uri.getPath().startsWith(baseUri.getPath() + "/")) {
+            try {
+                ContentUris.parseId(uri);
+                return meta.isPicture ? VOLUME_EXTERNAL_IMAGES : VOLUME_EXTERNAL_VIDEO;
+            } catch (NumberFormatException e) {
+                // ignore, fallback to raw uri.
+            }
+        }
+        return meta.isPicture ? VOLUME_RAW_PICTURE : VOLUME_RAW_VIDEO;
+    }
+
+    public static final Creator<CompactMediaMetas> CREATOR = new Creator<CompactMediaMetas>() {
+        @Override
+        public CompactMediaMetas createFromParcel(Parcel in) {
+            return new CompactMediaMetas(read(in));
+        }
+
+        @Override
+        public CompactMediaMetas[] newArray(int size) {
+            return new CompactMediaMetas[size];
+        }
+    };
+
+    private final ArrayList<MediaMeta> mMetas;
+
+    CompactMediaMetas(@Nullable ArrayList<MediaMeta> metas) {
+        this.mMetas = metas;
+    }
+
+    @Nullable
+    ArrayList<MediaMeta> getMetas() {
+        return mMetas;
+    }
+
+    @Override
+    public void writeToParcel(Parcel dest, int flags) {
+        write(dest, mMetas);
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+}
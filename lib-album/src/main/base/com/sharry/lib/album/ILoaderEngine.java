@@ -26,6 +26,8 @@ public interface ILoaderEngine {
 
     /**
      * 加载视频缩略图
+     * <p>
+     * {@link MediaMeta#getThumbnailPath()} 不为 null 时, 优先加载该封面
      */
     void loadVideoThumbnails(@NonNull Context context, @NonNull MediaMeta mediaMeta, @NonNull ImageView imageView);
 
@@ -52,6 +52,7 @@ public class MediaMeta implements Parcelable {
         isPicture = in.readByte() != 0;
         size = in.readLong();
         date = in.readLong();
+        dateModified = in.readLong();
         duration = in.readLong();
         thumbnailPath = in.readString();
         mimeType = in.readString();
@@ -64,6 +65,7 @@ public class MediaMeta implements Parcelable {
         dest.writeByte((byte) (isPicture ? 1 : 0));
         dest.writeLong(size);
         dest.writeLong(date);
+        dest.writeLong(dateModified);
         dest.writeLong(duration);
         dest.writeString(thumbnailPath);
         dest.writeString(mimeType);
@@ -103,6 +105,11 @@ public class MediaMeta implements Parcelable {
      */
     long date = 0;
 
+    /**
+     * 文件修改时间
+     */
+    long dateModified = 0;
+
     /**
      * 时长(视频)
      * <p>
@@ -152,6 +159,7 @@ public class MediaMeta implements Parcelable {
                 "isPicture=" + isPicture + ", \n" +
                 "size=" + size + ", \n" +
                 "date=" + date + ", \n" +
+                "dateModified=" + dateModified + ", \n" +
                 "duration=" + duration + ", \n" +
                 "thumbnailPath='" + thumbnailPath + '\'' + ", \n" +
                 "mimeType='" + mimeType + '\'' + "\n" +
@@ -181,6 +189,10 @@ public class MediaMeta implements Parcelable {
         return date;
     }
 
+    public long getDateModified() {
+        return dateModified;
+    }
+
     public long getDuration() {
         return duration;
     }
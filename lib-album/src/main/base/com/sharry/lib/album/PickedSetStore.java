@@ -0,0 +1,98 @@
+package com.sharry.lib.album;
+
+import android.os.Looper;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+import androidx.lifecycle.LifecycleOwner;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 已选中集合的进程内事件总线, 由 Picker 与 Watcher 共享
+ * <p>
+ * 1. 事件在主线程同步分发, 不经过 Binder, 也无需序列化 {@link MediaMeta}
+ * 2. 观察者跟随 {@link LifecycleOwner} 的生命周期, DESTROYED 时自动移除
+ *
+ * @author Sharry <a href="sharrychoochn@gmail.com">Contact me.</a>
+ * @version 1.0
+ * @since 2020-03-11 11:05
+ */
+final class PickedSetStore {
+
+    private static final PickedSetStore INSTANCE = new PickedSetStore();
+
+    static PickedSetStore getInstance() {
+        return INSTANCE;
+    }
+
+    private final List<Observer> mObservers = new ArrayList<>();
+
+    private PickedSetStore() {
+    }
+
+    /**
+     * 注册观察者, 在 owner 销毁时自动注销
+     */
+    @MainThread
+    void observe(@NonNull LifecycleOwner owner, @NonNull final Observer observer) {
+        checkMainThread();
+        if (owner.getLifecycle().getCurrentState() == Lifecycle.State.DESTROYED) {
+            return;
+        }
+        mObservers.add(observer);
+        owner.getLifecycle().addObserver(new LifecycleEventObserver() {
+            @Override
+            public void onStateChanged(@NonNull LifecycleOwner source, @NonNull Lifecycle.Event event) {
+                if (event == Lifecycle.Event.ON_DESTROY) {
+                    source.getLifecycle().removeObserver(this);
+                    mObservers.remove(observer);
+                }
+            }
+        });
+    }
+
+    /**
+     * 分发选中集合变更的事件
+     *
+     * @param changedMeta 被选中或取消选中的资源
+     */
+    @MainThread
+    void notifyPickedSetChanged(@NonNull MediaMeta changedMeta) {
+        checkMainThread();
+        for (Observer observer : new ArrayList<>(mObservers)) {
+            observer.onPickedSetChanged(changedMeta);
+        }
+    }
+
+    /**
+     * 分发确认选中集合的事件
+     */
+    @MainThread
+    void notifyPickedSetEnsure() {
+        checkMainThread();
+        for (Observer observer : new ArrayList<>(mObservers)) {
+            observer.onPickedSetEnsure();
+        }
+    }
+
+    private static void checkMainThread() {
+        Preconditions.checkArgument(Looper.myLooper() == Looper.getMainLooper(),
+                "PickedSetStore must be accessed on main thread.");
+    }
+
+    /**
+     * 选中集合的观察者
+     */
+    interface Observer {
+
+        void onPickedSetChanged(@NonNull MediaMeta changedMeta);
+
+        void onPickedSetEnsure();
+
+    }
+
+}
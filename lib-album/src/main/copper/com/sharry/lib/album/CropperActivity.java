@@ -0,0 +1,121 @@
+package com.sharry.lib.album;
+
+import android.app.Fragment;
+import android.content.Intent;
+import android.graphics.Bitmap;
+import android.graphics.RectF;
+import android.os.Bundle;
+import android.os.ParcelFileDescriptor;
+import android.util.DisplayMetrics;
+import android.util.Log;
+import android.view.View;
+import android.widget.Toast;
+
+import androidx.annotation.Nullable;
+import androidx.appcompat.app.AppCompatActivity;
+
+import java.io.IOException;
+
+/**
+ * 图片裁剪页面
+ * <p>
+ * 仅展示降采样后的预览图并选取裁剪区域, 最终的区域解码与保存由 {@link CropperFragment} 在后台完成.
+ *
+ * @author Sharry <a href="sharrychoochn@gmail.com">Contact me.</a>
+ * @version 1.0
+ * @since 2020-03-19 11:05
+ */
+public class CropperActivity extends AppCompatActivity implements View.OnClickListener {
+
+    private static final String TAG = CropperActivity.class.getSimpleName();
+    public static final int REQUEST_CODE = 447;
+    public static final String RESULT_EXTRA_CROP_RECT = "result_extra_crop_rect";
+    private static final String EXTRA_CROPPER_CONFIG = "extra_cropper_config";
+
+    public static void launchForResult(Fragment fragment, CropperConfig config) {
+        Intent intent = new Intent(fragment.getActivity(), CropperActivity.class);
+        intent.putExtra(EXTRA_CROPPER_CONFIG, config);
+        fragment.startActivityForResult(intent, REQUEST_CODE);
+    }
+
+    private CropperConfig mConfig;
+    private CropView mCropView;
+
+    @Override
+    protected void onCreate(@Nullable Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.lib_album_activity_cropper);
+        mConfig = getIntent().getParcelableExtra(EXTRA_CROPPER_CONFIG);
+        initViews();
+        loadPreview();
+    }
+
+    @Override
+    public void onClick(View v) {
+        if (v.getId() == R.id.iv_granted) {
+            RectF cropRect = mCropView.getCropRect();
+            if (cropRect == null) {
+                return;
+            }
+            Intent intent = new Intent();
+            intent.putExtra(RESULT_EXTRA_CROP_RECT, cropRect);
+            setResult(RESULT_OK, intent);
+            finish();
+        } else if (v.getId() == R.id.iv_denied) {
+            setResult(RESULT_CANCELED);
+            finish();
+        }
+    }
+
+    private void initViews() {
+        mCropView = findViewById(R.id.crop_view);
+        mCropView.setFrame(mConfig.getAspectX(), mConfig.getAspectY(), mConfig.isCropCircle());
+        findViewById(R.id.iv_denied).setOnClickListener(this);
+        findViewById(R.id.iv_granted).setOnClickListener(this);
+    }
+
+    /**
+     * 在后台解码降采样的预览图, 长边不超过屏幕的长边
+     */
+    private void loadPreview() {
+        DisplayMetrics metrics = getResources().getDisplayMetrics();
+        final int maxSide = Math.max(metrics.widthPixels, metrics.heightPixels);
+        CompressService.execute(new Runnable() {
+            @Override
+            public void run() {
+                Bitmap preview = null;
+                try {
+                    ParcelFileDescriptor pfd = getContentResolver().openFileDescriptor(mConfig.getOriginUri(), "r");
+                    if (pfd == null) {
+                        throw new IOException("Open file descriptor failed -> " + mConfig.getOriginUri());
+                    }
+                    try {
+                        preview = CompressUtil.decodePreview(pfd.getFileDescriptor(), maxSide);
+                    } finally {
+                        pfd.close();
+                    }
+                } catch (Throwable e) {
+                    Log.e(TAG, "Load preview failed.", e);
+                }
+                final Bitmap result = preview;
+                runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (isFinishing()) {
+                            return;
+                        }
+                        if (result == null) {
+                            Toast.makeText(CropperActivity.this, R.string.lib_album_cropper_load_failed,
+                                    Toast.LENGTH_SHORT).show();
+                            setResult(RESULT_CANCELED);
+                            finish();
+                            return;
+                        }
+                        mCropView.setBitmap(result);
+                    }
+                });
+            }
+        });
+    }
+
+}
@@ -5,23 +5,19 @@ import android.app.Fragment;
 import android.app.FragmentManager;
 import android.content.Context;
 import android.content.Intent;
-import android.content.pm.PackageManager;
-import android.content.pm.ResolveInfo;
-import android.graphics.Bitmap;
-import android.net.Uri;
-import android.os.Build;
+import android.graphics.RectF;
 import android.os.Bundle;
 import android.os.ParcelFileDescriptor;
-import android.provider.MediaStore;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
-import java.io.File;
-import java.util.List;
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.io.InterruptedIOException;
 
 /**
- * 调用系统裁剪工具
+ * 图片裁剪的回调中转, 负责启动裁剪页面并在后台保存裁剪结果
  *
  * @author Sharry <a href="sharrychoochn@gmail.com">Contact me.</a>
  * @version 1.0
@@ -30,8 +26,6 @@ import java.util.List;
 public class CropperFragment extends Fragment {
 
     public static final String TAG = CropperFragment.class.getSimpleName();
-    private static final int REQUEST_CODE_CROP = 446;
-    public static final String INTENT_ACTION_START_CROP = "com.android.camera.action.CROP";
 
     /**
      * Get callback fragment from here.
@@ -60,7 +54,7 @@ public class CropperFragment extends Fragment {
         return (CropperFragment) activity.getFragmentManager().findFragmentByTag(TAG);
     }
 
-    private File mTempFile;
+    private CompressService.Task mSaveTask;
     private Context mContext;
     private CropperConfig mConfig;
     private CropperCallback mCropperCallback;
@@ -89,95 +83,68 @@ public class CropperFragment extends Fragment {
     public void cropPicture(CropperConfig config, CropperCallback callback) {
         this.mConfig = config;
         this.mCropperCallback = callback;
-        // Create temp file associated with crop function.
-        mTempFile = FileUtil.createTempJpegFile(mContext);
-        try {
-            // Get URI associated with target file.
-            Uri tempUri = FileUtil.getUriFromFile(mContext, config.getAuthority(), mTempFile);
-            // Completion intent instance.
-            Intent intent = new Intent(INTENT_ACTION_START_CROP);
-            completion(intent, config, config.getOriginUri(), tempUri);
-            // launch crop Activity
-            startActivityForResult(intent, REQUEST_CODE_CROP);
-        } catch (Throwable e) {
-            mCropperCallback.onCropFailed();
-        }
+        CropperActivity.launchForResult(this, config);
     }
 
     @Override
     public void onActivityResult(int requestCode, int resultCode, Intent data) {
         super.onActivityResult(requestCode, resultCode, data);
-        if (mCropperCallback == null) {
+        if (mCropperCallback == null || requestCode != CropperActivity.REQUEST_CODE) {
             return;
         }
-        if (resultCode == Activity.RESULT_OK && requestCode == REQUEST_CODE_CROP) {
-            try {
-                // 创建最终的目标文件, 将图片从临时文件压缩到指定的目录
-                if (VersionUtil.isQ()) {
-                    Uri uri = FileUtil.createJpegPendingItem(mContext, mConfig.getRelativePath());
-                    ParcelFileDescriptor pfd = mContext.getContentResolver().openFileDescriptor(uri, "w");
-                    CompressUtil.doCompress(mTempFile.getAbsolutePath(), pfd.getFileDescriptor(), mConfig.getDestQuality());
-                    FileUtil.publishPendingItem(mContext, uri);
-                    MediaMeta mediaMeta = MediaMeta.create(uri, FileUtil.getImagePath(mContext, uri), true);
-                    mCropperCallback.onCropComplete(mediaMeta);
-                } else {
-                    File file = FileUtil.createJpegFile(mContext, mConfig.getRelativePath());
-                    Uri uri = FileUtil.getUriFromFile(mContext, mConfig.getAuthority(), file);
-                    ParcelFileDescriptor pfd = mContext.getContentResolver().openFileDescriptor(uri, "w");
-                    CompressUtil.doCompress(mTempFile.getAbsolutePath(), pfd.getFileDescriptor(), mConfig.getDestQuality());
-                    FileUtil.notifyMediaStore(mContext, file.getAbsolutePath());
-                    MediaMeta mediaMeta = MediaMeta.create(uri, file.getAbsolutePath(), true);
-                    mCropperCallback.onCropComplete(mediaMeta);
-                }
-            } catch (Exception e) {
-                mCropperCallback.onCropFailed();
-            } finally {
-                if (mTempFile != null) {
-                    mTempFile.delete();
-                }
-            }
-        } else {
+        final RectF cropRect = data == null ? null :
+                (RectF) data.getParcelableExtra(CropperActivity.RESULT_EXTRA_CROP_RECT);
+        if (resultCode != Activity.RESULT_OK || cropRect == null) {
             mCropperCallback.onCropFailed();
+            return;
         }
+        final CropperConfig config = mConfig;
+        // 创建最终的目标文件, 在后台仅解码裁剪区域并写入指定的目录
+        mSaveTask = CompressService.savePicture(
+                mContext,
+                config.getRelativePath(),
+                config.getAuthority(),
+                new CompressService.Source() {
+                    @Override
+                    void writeTo(@NonNull FileDescriptor fd) throws IOException {
+                        ParcelFileDescriptor origin = mContext.getContentResolver()
+                                .openFileDescriptor(config.getOriginUri(), "r");
+                        if (origin == null) {
+                            throw new IOException("Open file descriptor failed -> " + config.getOriginUri());
+                        }
+                        try {
+                            CompressUtil.doCrop(origin.getFileDescriptor(), cropRect, config.getOutputX(),
+                                    config.getOutputY(), config.getDestQuality(), fd);
+                        } catch (InterruptedException e) {
+                            throw new InterruptedIOException("Crop interrupted.");
+                        } finally {
+                            origin.close();
+                        }
+                    }
+                },
+                new CompressService.Callback.Adapter() {
+                    @Override
+                    public void onComplete(@NonNull MediaMeta mediaMeta) {
+                        mSaveTask = null;
+                        mCropperCallback.onCropComplete(mediaMeta);
+                    }
+
+                    @Override
+                    public void onFailed(@NonNull Throwable e) {
+                        mSaveTask = null;
+                        mCropperCallback.onCropFailed();
+                    }
+                }
+        );
     }
 
-    private void completion(Intent intent, CropperConfig config, Uri originUri, Uri tempUri) {
-        // 可以选择图片类型, 如果是*表明所有类型的图片
-        intent.setDataAndType(originUri, "image/*");
-        // 设置可裁剪状态
-        intent.putExtra("crop", true);
-        // 裁剪时是否保留图片的比例, 这里的比例是1:1
-        intent.putExtra("scale", config.getAspectX() == config.getAspectY());
-        // X方向上的比例
-        intent.putExtra("aspectX", config.getAspectX());
-        // Y方向上的比例
-        intent.putExtra("aspectY", config.getAspectY());
-        // 裁剪区域的宽
-        intent.putExtra("outputX", config.getOutputX());
-        // 裁剪区域的宽
-        intent.putExtra("outputY", config.getOutputY());
-        // 是否将数据保留在Bitmap中返回, 返回的缩略图效果模糊
-        intent.putExtra("return-data", false);
-        // 设置输出的格式
-        intent.putExtra("outputFormat", Bitmap.CompressFormat.JPEG.toString());
-        // 裁剪后的保存路径, 这里的 URI 不需要区分
-        intent.putExtra(MediaStore.EXTRA_OUTPUT, tempUri);
-        // 不启用人脸识别
-        intent.putExtra("noFaceDetection", true);
-        // 安卓 6.0 以上版本添加读写权限请求
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-            intent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
-            intent.addFlags(Intent.FLAG_GRANT_WRITE_URI_PERMISSION);
-            // 将存储图片的 uri 读写权限授权给剪裁工具应用
-            List<ResolveInfo> resInfoList = mContext.getPackageManager()
-                    .queryIntentActivities(intent, PackageManager.MATCH_DEFAULT_ONLY);
-            for (ResolveInfo resolveInfo : resInfoList) {
-                String packageName = resolveInfo.activityInfo.packageName;
-                int modeFlags = Intent.FLAG_GRANT_WRITE_URI_PERMISSION
-                        | Intent.FLAG_GRANT_READ_URI_PERMISSION;
-                getActivity().grantUriPermission(packageName, originUri, modeFlags);
-                getActivity().grantUriPermission(packageName, tempUri, modeFlags);
-            }
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        // 页面销毁时, 取消正在执行的保存任务
+        if (mSaveTask != null) {
+            mSaveTask.cancel();
+            mSaveTask = null;
         }
     }
 
@@ -0,0 +1,229 @@
+package com.sharry.lib.album;
+
+import android.content.Context;
+import android.graphics.Rect;
+import android.graphics.drawable.Animatable;
+import android.graphics.drawable.Drawable;
+import android.widget.ImageView;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 控制 Picker 网格中 GIF 动图的播放预算
+ * <p>
+ * 1. 同一时刻最多只有 N 个 GIF 单元格处于播放状态, 按照可见比例与距离视口中心的远近挑选
+ * 2. 未被选中的单元格, 仅展示第一帧
+ * 3. 列表 Fling 时, 暂停所有动图的播放, 停止后重新分配预算
+ * 4. 拖动列表时, 按固定间隔重新分配预算, 避免每一帧都遍历单元格
+ *
+ * @author Sharry <a href="sharrychoochn@gmail.com">Contact me.</a>
+ * @version 1.0
+ * @since 2020-03-09 10:21
+ */
+final class AnimatedPreviewManager extends RecyclerView.OnScrollListener {
+
+    /**
+     * 单元格可见面积低于该比例时, 不参与播放
+     */
+    private static final float MIN_VISIBLE_FRACTION = 0.5f;
+
+    /**
+     * 拖动过程中重新分配预算的最小间隔
+     */
+    private static final long SCROLL_UPDATE_INTERVAL_MS = 100;
+
+    private final Context mContext;
+    private final int mMaxPlayingCount;
+    private final RecyclerView mRecyclerView;
+
+    /**
+     * key 为绑定了 GIF 的单元格, value 为其对应的资源
+     */
+    private final Map<ImageView, MediaMeta> mBoundCells = new HashMap<>();
+
+    /**
+     * 当前分配到播放预算的单元格
+     */
+    private final Set<ImageView> mPlayingCells = new HashSet<>();
+
+    private final Rect mTempRect = new Rect();
+    private final Rect mViewportRect = new Rect();
+    private final Runnable mDispatchUpdateRunnable = new Runnable() {
+        @Override
+        public void run() {
+            dispatchUpdate();
+        }
+    };
+
+    private final Runnable mScrollUpdateRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mIsScrollUpdatePending = false;
+            dispatchUpdate();
+        }
+    };
+
+    private boolean mIsFling = false;
+    private boolean mIsScrollUpdatePending = false;
+
+    AnimatedPreviewManager(@NonNull Context context, @NonNull RecyclerView recyclerView, int maxPlayingCount) {
+        this.mContext = context;
+        this.mRecyclerView = recyclerView;
+        this.mMaxPlayingCount = maxPlayingCount;
+        mRecyclerView.addOnScrollListener(this);
+    }
+
+    /**
+     * 单元格绑定了一个 GIF 资源
+     */
+    void onCellBound(@NonNull ImageView cell, @NonNull MediaMeta meta) {
+        mPlayingCells.remove(cell);
+        mBoundCells.put(cell, meta);
+        // 先展示第一帧, 待布局完成后再分配播放预算
+        Loader.loadPicture(mContext, meta, cell);
+        scheduleUpdate();
+    }
+
+    /**
+     * 单元格被复用为非 GIF 资源, 或者被回收
+     */
+    void onCellUnbound(@NonNull ImageView cell) {
+        if (mBoundCells.remove(cell) != null && mPlayingCells.remove(cell)) {
+            scheduleUpdate();
+        }
+    }
+
+    /**
+     * 释放资源
+     */
+    void release() {
+        mRecyclerView.removeOnScrollListener(this);
+        mRecyclerView.removeCallbacks(mDispatchUpdateRunnable);
+        cancelScrollUpdate();
+        for (ImageView cell : mPlayingCells) {
+            setAnimationRunning(cell, false);
+        }
+        mPlayingCells.clear();
+        mBoundCells.clear();
+    }
+
+    @Override
+    public void onScrollStateChanged(@NonNull RecyclerView recyclerView, int newState) {
+        boolean isFling = newState == RecyclerView.SCROLL_STATE_SETTLING;
+        if (mIsFling == isFling) {
+            return;
+        }
+        mIsFling = isFling;
+        if (mIsFling) {
+            // Fling 时暂停所有的动画
+            mRecyclerView.removeCallbacks(mDispatchUpdateRunnable);
+            cancelScrollUpdate();
+            for (ImageView cell : mPlayingCells) {
+                setAnimationRunning(cell, false);
+            }
+        } else {
+            scheduleUpdate();
+        }
+    }
+
+    @Override
+    public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+        // 单元格在视口内移动不会触发绑定, 拖动时按间隔节流刷新
+        if (mIsFling || (dx == 0 && dy == 0) || mIsScrollUpdatePending) {
+            return;
+        }
+        mIsScrollUpdatePending = true;
+        mRecyclerView.postDelayed(mScrollUpdateRunnable, SCROLL_UPDATE_INTERVAL_MS);
+    }
+
+    private void cancelScrollUpdate() {
+        mRecyclerView.removeCallbacks(mScrollUpdateRunnable);
+        mIsScrollUpdatePending = false;
+    }
+
+    private void scheduleUpdate() {
+        if (mIsFling) {
+            return;
+        }
+        // 合并同一帧内的多次绑定
+        mRecyclerView.removeCallbacks(mDispatchUpdateRunnable);
+        mRecyclerView.post(mDispatchUpdateRunnable);
+    }
+
+    /**
+     * 重新分配播放预算
+     */
+    private void dispatchUpdate() {
+        if (mIsFling || !mRecyclerView.getGlobalVisibleRect(mViewportRect)) {
+            return;
+        }
+        // 1. 筛选出可见的候选单元格
+        final int centerX = mViewportRect.centerX();
+        final int centerY = mViewportRect.centerY();
+        final Map<ImageView, Long> distances = new HashMap<>();
+        List<ImageView> candidates = new ArrayList<>();
+        for (ImageView cell : mBoundCells.keySet()) {
+            int area = cell.getWidth() * cell.getHeight();
+            if (area == 0 || !cell.getGlobalVisibleRect(mTempRect)) {
+                continue;
+            }
+            if (mTempRect.width() * mTempRect.height() < area * MIN_VISIBLE_FRACTION) {
+                continue;
+            }
+            long dx = mTempRect.centerX() - centerX;
+            long dy = mTempRect.centerY() - centerY;
+            distances.put(cell, dx * dx + dy * dy);
+            candidates.add(cell);
+        }
+        // 2. 根据距离视口中心的远近排序
+        Collections.sort(candidates, new Comparator<ImageView>() {
+            @Override
+            public int compare(ImageView o1, ImageView o2) {
+                return Long.compare(distances.get(o1), distances.get(o2));
+            }
+        });
+        Set<ImageView> winners = new HashSet<>(
+                candidates.subList(0, Math.min(mMaxPlayingCount, candidates.size()))
+        );
+        // 3. 降级失去预算的单元格, 回退到第一帧
+        for (ImageView cell : new ArrayList<>(mPlayingCells)) {
+            if (!winners.contains(cell)) {
+                mPlayingCells.remove(cell);
+                setAnimationRunning(cell, false);
+                Loader.loadPicture(mContext, mBoundCells.get(cell), cell);
+            }
+        }
+        // 4. 启动获得预算的单元格
+        for (ImageView cell : winners) {
+            if (mPlayingCells.add(cell)) {
+                Loader.loadGif(mContext, mBoundCells.get(cell), cell);
+            } else {
+                setAnimationRunning(cell, true);
+            }
+        }
+    }
+
+    private static void setAnimationRunning(ImageView cell, boolean isRunning) {
+        Drawable drawable = cell.getDrawable();
+        if (!(drawable instanceof Animatable)) {
+            return;
+        }
+        Animatable animatable = (Animatable) drawable;
+        if (isRunning && !animatable.isRunning()) {
+            animatable.start();
+        } else if (!isRunning && animatable.isRunning()) {
+            animatable.stop();
+        }
+    }
+
+}
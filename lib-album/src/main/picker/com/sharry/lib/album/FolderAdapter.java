@@ -54,7 +54,7 @@ class FolderAdapter extends RecyclerView.Adapter<FolderAdapter.ViewHolder> {
         if (firstMeta.isPicture) {
             Loader.loadPicture(context, firstMeta, holder.ivPreview);
         } else {
-            Loader.loadVideo(context, firstMeta, holder.ivPreview);
+            VideoPosterLoader.load(context, firstMeta, holder.ivPreview);
         }
         holder.tvFolderName.setText(folder.getName());
     }
@@ -2,10 +2,8 @@ package com.sharry.lib.album;
 
 import android.app.Activity;
 import android.app.Fragment;
-import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
-import android.content.IntentFilter;
 import android.content.res.ColorStateList;
 import android.graphics.Canvas;
 import android.graphics.drawable.Drawable;
@@ -17,10 +15,11 @@ import android.widget.ImageView;
 import android.widget.ProgressBar;
 import android.widget.TextView;
 
+import androidx.annotation.MainThread;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.content.ContextCompat;
-import androidx.localbroadcastmanager.content.LocalBroadcastManager;
 import androidx.recyclerview.widget.GridLayoutManager;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
@@ -33,6 +32,7 @@ import com.sharry.lib.album.toolbar.SToolbar;
 import com.sharry.lib.album.toolbar.TextViewOptions;
 
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  * 图片选择器的 Activity
@@ -50,13 +50,28 @@ public class PickerActivity extends AppCompatActivity implements PickerContract.
      * Constants.
      */
     public static final int REQUEST_CODE = 267;
+    /**
+     * The result intent no longer carries the picked data under this key, the picked data is handed off
+     * in process to avoid binder serialization and TransactionTooLargeException.
+     *
+     * @deprecated Use {@link #parsePickedResult(Context, Intent, PickerCallback)} instead of
+     * {@link Intent#getParcelableArrayListExtra(String)}, this key will be removed.
+     */
+    @Deprecated
     public static final String RESULT_EXTRA_PICKED_PICTURES = "result_intent_extra_picked_pictures";
-    private static final String EXTRA_CONFIG = "start_intent_extra_config";
+    private static final String RESULT_EXTRA_PICKED_TOKEN = "result_intent_extra_picked_token";
+    private static final String RESULT_EXTRA_PICKED_COMPACT = "result_intent_extra_picked_compact";
+    /**
+     * 结果未被取回时的有效期
+     */
+    private static final long RESULT_TOKEN_TTL_MILLIS = 60 * 1000;
+    private static final String EXTRA_CONFIG_TOKEN = "start_intent_extra_config_token";
+    private static final String STATE_CONFIG = "saved_state_config";
 
     /**
      * U can launch PickerActivity from here.
      * If U picked success, it will return picked data, U can got it like
-     * {@code ArrayList<String> paths = data.getStringArrayListExtra(PickerActivity.RESULT_EXTRA_PICKED_PICTURES)}
+     * {@code PickerActivity.parsePickedResult(context, data, callback)}
      *
      * @param from     The Activity that request launch PickerActivity.
      * @param resultTo Result data will return to this instance.
@@ -64,15 +79,61 @@ public class PickerActivity extends AppCompatActivity implements PickerContract.
      */
     public static void launchActivityForResult(Activity from, Fragment resultTo, PickerConfig config) {
         Intent intent = new Intent(from, PickerActivity.class);
-        intent.putExtra(PickerActivity.EXTRA_CONFIG, config);
+        // 仅传递 token, 避免 Binder 序列化庞大的已选中集合
+        intent.putExtra(PickerActivity.EXTRA_CONFIG_TOKEN, HandoffRegistry.deposit(config));
         resultTo.startActivityForResult(intent, REQUEST_CODE);
     }
 
+    /**
+     * Parse picked data from the result intent of PickerActivity, must be called on main thread.
+     * <p>
+     * The picked data is delivered synchronously in most cases. If the process has been killed,
+     * the MediaMeta are restored from MediaStore in background and delivered later on main thread,
+     * the items no longer exist in MediaStore are dropped.
+     *
+     * @param context  The context to query MediaStore.
+     * @param data     The result intent.
+     * @param callback Receive the picked data, {@link PickerCallback#onPickedFailed()} if not found.
+     */
+    @MainThread
+    public static void parsePickedResult(@NonNull Context context, @Nullable Intent data,
+                                         @NonNull final PickerCallback callback) {
+        if (data == null) {
+            callback.onPickedFailed();
+            return;
+        }
+        ArrayList<MediaMeta> metas = HandoffRegistry.withdraw(data.getStringExtra(RESULT_EXTRA_PICKED_TOKEN));
+        if (metas != null) {
+            callback.onPickedComplete(metas);
+            return;
+        }
+        data.setExtrasClassLoader(CompactMediaMetas.class.getClassLoader());
+        CompactMediaMetas compactMetas = data.getParcelableExtra(RESULT_EXTRA_PICKED_COMPACT);
+        final ArrayList<MediaMeta> restoredMetas = compactMetas != null ? compactMetas.getMetas() : null;
+        if (restoredMetas == null) {
+            callback.onPickedFailed();
+            return;
+        }
+        CompactMediaMetas.restore(context, restoredMetas, new CompactMediaMetas.OnRestoredListener() {
+            @Override
+            public void onRestored(@NonNull List<MediaMeta> missing) {
+                restoredMetas.removeAll(missing);
+                callback.onPickedComplete(restoredMetas);
+            }
+        });
+    }
+
     /**
      * Presenter associated with this Activity.
      */
     private PickerContract.IPresenter mPresenter;
 
+    /**
+     * Config associated with this Activity.
+     */
+    private String mConfigToken;
+    private PickerConfig mConfig;
+
     /**
      * Views
      */
@@ -98,10 +159,11 @@ public class PickerActivity extends AppCompatActivity implements PickerContract.
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.lib_album_activity_picker);
+        initConfig(savedInstanceState);
         initTitle();
         initViews();
         initPresenter();
-        registerLocalBroadcast();
+        observePickedSet();
     }
 
     protected void initTitle() {
@@ -151,41 +213,57 @@ public class PickerActivity extends AppCompatActivity implements PickerContract.
         mProgressBar = findViewById(R.id.progress_bar);
     }
 
-    protected void initPresenter() {
-        PickerConfig config = getIntent().getParcelableExtra(EXTRA_CONFIG);
-        if (config != null) {
-            mPresenter = new PickerPresenter(this, config);
+    private void initConfig(@Nullable Bundle savedInstanceState) {
+        mConfigToken = getIntent().getStringExtra(EXTRA_CONFIG_TOKEN);
+        mConfig = HandoffRegistry.peek(mConfigToken);
+        // 进程被杀后 token 失效, 从保存的状态中恢复
+        if (mConfig == null && savedInstanceState != null) {
+            mConfig = savedInstanceState.getParcelable(STATE_CONFIG);
+            if (mConfig != null) {
+                restorePickedSet(mConfig.getUserPickedSet());
+            }
         }
     }
 
-    private final BroadcastReceiver mBrPickedSetChanged = new BroadcastReceiver() {
-        @Override
-        public void onReceive(Context context, Intent intent) {
-            if (mPresenter != null) {
-                MediaMeta mediaMeta = intent.getParcelableExtra(WatcherActivity.BROADCAST_EXTRA_DATA);
-                mPresenter.handlePickedSetChanged(mediaMeta);
+    /**
+     * 在后台从 MediaStore 中补全已选中的集合, 移除已不存在的资源
+     */
+    private void restorePickedSet(@Nullable List<MediaMeta> pickedSet) {
+        CompactMediaMetas.restore(this, pickedSet, new CompactMediaMetas.OnRestoredListener() {
+            @Override
+            public void onRestored(@NonNull List<MediaMeta> missing) {
+                if (mPresenter == null || isFinishing()) {
+                    return;
+                }
+                for (MediaMeta meta : missing) {
+                    mPresenter.handlePictureUnchecked(meta);
+                }
             }
-        }
-    };
+        });
+    }
 
-    private final BroadcastReceiver mBrPickedSetEnsure = new BroadcastReceiver() {
-        @Override
-        public void onReceive(Context context, Intent intent) {
-            mPresenter.handleEnsureClicked();
+    protected void initPresenter() {
+        if (mConfig != null) {
+            mPresenter = new PickerPresenter(this, mConfig);
         }
-    };
+    }
+
+    private void observePickedSet() {
+        PickedSetStore.getInstance().observe(this, new PickedSetStore.Observer() {
+            @Override
+            public void onPickedSetChanged(@NonNull MediaMeta changedMeta) {
+                if (mPresenter != null) {
+                    mPresenter.handlePickedSetChanged(changedMeta);
+                }
+            }
 
-    private void registerLocalBroadcast() {
-        LocalBroadcastManager.getInstance(this)
-                .registerReceiver(
-                        mBrPickedSetChanged,
-                        new IntentFilter(WatcherActivity.BROADCAST_PICKED_SET_CHANGED)
-                );
-        LocalBroadcastManager.getInstance(this)
-                .registerReceiver(
-                        mBrPickedSetEnsure,
-                        new IntentFilter(WatcherActivity.BROADCAST_PICKED_SET_ENSURE)
-                );
+            @Override
+            public void onPickedSetEnsure() {
+                if (mPresenter != null) {
+                    mPresenter.handleEnsureClicked();
+                }
+            }
+        });
     }
 
     @Override
@@ -197,11 +275,24 @@ public class PickerActivity extends AppCompatActivity implements PickerContract.
         }
     }
 
+    @Override
+    protected void onSaveInstanceState(@NonNull Bundle outState) {
+        super.onSaveInstanceState(outState);
+        // PickerConfig 使用紧凑格式序列化已选中集合
+        if (mConfig != null) {
+            outState.putParcelable(STATE_CONFIG, mConfig);
+        }
+    }
+
     @Override
     protected void onDestroy() {
-        LocalBroadcastManager.getInstance(this).unregisterReceiver(mBrPickedSetChanged);
-        LocalBroadcastManager.getInstance(this).unregisterReceiver(mBrPickedSetEnsure);
-        mPresenter.handleViewDestroy();
+        if (isFinishing()) {
+            HandoffRegistry.withdraw(mConfigToken);
+        }
+        // 配置丢失时 Presenter 不会被创建
+        if (mPresenter != null) {
+            mPresenter.handleViewDestroy();
+        }
         super.onDestroy();
     }
 
@@ -327,7 +418,11 @@ public class PickerActivity extends AppCompatActivity implements PickerContract.
     @Override
     public void setResultAndFinish(@NonNull ArrayList<MediaMeta> pickedPaths) {
         Intent intent = new Intent();
-        intent.putExtra(PickerActivity.RESULT_EXTRA_PICKED_PICTURES, pickedPaths);
+        // 完整数据在进程内交接, Intent 中携带紧凑格式用于进程被杀后的恢复
+        // 调用方可能不会取回结果, 设置有效期防止常驻内存
+        intent.putExtra(RESULT_EXTRA_PICKED_TOKEN, HandoffRegistry.deposit(
+                new ArrayList<>(pickedPaths), RESULT_TOKEN_TTL_MILLIS));
+        intent.putExtra(RESULT_EXTRA_PICKED_COMPACT, new CompactMediaMetas(pickedPaths));
         setResult(Activity.RESULT_OK, intent);
         finish();
     }
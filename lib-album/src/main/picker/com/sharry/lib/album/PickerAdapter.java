@@ -36,6 +36,7 @@ class PickerAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
     private final List<MediaMeta> mPickedSet;
     private final Interaction mInteraction;
     private final Handler mMainThreadHandler = new Handler(Looper.getMainLooper());
+    private AnimatedPreviewManager mAnimatedPreviewManager;
     private final Runnable mRefreshIndicatorRunnable = new Runnable() {
         @Override
         public void run() {
@@ -59,6 +60,33 @@ class PickerAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
         this.mPickedSet = pickedSet;
     }
 
+    @Override
+    public void onAttachedToRecyclerView(@NonNull RecyclerView recyclerView) {
+        super.onAttachedToRecyclerView(recyclerView);
+        // 开启了 GIF 预览的播放预算, 则由 AnimatedPreviewManager 接管 GIF 的加载
+        if (mConfig.isPickGif() && mConfig.getGifAnimateLimit() > 0) {
+            mAnimatedPreviewManager = new AnimatedPreviewManager(mContext, recyclerView,
+                    mConfig.getGifAnimateLimit());
+        }
+    }
+
+    @Override
+    public void onDetachedFromRecyclerView(@NonNull RecyclerView recyclerView) {
+        super.onDetachedFromRecyclerView(recyclerView);
+        if (mAnimatedPreviewManager != null) {
+            mAnimatedPreviewManager.release();
+            mAnimatedPreviewManager = null;
+        }
+    }
+
+    @Override
+    public void onViewRecycled(@NonNull RecyclerView.ViewHolder holder) {
+        super.onViewRecycled(holder);
+        if (mAnimatedPreviewManager != null && holder instanceof PictureViewHolder) {
+            mAnimatedPreviewManager.onCellUnbound(((PictureViewHolder) holder).ivPicture);
+        }
+    }
+
     @Override
     public int getItemViewType(int position) {
         if (mConfig.isCameraSupport() && position == 0) {
@@ -134,8 +162,16 @@ class PickerAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
     private void bindPictureItem(final PictureViewHolder holder, final MediaMeta meta) {
         holder.ivPicture.setBackgroundColor(mConfig.getPickerItemBackgroundColor());
         holder.ivPicture.setScaleType(ImageView.ScaleType.CENTER_CROP);
-        holder.ivGifTag.setVisibility(Constants.MIME_TYPE_GIF.equals(meta.mimeType) ? View.VISIBLE : View.GONE);
-        Loader.loadPicture(mContext, meta, holder.ivPicture);
+        boolean isGif = Constants.MIME_TYPE_GIF.equals(meta.mimeType);
+        holder.ivGifTag.setVisibility(isGif ? View.VISIBLE : View.GONE);
+        if (mAnimatedPreviewManager == null) {
+            Loader.loadPicture(mContext, meta, holder.ivPicture);
+        } else if (isGif) {
+            mAnimatedPreviewManager.onCellBound(holder.ivPicture, meta);
+        } else {
+            mAnimatedPreviewManager.onCellUnbound(holder.ivPicture);
+            Loader.loadPicture(mContext, meta, holder.ivPicture);
+        }
         // 判断当前 uri 是否被选中了
         final int index = mPickedSet.indexOf(meta);
         // 设置点击监听
@@ -151,7 +187,7 @@ class PickerAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
         holder.ivPicture.setBackgroundColor(mConfig.getPickerItemBackgroundColor());
         holder.ivPicture.setScaleType(ImageView.ScaleType.CENTER_CROP);
         // 加载视频第一帧
-        Loader.loadVideo(mContext, meta, holder.ivPicture);
+        VideoPosterLoader.load(mContext, meta, holder.ivPicture);
         // 判断当前 uri 是否被选中了
         final int index = mPickedSet.indexOf(meta);
         // 设置点击监听
@@ -0,0 +1,22 @@
+package com.sharry.lib.album;
+
+import androidx.annotation.NonNull;
+
+/**
+ * 开启了压缩的图片选择器回调, 可以获取每一张图片的压缩结果
+ *
+ * @author Sharry <a href="sharrychoochn@gmail.com">Contact me.</a>
+ * @version 1.0
+ * @since 2020-03-16 16:40
+ */
+public interface PickerCompressCallback extends PickerCallback {
+
+    /**
+     * 单张图片压缩完成, 在全部完成之前按完成的先后顺序回调
+     *
+     * @param origin     用户选中的原始资源
+     * @param compressed 压缩后的资源, 无需压缩或压缩失败时为原始资源
+     */
+    void onPictureCompressed(@NonNull MediaMeta origin, @NonNull MediaMeta compressed);
+
+}
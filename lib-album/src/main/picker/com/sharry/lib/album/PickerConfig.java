@@ -24,7 +24,7 @@ public class PickerConfig implements Parcelable {
     static final int COLOR_DEFAULT = Color.parseColor("#ff64b6f6");
 
     protected PickerConfig(Parcel in) {
-        userPickedSet = in.createTypedArrayList(MediaMeta.CREATOR);
+        userPickedSet = CompactMediaMetas.read(in);
         threshold = in.readInt();
         spanCount = in.readInt();
         toolbarBkgColor = in.readInt();
@@ -40,13 +40,16 @@ public class PickerConfig implements Parcelable {
         isPickPicture = in.readByte() != 0;
         isPickVideo = in.readByte() != 0;
         isPickGif = in.readByte() != 0;
+        gifAnimateLimit = in.readInt();
+        compressQuality = in.readInt();
+        compressMaxSize = in.readInt();
         takerConfig = in.readParcelable(TakerConfig.class.getClassLoader());
         cropperConfig = in.readParcelable(CropperConfig.class.getClassLoader());
     }
 
     @Override
     public void writeToParcel(Parcel dest, int flags) {
-        dest.writeTypedList(userPickedSet);
+        CompactMediaMetas.write(dest, userPickedSet);
         dest.writeInt(threshold);
         dest.writeInt(spanCount);
         dest.writeInt(toolbarBkgColor);
@@ -62,6 +65,9 @@ public class PickerConfig implements Parcelable {
         dest.writeByte((byte) (isPickPicture ? 1 : 0));
         dest.writeByte((byte) (isPickVideo ? 1 : 0));
         dest.writeByte((byte) (isPickGif ? 1 : 0));
+        dest.writeInt(gifAnimateLimit);
+        dest.writeInt(compressQuality);
+        dest.writeInt(compressMaxSize);
         dest.writeParcelable(takerConfig, flags);
         dest.writeParcelable(cropperConfig, flags);
     }
@@ -131,6 +137,21 @@ public class PickerConfig implements Parcelable {
     private boolean isPickVideo = false;
     private boolean isPickGif = false;
 
+    /**
+     * 网格中同时播放的 GIF 数量上限, 0 表示仅展示第一帧
+     */
+    private int gifAnimateLimit = 0;
+
+    /**
+     * 选中图片的压缩质量, {@link #INVALIDATE_VALUE} 表示不压缩
+     */
+    private int compressQuality = INVALIDATE_VALUE;
+
+    /**
+     * 压缩后图片大小的上限, 单位 KB, {@link #INVALIDATE_VALUE} 表示不限制
+     */
+    private int compressMaxSize = INVALIDATE_VALUE;
+
     /**
      * 其他功能的 Config
      */
@@ -201,6 +222,18 @@ public class PickerConfig implements Parcelable {
         return isPickGif;
     }
 
+    public int getGifAnimateLimit() {
+        return gifAnimateLimit;
+    }
+
+    public int getCompressQuality() {
+        return compressQuality;
+    }
+
+    public int getCompressMaxSize() {
+        return compressMaxSize;
+    }
+
     public boolean isPickPicture() {
         return isPickPicture;
     }
@@ -229,6 +262,13 @@ public class PickerConfig implements Parcelable {
         return cropperConfig != null;
     }
 
+    /**
+     * Used in package.
+     */
+    boolean isCompressSupport() {
+        return compressQuality != INVALIDATE_VALUE || compressMaxSize != INVALIDATE_VALUE;
+    }
+
     public Builder rebuild() {
         return new Builder(this);
     }
@@ -386,6 +426,48 @@ public class PickerConfig implements Parcelable {
             return this;
         }
 
+        /**
+         * 设置网格中同时播放的 GIF 数量上限
+         * <p>
+         * 优先播放距离视口中心较近的 GIF, 其余仅展示第一帧, 列表 Fling 时全部暂停
+         *
+         * @param limit 同时播放的上限, 0 表示不播放
+         */
+        public Builder setGifAnimateLimit(int limit) {
+            Preconditions.checkArgument(limit >= 0, "GIF animate limit must be non-negative.");
+            mConfig.gifAnimateLimit = limit;
+            return this;
+        }
+
+        /**
+         * 设置选中图片的压缩质量
+         * <p>
+         * 设置后回调的是压缩后的副本, 位于应用缓存目录, 在下一次压缩开始时删除, 需要保留时请自行拷贝;
+         * 宿主 Activity 销毁时取消压缩, 不再回调;
+         * 使用 {@link PickerCompressCallback} 可以获取每一张图片的压缩结果
+         *
+         * @param quality 压缩质量 [1, 100]
+         */
+        public Builder setCompressQuality(int quality) {
+            Preconditions.checkArgument(quality > 0 && quality <= 100,
+                    "Compress quality must in range [1, 100].");
+            mConfig.compressQuality = quality;
+            return this;
+        }
+
+        /**
+         * 设置压缩后图片大小的上限
+         * <p>
+         * 在 {@link #setCompressQuality(int)} 之下查找满足上限的最高质量, 最低质量仍超出上限时会缩小尺寸
+         *
+         * @param maxSizeKB 大小上限, 单位 KB
+         */
+        public Builder setCompressMaxSize(int maxSizeKB) {
+            Preconditions.checkArgument(maxSizeKB > 0, "Compress max size must be positive.");
+            mConfig.compressMaxSize = maxSizeKB;
+            return this;
+        }
+
         /**
          * 裁剪项的配置
          *
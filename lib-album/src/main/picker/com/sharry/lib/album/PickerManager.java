@@ -111,7 +111,7 @@ public class PickerManager {
                     .build();
         }
         // 2. 获取回调的 Fragment
-        CallbackFragment callbackFragment = CallbackFragment.getInstance(mActivity);
+        final CallbackFragment callbackFragment = CallbackFragment.getInstance(mActivity);
         if (callbackFragment == null) {
             pickerCallback.onPickedFailed();
             return;
@@ -119,16 +119,63 @@ public class PickerManager {
         callbackFragment.setCallback(new CallbackFragment.Callback() {
             @Override
             public void onActivityResult(int requestCode, int resultCode, Intent data) {
-                ArrayList<MediaMeta> metas;
-                if (resultCode == RESULT_OK && requestCode == PickerActivity.REQUEST_CODE && null != data
-                        && (metas = data.getParcelableArrayListExtra(PickerActivity.RESULT_EXTRA_PICKED_PICTURES)) != null) {
-                    pickerCallback.onPickedComplete(metas);
-                } else {
+                if (resultCode != RESULT_OK || requestCode != PickerActivity.REQUEST_CODE || null == data) {
                     pickerCallback.onPickedFailed();
+                    return;
                 }
+                PickerActivity.parsePickedResult(mActivity, data, new PickerCallback() {
+                    @Override
+                    public void onPickedComplete(@NonNull ArrayList<MediaMeta> userPickedSet) {
+                        if (mConfig.isCompressSupport()) {
+                            performCompress(callbackFragment, userPickedSet, pickerCallback);
+                        } else {
+                            pickerCallback.onPickedComplete(userPickedSet);
+                        }
+                    }
+
+                    @Override
+                    public void onPickedFailed() {
+                        pickerCallback.onPickedFailed();
+                    }
+                });
             }
         });
         PickerActivity.launchActivityForResult(mActivity, callbackFragment, mConfig);
     }
 
+    /**
+     * 并行压缩选中的图片, 宿主 Activity 销毁时取消
+     */
+    private void performCompress(@NonNull final CallbackFragment callbackFragment,
+                                 @NonNull ArrayList<MediaMeta> metas, @NonNull final PickerCallback pickerCallback) {
+        // 从 MediaStore 恢复数据期间宿主已销毁
+        if (ActivityStateUtil.isIllegalState(mActivity)) {
+            return;
+        }
+        // 仅设置了大小上限时, 从最高质量开始查找
+        int quality = mConfig.getCompressQuality() == PickerConfig.INVALIDATE_VALUE ? 100 : mConfig.getCompressQuality();
+        long maxBytes = mConfig.getCompressMaxSize() == PickerConfig.INVALIDATE_VALUE ? 0 : mConfig.getCompressMaxSize() * 1024L;
+        final BatchCompressor.Batch batch = BatchCompressor.compress(mActivity, metas, quality, maxBytes,
+                new BatchCompressor.Callback() {
+                    @Override
+                    public void onItemCompressed(int index, @NonNull MediaMeta origin, @NonNull MediaMeta compressed) {
+                        if (pickerCallback instanceof PickerCompressCallback) {
+                            ((PickerCompressCallback) pickerCallback).onPictureCompressed(origin, compressed);
+                        }
+                    }
+
+                    @Override
+                    public void onCompleted(@NonNull ArrayList<MediaMeta> results) {
+                        callbackFragment.setOnDestroyAction(null);
+                        pickerCallback.onPickedComplete(results);
+                    }
+                });
+        callbackFragment.setOnDestroyAction(new Runnable() {
+            @Override
+            public void run() {
+                batch.cancel();
+            }
+        });
+    }
+
 }
@@ -403,10 +403,15 @@ class PickerModel implements PickerContract.IModel {
                     );
                     meta.duration = cursor.getInt(cursor.getColumnIndexOrThrow(MediaStore.Video.Media.DURATION));
                     meta.date = cursor.getLong(cursor.getColumnIndexOrThrow(MediaStore.Video.Media.DATE_ADDED));
+                    meta.dateModified = cursor.getLong(cursor.getColumnIndexOrThrow(MediaStore.Video.Media.DATE_MODIFIED));
                     meta.size = cursor.getLong(cursor.getColumnIndexOrThrow(MediaStore.Video.Media.SIZE));
                     meta.mimeType = cursor.getString(cursor.getColumnIndex(MediaStore.Video.Media.MIME_TYPE));
                     // 获取缩略图
                     meta.thumbnailPath = fetchVideoThumbNail(id, path, meta.date);
+                    if (meta.thumbnailPath == null) {
+                        // Android Q 之后缩略图表通常为空, 尝试读取封面的磁盘缓存
+                        meta.thumbnailPath = VideoPosterLoader.getCachedPoster(context, meta);
+                    }
                     // 添加到 <所有> 目录下
                     folderAll.addMeta(meta);
                     // 获取资源所在文件夹
@@ -447,6 +452,7 @@ class PickerModel implements PickerContract.IModel {
                     MediaStore.Video.Media.DATA,
                     MediaStore.Video.Media.DURATION,
                     MediaStore.Video.Media.DATE_ADDED,
+                    MediaStore.Video.Media.DATE_MODIFIED,
                     MediaStore.Video.Media.SIZE,
                     MediaStore.Video.Media.MIME_TYPE
             };
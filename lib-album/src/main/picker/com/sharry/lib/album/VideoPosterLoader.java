@@ -0,0 +1,329 @@
+package com.sharry.lib.album;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.media.MediaMetadataRetriever;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.Size;
+import android.widget.ImageView;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 视频封面的提取与磁盘缓存
+ * <p>
+ * Android Q 之后系统的缩略图表通常为空, {@link MediaMeta#thumbnailPath} 获取不到,
+ * 此时在绑定单元格时懒加载封面:
+ * 1. Q 以上使用 ContentResolver.loadThumbnail, 否则使用 MediaMetadataRetriever 提取最近的关键帧
+ * 2. 提取结果以 id + date_modified 为 key 写入大小受限的磁盘缓存, 提取失败时写入空的标记文件, 避免反复提取
+ * 3. 提取完成后回填 {@link MediaMeta#thumbnailPath}, 再交由 {@link Loader} 加载
+ * 4. 仅单元格当前展示的封面不会被淘汰, 其余封面被淘汰后, 再次绑定时重新提取
+ *
+ * @author Sharry <a href="sharrychoochn@gmail.com">Contact me.</a>
+ * @version 1.0
+ * @since 2020-03-10 14:36
+ */
+final class VideoPosterLoader {
+
+    private static final String TAG = VideoPosterLoader.class.getSimpleName();
+    private static final String CACHE_DIRECTORY = "lib_album_video_posters";
+    private static final String POSTER_SUFFIX = ".jpg";
+    private static final String FAILED_SUFFIX = ".failed";
+    private static final int POSTER_SIZE = 320;
+    private static final int POSTER_QUALITY = 80;
+    private static final long MAX_CACHE_BYTES = 20 * 1024 * 1024;
+    private static final ThreadPoolExecutor EXTRACT_EXECUTOR;
+
+    static {
+        EXTRACT_EXECUTOR = new ThreadPoolExecutor(
+                // 视频解码器资源有限, 2 个线程并发即可
+                2, 2,
+                60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(@NonNull Runnable r) {
+                        Thread thread = new Thread(r, VideoPosterLoader.class.getSimpleName());
+                        thread.setDaemon(false);
+                        return thread;
+                    }
+                }
+        );
+        // 允许核心线程销毁, 防止占用过多系统资源
+        EXTRACT_EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
+    private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+
+    /**
+     * 单元格当前绑定的资源 key, 仅在主线程访问
+     */
+    private static final Map<ImageView, String> BOUND_KEYS = new WeakHashMap<>();
+
+    /**
+     * 正在提取中的资源 key
+     */
+    private static final Set<String> IN_FLIGHT_KEYS = new HashSet<>();
+
+    /**
+     * 提取失败的资源 key, 仅在主线程访问
+     */
+    private static final Set<String> FAILED_KEYS = new HashSet<>();
+
+    /**
+     * 单元格当前展示的封面文件名, 淘汰时跳过, 需要持有类锁访问
+     * <p>
+     * 单元格被回收后自动解除, 数量不会超过存活的单元格数量
+     */
+    private static final Map<ImageView, String> DISPLAYED_POSTERS = new WeakHashMap<>();
+
+    private VideoPosterLoader() {
+    }
+
+    /**
+     * 加载视频封面, 需要在主线程调用
+     */
+    static void load(@NonNull final Context context, @NonNull final MediaMeta meta,
+                     @NonNull ImageView imageView) {
+        // 缓存中的封面可能已被清理, 需要重新提取
+        if (meta.thumbnailPath != null && !isEvictedPoster(context, meta.thumbnailPath)) {
+            BOUND_KEYS.remove(imageView);
+            display(context, meta, imageView);
+            return;
+        }
+        meta.thumbnailPath = null;
+        final String key = buildKey(meta);
+        BOUND_KEYS.put(imageView, key);
+        synchronized (VideoPosterLoader.class) {
+            DISPLAYED_POSTERS.remove(imageView);
+        }
+        // 清除复用单元格残留的画面
+        imageView.setImageDrawable(null);
+        if (FAILED_KEYS.contains(key) || !IN_FLIGHT_KEYS.add(key)) {
+            return;
+        }
+        final Context appContext = context.getApplicationContext();
+        EXTRACT_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                final String posterPath = obtainPoster(appContext, meta);
+                MAIN_HANDLER.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        IN_FLIGHT_KEYS.remove(key);
+                        if (posterPath == null) {
+                            FAILED_KEYS.add(key);
+                        }
+                        meta.thumbnailPath = posterPath;
+                        // 仅加载仍然绑定该资源的单元格, 已被复用的直接跳过
+                        Iterator<Map.Entry<ImageView, String>> iterator = BOUND_KEYS.entrySet().iterator();
+                        while (iterator.hasNext()) {
+                            Map.Entry<ImageView, String> entry = iterator.next();
+                            if (key.equals(entry.getValue())) {
+                                iterator.remove();
+                                display(context, meta, entry.getKey());
+                            }
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * 获取已缓存的视频封面
+     *
+     * @return 封面的路径, 未缓存返回 null
+     */
+    @Nullable
+    static String getCachedPoster(@NonNull Context context, @NonNull MediaMeta meta) {
+        File poster = new File(getCacheDirectory(context), buildKey(meta) + POSTER_SUFFIX);
+        return poster.exists() ? poster.getAbsolutePath() : null;
+    }
+
+    /**
+     * 获取视频封面, 未命中缓存则进行提取, 需要在工作线程调用
+     */
+    @Nullable
+    private static String obtainPoster(Context context, MediaMeta meta) {
+        File directory = getCacheDirectory(context);
+        String key = buildKey(meta);
+        File poster = new File(directory, key + POSTER_SUFFIX);
+        if (poster.exists()) {
+            // 更新访问时间, 用于 LRU 淘汰
+            poster.setLastModified(System.currentTimeMillis());
+            return poster.getAbsolutePath();
+        }
+        // 之前提取失败过, key 中包含 date_modified, 视频变更后会重新提取
+        File failedMarker = new File(directory, key + FAILED_SUFFIX);
+        if (failedMarker.exists()) {
+            return null;
+        }
+        Bitmap bitmap = null;
+        try {
+            bitmap = VersionUtil.isQ() ? loadThumbnail(context, meta) : extractKeyFrame(context, meta);
+            if (bitmap == null) {
+                markFailed(failedMarker);
+                return null;
+            }
+            File temp = new File(directory, poster.getName() + ".tmp");
+            OutputStream os = new FileOutputStream(temp);
+            try {
+                bitmap.compress(Bitmap.CompressFormat.JPEG, POSTER_QUALITY, os);
+            } finally {
+                os.close();
+            }
+            if (!temp.renameTo(poster)) {
+                temp.delete();
+                return null;
+            }
+            trimToSize(directory);
+            return poster.getAbsolutePath();
+        } catch (Throwable e) {
+            Log.w(TAG, "Extract video poster failed -> " + meta.contentUri, e);
+            markFailed(failedMarker);
+            return null;
+        } finally {
+            if (bitmap != null) {
+                bitmap.recycle();
+            }
+        }
+    }
+
+    @TargetApi(29)
+    private static Bitmap loadThumbnail(Context context, MediaMeta meta) throws Exception {
+        return context.getContentResolver().loadThumbnail(meta.contentUri,
+                new Size(POSTER_SIZE, POSTER_SIZE), null);
+    }
+
+    private static Bitmap extractKeyFrame(Context context, MediaMeta meta) {
+        MediaMetadataRetriever retriever = new MediaMetadataRetriever();
+        try {
+            retriever.setDataSource(context, meta.contentUri);
+            // 提取离开头最近的关键帧, 避免解码非关键帧的开销
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O_MR1) {
+                return retriever.getScaledFrameAtTime(0, MediaMetadataRetriever.OPTION_CLOSEST_SYNC,
+                        POSTER_SIZE, POSTER_SIZE);
+            }
+            Bitmap frame = retriever.getFrameAtTime(0, MediaMetadataRetriever.OPTION_CLOSEST_SYNC);
+            if (frame == null) {
+                return null;
+            }
+            float scale = POSTER_SIZE / (float) Math.max(frame.getWidth(), frame.getHeight());
+            if (scale >= 1f) {
+                return frame;
+            }
+            Bitmap scaled = Bitmap.createScaledBitmap(frame, Math.round(frame.getWidth() * scale),
+                    Math.round(frame.getHeight() * scale), true);
+            if (scaled != frame) {
+                frame.recycle();
+            }
+            return scaled;
+        } finally {
+            retriever.release();
+        }
+    }
+
+    /**
+     * 加载封面, 并记录单元格当前展示的缓存封面
+     */
+    private static void display(Context context, MediaMeta meta, ImageView imageView) {
+        synchronized (VideoPosterLoader.class) {
+            File poster = meta.thumbnailPath != null ? new File(meta.thumbnailPath) : null;
+            if (poster != null && getCacheDirectory(context).equals(poster.getParentFile())) {
+                DISPLAYED_POSTERS.put(imageView, poster.getName());
+            } else {
+                DISPLAYED_POSTERS.remove(imageView);
+            }
+        }
+        Loader.loadVideo(context, meta, imageView);
+    }
+
+    /**
+     * 写入提取失败的标记
+     */
+    private static void markFailed(File failedMarker) {
+        try {
+            failedMarker.createNewFile();
+        } catch (Throwable e) {
+            // ignore.
+        }
+    }
+
+    /**
+     * @return {@code true} 为本缓存目录中已被删除的封面
+     */
+    private static boolean isEvictedPoster(Context context, String path) {
+        File poster = new File(path);
+        return getCacheDirectory(context).equals(poster.getParentFile()) && !poster.exists();
+    }
+
+    /**
+     * 缓存超出上限时, 淘汰最久未访问且没有被单元格展示的封面
+     */
+    private static synchronized void trimToSize(File directory) {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        long totalBytes = 0;
+        for (File file : files) {
+            totalBytes += file.length();
+        }
+        if (totalBytes <= MAX_CACHE_BYTES) {
+            return;
+        }
+        Set<String> displayedPosters = new HashSet<>(DISPLAYED_POSTERS.values());
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File o1, File o2) {
+                return Long.compare(o1.lastModified(), o2.lastModified());
+            }
+        });
+        for (File file : files) {
+            if (totalBytes <= MAX_CACHE_BYTES) {
+                break;
+            }
+            if (displayedPosters.contains(file.getName())) {
+                continue;
+            }
+            long length = file.length();
+            if (file.delete()) {
+                totalBytes -= length;
+            }
+        }
+    }
+
+    private static File getCacheDirectory(Context context) {
+        File directory = new File(context.getCacheDir(), CACHE_DIRECTORY);
+        if (!directory.exists()) {
+            directory.mkdirs();
+        }
+        return directory;
+    }
+
+    private static String buildKey(MediaMeta meta) {
+        return meta.contentUri.getLastPathSegment() + "_" + meta.dateModified;
+    }
+
+}
@@ -5,6 +5,7 @@ import android.net.Uri;
 
 import androidx.annotation.IntDef;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.annotation.StringRes;
 
 import com.sharry.lib.camera.AspectRatio;
@@ -46,7 +47,19 @@ public interface ITakerContract {
         int STATUS_VIDEO_PLAY = 3;
         int STATUS_PICKED = 4;
 
-        Bitmap getCameraBitmap();
+        void takePicture(@NonNull SCameraView.PictureCallback callback);
+
+        /**
+         * 截取经过 Renderer 绘制的预览画面, 会停止预览
+         */
+        @Nullable
+        Bitmap getRenderedPicture();
+
+        void setPictureQuality(int quality);
+
+        void clearPictureCache();
+
+        void releasePicture(@NonNull Bitmap picture);
 
         @IntDef(value = {
                 STATUS_CAMERA_PREVIEW,
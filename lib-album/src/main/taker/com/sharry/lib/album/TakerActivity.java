@@ -6,6 +6,7 @@ import android.graphics.Bitmap;
 import android.media.MediaPlayer;
 import android.net.Uri;
 import android.os.Bundle;
+import android.util.DisplayMetrics;
 import android.view.View;
 import android.widget.ImageView;
 import android.widget.Toast;
@@ -184,10 +185,39 @@ public class TakerActivity extends AppCompatActivity implements
     }
 
     @Override
-    public Bitmap getCameraBitmap() {
+    public void takePicture(@NonNull SCameraView.PictureCallback callback) {
+        // 照片仅用于预览展示, 按预览控件的尺寸解码
+        int width = mIvPicturePreview.getWidth();
+        int height = mIvPicturePreview.getHeight();
+        if (width <= 0 || height <= 0) {
+            DisplayMetrics metrics = getResources().getDisplayMetrics();
+            width = metrics.widthPixels;
+            height = metrics.heightPixels;
+        }
+        mCameraView.takePicture(width, height, callback);
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public Bitmap getRenderedPicture() {
         return mCameraView.takePicture();
     }
 
+    @Override
+    public void setPictureQuality(int quality) {
+        mCameraView.setPictureQuality(quality);
+    }
+
+    @Override
+    public void clearPictureCache() {
+        mCameraView.clearPictureCache();
+    }
+
+    @Override
+    public void releasePicture(@NonNull Bitmap picture) {
+        mCameraView.releasePicture(picture);
+    }
+
     @Override
     public void setStatus(int status) {
         mStatus = status;
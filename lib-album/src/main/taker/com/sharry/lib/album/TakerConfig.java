@@ -347,6 +347,9 @@ public class TakerConfig implements Parcelable {
 
         /**
          * 设置用户的自定义 Renderer
+         * <p>
+         * 为了保留 Renderer 绘制的效果, 拍照时截取预览画面保存, 分辨率与预览视图一致;
+         * 未设置时直接保存相机输出的全尺寸 JPEG
          */
         public Builder setRenderer(@NonNull Class<? extends IPreviewer.Renderer> rendererClass) {
             try {
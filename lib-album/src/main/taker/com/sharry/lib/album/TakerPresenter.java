@@ -4,7 +4,6 @@ import android.annotation.SuppressLint;
 import android.content.Context;
 import android.graphics.Bitmap;
 import android.net.Uri;
-import android.os.ParcelFileDescriptor;
 import android.text.TextUtils;
 import android.util.Log;
 
@@ -19,6 +18,9 @@ import com.sharry.lib.media.recorder.Options;
 import com.sharry.lib.media.recorder.SMediaRecorder;
 
 import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
 
 import static com.sharry.lib.album.TakerConfig.ASPECT_16_9;
 import static com.sharry.lib.album.TakerConfig.ASPECT_1_1;
@@ -39,16 +41,24 @@ class TakerPresenter implements ITakerContract.IPresenter {
     private final TakerConfig mConfig;
     private final SMediaRecorder mRecorder;
     private final Options.Video mRecordOptions;
+    /**
+     * 使用自定义 Renderer 时, 保存绘制后的预览画面, 而非相机输出的 JPEG
+     */
+    private final boolean mIsRenderedPicture;
     private Bitmap mFetchedBitmap;
+    private byte[] mFetchedJpeg;
+    private boolean mIsTakingPicture;
     private long mRecordDuration;
     private int mCountTryAgain = 0;
     private Uri mVideoUri;
     private File mVideoFile;
+    private CompressService.Task mSaveTask;
 
     TakerPresenter(TakerActivity view, TakerConfig config) {
         this.mContext = view;
         this.mView = view;
         this.mConfig = config;
+        this.mIsRenderedPicture = !TextUtils.isEmpty(config.getRendererClassName());
         this.mRecorder = SMediaRecorder.with(view);
         this.mRecorder.addRecordCallback(new IRecorderCallback.Adapter() {
 
@@ -93,15 +103,53 @@ class TakerPresenter implements ITakerContract.IPresenter {
 
     @Override
     public void handleTakePicture() {
-        if (mConfig.isJustVideoRecord()) {
+        if (mConfig.isJustVideoRecord() || mIsTakingPicture) {
+            return;
+        }
+        if (mIsRenderedPicture) {
+            takeRenderedPicture();
             return;
         }
-        Bitmap bitmap = mView.getCameraBitmap();
+        mIsTakingPicture = true;
+        mView.takePicture(new SCameraView.JpegPictureCallback() {
+            @Override
+            public void onJpegTaken(@NonNull byte[] jpeg) {
+                mFetchedJpeg = jpeg;
+            }
+
+            @Override
+            public void onPictureTaken(@NonNull Bitmap picture) {
+                mIsTakingPicture = false;
+                // 拍摄期间已离开预览状态, 直接归还
+                if (mView.getStatus() != ITakerContract.IView.STATUS_CAMERA_PREVIEW) {
+                    mView.releasePicture(picture);
+                    mFetchedJpeg = null;
+                    return;
+                }
+                // 保存 bitmap
+                mFetchedBitmap = picture;
+                mView.setStatus(ITakerContract.IView.STATUS_PICTURE_PREVIEW);
+                mView.setPreviewSource(mFetchedBitmap);
+            }
+
+            @Override
+            public void onPictureFailed(@NonNull Throwable e) {
+                mIsTakingPicture = false;
+                Log.e(TAG, "Take picture failed.", e);
+                mView.toast(R.string.lib_album_taker_take_picture_failed);
+            }
+        });
+    }
+
+    /**
+     * 截取自定义 Renderer 绘制后的预览画面
+     */
+    private void takeRenderedPicture() {
+        Bitmap bitmap = mView.getRenderedPicture();
         if (bitmap == null) {
             mView.toast(R.string.lib_album_taker_take_picture_failed);
             return;
         }
-        // 保存 bitmap
         mFetchedBitmap = bitmap;
         mView.setStatus(ITakerContract.IView.STATUS_PICTURE_PREVIEW);
         mView.setPreviewSource(mFetchedBitmap);
@@ -136,6 +184,7 @@ class TakerPresenter implements ITakerContract.IPresenter {
 
     @Override
     public void handleDenied() {
+        cancelSaveTask();
         // 重置为预览状态
         mView.setStatus(ITakerContract.IView.STATUS_CAMERA_PREVIEW);
         recycle();
@@ -144,6 +193,7 @@ class TakerPresenter implements ITakerContract.IPresenter {
     @Override
     public void handleViewDestroy() {
         mRecorder.cancel();
+        cancelSaveTask();
         // 若非选中状态, 则重置数据
         if (mView.getStatus() != ITakerContract.IView.STATUS_PICKED) {
             recycle();
@@ -172,6 +222,8 @@ class TakerPresenter implements ITakerContract.IPresenter {
         mView.setMaxRecordDuration(mConfig.getMaximumDuration());
         mView.setSupportVideoRecord(mConfig.isSupportVideoRecord());
         mView.setProgressColor(mConfig.getRecordProgressColor());
+        // 由相机直接输出目标质量的 JPEG
+        mView.setPictureQuality(mConfig.getQuality());
         // 设置 View 为预览状态
         mView.setStatus(ITakerContract.IView.STATUS_CAMERA_PREVIEW);
     }
@@ -207,32 +259,58 @@ class TakerPresenter implements ITakerContract.IPresenter {
      * 处理图像确认
      */
     private void performPictureEnsure() {
-        try {
-            if (VersionUtil.isQ()) {
-                Uri uri = FileUtil.createJpegPendingItem(mContext, mConfig.getRelativePath());
-                ParcelFileDescriptor pfd = mContext.getContentResolver().openFileDescriptor(uri, "w");
-                CompressUtil.doCompress(mFetchedBitmap, pfd.getFileDescriptor(), mConfig.getQuality(),
-                        mFetchedBitmap.getWidth(), mFetchedBitmap.getHeight());
-                FileUtil.publishPendingItem(mContext, uri);
-                String path = FileUtil.getImagePath(mContext, uri);
-                MediaMeta mediaMeta = MediaMeta.create(uri, path, true);
-                mediaMeta.date = System.currentTimeMillis();
-                mView.setResult(mediaMeta);
-            } else {
-                File file = FileUtil.createJpegFile(mContext, mConfig.getRelativePath());
-                Uri uri = FileUtil.getUriFromFile(mContext, mConfig.getAuthority(), file);
-                ParcelFileDescriptor pfd = mContext.getContentResolver().openFileDescriptor(uri, "w");
-                CompressUtil.doCompress(mFetchedBitmap, pfd.getFileDescriptor(), mConfig.getQuality(),
-                        mFetchedBitmap.getWidth(), mFetchedBitmap.getHeight());
-                FileUtil.notifyMediaStore(mContext, file.getAbsolutePath());
-                MediaMeta mediaMeta = MediaMeta.create(uri, file.getAbsolutePath(), true);
-                mediaMeta.date = System.currentTimeMillis();
-                mView.setResult(mediaMeta);
+        if (mSaveTask != null) {
+            return;
+        }
+        final CompressService.Source source;
+        if (mIsRenderedPicture) {
+            if (mFetchedBitmap == null) {
+                return;
+            }
+            // 绘制后的画面需要重新压缩
+            final Bitmap bitmap = mFetchedBitmap;
+            final int quality = mConfig.getQuality();
+            source = new CompressService.Source() {
+                @Override
+                void writeTo(@NonNull FileDescriptor fd) throws IOException {
+                    CompressUtil.doCompress(bitmap, fd, quality, bitmap.getWidth(), bitmap.getHeight());
+                }
+            };
+        } else {
+            if (mFetchedJpeg == null) {
+                return;
             }
-        } catch (Throwable e) {
-            mView.toast(R.string.lib_album_taker_picture_saved_failed);
-            mView.setStatus(ITakerContract.IView.STATUS_CAMERA_PREVIEW);
+            // 相机输出的 JPEG 已是目标质量并携带 EXIF 方向, 直接写入, 无需解码重新压缩
+            final byte[] jpeg = mFetchedJpeg;
+            source = new CompressService.Source() {
+                @Override
+                void writeTo(@NonNull FileDescriptor fd) throws IOException {
+                    FileOutputStream fos = new FileOutputStream(fd);
+                    fos.write(jpeg);
+                    fos.flush();
+                }
+            };
         }
+        mSaveTask = CompressService.savePicture(
+                mContext,
+                mConfig.getRelativePath(),
+                mConfig.getAuthority(),
+                source,
+                new CompressService.Callback.Adapter() {
+                    @Override
+                    public void onComplete(@NonNull MediaMeta mediaMeta) {
+                        mSaveTask = null;
+                        mView.setResult(mediaMeta);
+                    }
+
+                    @Override
+                    public void onFailed(@NonNull Throwable e) {
+                        mSaveTask = null;
+                        mView.toast(R.string.lib_album_taker_picture_saved_failed);
+                        mView.setStatus(ITakerContract.IView.STATUS_CAMERA_PREVIEW);
+                    }
+                }
+        );
     }
 
     /**
@@ -246,11 +324,26 @@ class TakerPresenter implements ITakerContract.IPresenter {
         mView.setResult(mediaMeta);
     }
 
+    /**
+     * 取消正在执行的图片保存任务
+     */
+    private void cancelSaveTask() {
+        if (mSaveTask != null) {
+            mSaveTask.cancel();
+            mSaveTask = null;
+        }
+    }
+
     /**
      * 重置资源
      */
     private void recycle() {
-        mFetchedBitmap = null;
+        // 离开图片预览后不再持有照片, 预览控件可能仍在绘制该 Bitmap, 因此仅释放引用并清空复用池
+        if (mFetchedBitmap != null) {
+            mFetchedBitmap = null;
+            mView.clearPictureCache();
+        }
+        mFetchedJpeg = null;
         mCountTryAgain = 0;
         if (VersionUtil.isQ()) {
             FileUtil.delete(mContext, mVideoUri);
@@ -0,0 +1,296 @@
+package com.sharry.lib.album;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.ParcelFileDescriptor;
+import android.util.Log;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.sharry.lib.album.Constants.MIME_TYPE_GIF;
+import static com.sharry.lib.album.Constants.MIME_TYPE_JPEG;
+
+/**
+ * 批量并行压缩选中的图片
+ * <p>
+ * 1. 并发数由 CPU 核数与当前可用的堆内存共同决定
+ * 2. 解码前向 {@link PixelBudget#GLOBAL} 申请配额, 防止多张大图同时解码
+ * 3. 每张图片压缩完成后立即回调, 全部完成后按原始顺序回调结果
+ * 4. 通过返回的 {@link Batch} 取消, 取消后未开始的图片不再压缩, 也不会再有回调
+ * <p>
+ * 每个批次的输出位于应用缓存目录中独立的子目录, 开始新的批次时删除之前批次的输出,
+ * 即压缩结果在下一次压缩开始前有效. 视频与 GIF 不做处理, 原样返回.
+ *
+ * @author Sharry <a href="sharrychoochn@gmail.com">Contact me.</a>
+ * @version 1.0
+ * @since 2020-03-16 14:25
+ */
+final class BatchCompressor {
+
+    private static final String TAG = BatchCompressor.class.getSimpleName();
+    private static final String CACHE_DIRECTORY = "lib_album_compressed";
+    private static final String BATCH_DIRECTORY_PREFIX = "batch_";
+    private static final int CPU_COUNT = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * 单个任务的内存估算: 采样后约 2048 * 1536 的 ARGB_8888 图片, 旋转时需要两份
+     */
+    private static final long ESTIMATE_BYTES_PER_TASK = 2048L * 1536 * 4 * 2;
+    private static final ThreadPoolExecutor EXECUTOR;
+    private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+
+    static {
+        EXECUTOR = new ThreadPoolExecutor(
+                CPU_COUNT, CPU_COUNT,
+                30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(@NonNull Runnable r) {
+                        Thread thread = new Thread(r, BatchCompressor.class.getSimpleName());
+                        thread.setDaemon(false);
+                        return thread;
+                    }
+                }
+        );
+        // 允许核心线程销毁, 相册为低频组件, 无需持有核心线程
+        EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
+    private BatchCompressor() {
+    }
+
+    /**
+     * 批量压缩
+     *
+     * @param metas    需要压缩的资源
+     * @param quality  压缩质量, 指定了 maxBytes 时为质量的上限
+     * @param maxBytes 单张图片的字节数上限, 0 表示不限制
+     * @param callback 主线程回调
+     * @return 本次批量压缩, 用于取消
+     */
+    @NonNull
+    @MainThread
+    static Batch compress(@NonNull Context context, @NonNull List<MediaMeta> metas, final int quality,
+                          final long maxBytes, @NonNull final Callback callback) {
+        final Context appContext = context.getApplicationContext();
+        final MediaMeta[] results = new MediaMeta[metas.size()];
+        final AtomicInteger remaining = new AtomicInteger(metas.size());
+        final File cacheDirectory = new File(appContext.getCacheDir(), CACHE_DIRECTORY);
+        final Batch batch = new Batch(new File(cacheDirectory,
+                BATCH_DIRECTORY_PREFIX + System.currentTimeMillis()));
+        // 删除之前批次的输出
+        EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                deletePreviousBatches(cacheDirectory, batch.directory);
+            }
+        });
+        if (metas.isEmpty()) {
+            callback.onCompleted(new ArrayList<MediaMeta>());
+            return batch;
+        }
+        // 根据当前的内存余量调整并发数
+        EXECUTOR.setCorePoolSize(computePoolSize());
+        for (int i = 0; i < metas.size(); i++) {
+            final int index = i;
+            final MediaMeta origin = metas.get(i);
+            EXECUTOR.execute(new Runnable() {
+                @Override
+                public void run() {
+                    // 已取消时跳过压缩, 仍然计数, 保证复用的 Bitmap 被释放
+                    final MediaMeta compressed = batch.isCancelled ? origin
+                            : compressSingle(appContext, batch.directory, origin, quality, maxBytes);
+                    results[index] = compressed;
+                    final boolean isLast = remaining.decrementAndGet() == 0;
+                    if (isLast) {
+                        // 批量任务结束, 释放复用的 Bitmap
+                        BitmapPool.GLOBAL.clear();
+                    }
+                    if (batch.isCancelled) {
+                        // 压缩期间被取消, 删除已写入的文件
+                        if (compressed != origin) {
+                            new File(compressed.path).delete();
+                        }
+                        return;
+                    }
+                    MAIN_HANDLER.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (batch.isCancelled) {
+                                return;
+                            }
+                            callback.onItemCompressed(index, origin, compressed);
+                            if (isLast) {
+                                callback.onCompleted(new ArrayList<>(Arrays.asList(results)));
+                            }
+                        }
+                    });
+                }
+            });
+        }
+        return batch;
+    }
+
+    /**
+     * 压缩单张图片, 失败时返回原始资源
+     */
+    @NonNull
+    private static MediaMeta compressSingle(Context context, File directory, MediaMeta origin,
+                                            int quality, long maxBytes) {
+        if (!origin.isPicture) {
+            return origin;
+        }
+        if (!directory.exists()) {
+            directory.mkdirs();
+        }
+        File dest = new File(directory, "compressed_"
+                + origin.contentUri.getLastPathSegment() + "_" + System.currentTimeMillis() + ".jpg");
+        ParcelFileDescriptor src = null;
+        FileOutputStream out = null;
+        try {
+            src = context.getContentResolver().openFileDescriptor(origin.contentUri, "r");
+            if (src == null) {
+                throw new IOException("Open file descriptor failed -> " + origin.contentUri);
+            }
+            // 以文件头识别的真实格式为准, MediaStore 中的 MIME 可能与内容不符
+            ImageHeader header = ImageHeader.read(new FileInputStream(src.getFileDescriptor()).getChannel());
+            if (MIME_TYPE_GIF.equals(header.mimeType)) {
+                return origin;
+            }
+            out = new FileOutputStream(dest);
+            // Android Q 之后无法通过路径访问文件
+            String originPath = VersionUtil.isQ() ? null : origin.path;
+            CompressUtil.doCompress(originPath, src.getFileDescriptor(), out.getFD(), quality, maxBytes,
+                    PixelBudget.GLOBAL);
+            MediaMeta compressed = MediaMeta.create(Uri.fromFile(dest), dest.getAbsolutePath(), true);
+            compressed.date = origin.date;
+            compressed.size = dest.length();
+            compressed.mimeType = MIME_TYPE_JPEG;
+            return compressed;
+        } catch (Throwable e) {
+            Log.e(TAG, "Compress failed -> " + origin.contentUri, e);
+            dest.delete();
+            return origin;
+        } finally {
+            closeQuietly(src);
+            closeQuietly(out);
+        }
+    }
+
+    private static int computePoolSize() {
+        Runtime runtime = Runtime.getRuntime();
+        long headroom = runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+        return (int) Math.max(1, Math.min(CPU_COUNT, headroom / ESTIMATE_BYTES_PER_TASK));
+    }
+
+    /**
+     * 删除缓存目录中除当前批次之外的输出, 包括旧版本直接写在缓存目录中的文件
+     */
+    private static void deletePreviousBatches(File cacheDirectory, File current) {
+        File[] files = cacheDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (!file.equals(current)) {
+                deleteRecursively(file);
+            }
+        }
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // ignore.
+        }
+    }
+
+    /**
+     * 一次批量压缩
+     */
+    static final class Batch {
+
+        private final File directory;
+        private volatile boolean isCancelled;
+
+        private Batch(File directory) {
+            this.directory = directory;
+        }
+
+        /**
+         * 取消压缩, 取消后不会再有任何回调, 并删除本批次的输出
+         */
+        @MainThread
+        void cancel() {
+            if (isCancelled) {
+                return;
+            }
+            isCancelled = true;
+            EXECUTOR.execute(new Runnable() {
+                @Override
+                public void run() {
+                    deleteRecursively(directory);
+                }
+            });
+        }
+
+    }
+
+    /**
+     * 批量压缩的回调
+     */
+    interface Callback {
+
+        /**
+         * 单张图片处理完成
+         *
+         * @param index      在原始集合中的索引
+         * @param origin     原始资源
+         * @param compressed 压缩后的资源, 无需压缩或压缩失败时为原始资源
+         */
+        @MainThread
+        void onItemCompressed(int index, @NonNull MediaMeta origin, @NonNull MediaMeta compressed);
+
+        /**
+         * 全部处理完成
+         *
+         * @param results 与原始集合顺序一致的结果
+         */
+        @MainThread
+        void onCompleted(@NonNull ArrayList<MediaMeta> results);
+
+    }
+
+}
@@ -0,0 +1,108 @@
+package com.sharry.lib.album;
+
+import android.graphics.Bitmap;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+
+/**
+ * 压缩流程中可复用的 Bitmap 池
+ * <p>
+ * 解码时作为 {@link android.graphics.BitmapFactory.Options#inBitmap} 复用, 绘制时作为输出画布复用,
+ * 避免批量压缩时频繁申请大块内存. 池中的总字节数有上限, 超出时丢弃最早放入的 Bitmap.
+ *
+ * @author Sharry <a href="sharrychoochn@gmail.com">Contact me.</a>
+ * @version 1.0
+ * @since 2020-03-17 10:05
+ */
+final class BitmapPool {
+
+    /**
+     * 全局的 Bitmap 池, 占用可用堆内存的八分之一
+     */
+    static final BitmapPool GLOBAL = new BitmapPool(Runtime.getRuntime().maxMemory() / 8);
+
+    private final long mMaxBytes;
+    private final LinkedList<Bitmap> mBitmaps = new LinkedList<>();
+    private long mCurrentBytes;
+
+    BitmapPool(long maxBytes) {
+        Preconditions.checkArgument(maxBytes > 0, "Max bytes must be positive.");
+        this.mMaxBytes = maxBytes;
+    }
+
+    /**
+     * 获取一个可容纳指定尺寸的 Bitmap, 取出时已按指定尺寸重新配置
+     *
+     * @return 池中无合适的 Bitmap 时返回 null
+     */
+    @Nullable
+    synchronized Bitmap get(int width, int height, @NonNull Bitmap.Config config) {
+        long required = (long) width * height * bytesPerPixel(config);
+        Bitmap best = null;
+        for (Bitmap bitmap : mBitmaps) {
+            int allocation = bitmap.getAllocationByteCount();
+            if (allocation >= required && (best == null || allocation < best.getAllocationByteCount())) {
+                best = bitmap;
+            }
+        }
+        if (best == null) {
+            return null;
+        }
+        mBitmaps.remove(best);
+        mCurrentBytes -= best.getAllocationByteCount();
+        best.reconfigure(width, height, config);
+        return best;
+    }
+
+    /**
+     * 归还 Bitmap, 不可复用的 Bitmap 会被直接回收
+     */
+    synchronized void put(@Nullable Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled()) {
+            return;
+        }
+        long bytes = bitmap.getAllocationByteCount();
+        if (!bitmap.isMutable() || bytes > mMaxBytes) {
+            bitmap.recycle();
+            return;
+        }
+        mBitmaps.addLast(bitmap);
+        mCurrentBytes += bytes;
+        // 超出上限时淘汰最早放入的 Bitmap
+        Iterator<Bitmap> iterator = mBitmaps.iterator();
+        while (mCurrentBytes > mMaxBytes && iterator.hasNext()) {
+            Bitmap eldest = iterator.next();
+            iterator.remove();
+            mCurrentBytes -= eldest.getAllocationByteCount();
+            eldest.recycle();
+        }
+    }
+
+    /**
+     * 清空池中的 Bitmap
+     */
+    synchronized void clear() {
+        for (Bitmap bitmap : mBitmaps) {
+            bitmap.recycle();
+        }
+        mBitmaps.clear();
+        mCurrentBytes = 0;
+    }
+
+    private static int bytesPerPixel(Bitmap.Config config) {
+        switch (config) {
+            case ALPHA_8:
+                return 1;
+            case RGB_565:
+            case ARGB_4444:
+                return 2;
+            default:
+                return 4;
+        }
+    }
+
+}
@@ -54,6 +54,7 @@ public class CallbackFragment extends Fragment {
     }
 
     private Callback mCallback;
+    private Runnable mOnDestroyAction;
 
     @Override
     public void onCreate(Bundle savedInstanceState) {
@@ -69,6 +70,16 @@ public class CallbackFragment extends Fragment {
         }
     }
 
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        // 保留了实例, 仅在宿主 Activity 真正销毁时回调
+        if (null != mOnDestroyAction) {
+            mOnDestroyAction.run();
+            mOnDestroyAction = null;
+        }
+    }
+
     /**
      * 设置图片选择回调
      */
@@ -76,6 +87,13 @@ public class CallbackFragment extends Fragment {
         this.mCallback = callback;
     }
 
+    /**
+     * 设置宿主 Activity 销毁时执行的操作, 用于取消仍在进行的后台任务
+     */
+    void setOnDestroyAction(@Nullable Runnable action) {
+        this.mOnDestroyAction = action;
+    }
+
     /**
      * The callback associated with this Fragment.
      */
@@ -0,0 +1,292 @@
+package com.sharry.lib.album;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.ParcelFileDescriptor;
+import android.util.Log;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 图片保存的后台服务
+ * <p>
+ * 创建目标文件, 压缩写入, 发布到 MediaStore 等磁盘与 ContentResolver 操作均在工作线程执行,
+ * 进度与结果回调到主线程.
+ *
+ * @author Sharry <a href="sharrychoochn@gmail.com">Contact me.</a>
+ * @version 1.0
+ * @since 2020-03-13 10:42
+ */
+final class CompressService {
+
+    private static final String TAG = CompressService.class.getSimpleName();
+    private static final ThreadPoolExecutor EXECUTOR;
+    private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+
+    static {
+        EXECUTOR = new ThreadPoolExecutor(
+                // 拍摄与裁剪为低频操作, 单线程顺序执行即可
+                1, 1,
+                60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(@NonNull Runnable r) {
+                        Thread thread = new Thread(r, CompressService.class.getSimpleName());
+                        thread.setDaemon(false);
+                        return thread;
+                    }
+                }
+        );
+        // 允许核心线程销毁, 防止占用过多系统资源
+        EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
+    private CompressService() {
+    }
+
+    /**
+     * 在工作线程中执行 I/O 操作
+     */
+    static void execute(@NonNull Runnable runnable) {
+        EXECUTOR.execute(runnable);
+    }
+
+    /**
+     * 将图片保存到外部存储的相册目录
+     *
+     * @param relativePath 外部存储目录相对路径
+     * @param authority    FileProvider 的 authority
+     * @param source       图片数据源
+     * @param callback     主线程回调
+     * @return 保存任务, 可用于取消
+     */
+    @NonNull
+    static Task savePicture(@NonNull Context context, String relativePath, String authority,
+                            @NonNull Source source, @NonNull Callback callback) {
+        Task task = new Task(context.getApplicationContext(), relativePath, authority, source, callback);
+        EXECUTOR.execute(task.future);
+        return task;
+    }
+
+    /**
+     * 图片数据源
+     */
+    abstract static class Source {
+
+        /**
+         * 将数据写入目标文件
+         */
+        @WorkerThread
+        abstract void writeTo(@NonNull FileDescriptor fd) throws IOException;
+
+        /**
+         * 任务结束后释放资源, 无论成功, 失败还是在执行前被取消都会调用
+         */
+        @WorkerThread
+        void release() {
+        }
+
+    }
+
+    /**
+     * 保存任务的回调
+     */
+    interface Callback {
+
+        /**
+         * @param progress 保存进度, 范围 [0, 1]
+         */
+        @MainThread
+        void onProgress(float progress);
+
+        @MainThread
+        void onComplete(@NonNull MediaMeta mediaMeta);
+
+        @MainThread
+        void onFailed(@NonNull Throwable e);
+
+        class Adapter implements Callback {
+
+            @Override
+            public void onProgress(float progress) {
+
+            }
+
+            @Override
+            public void onComplete(@NonNull MediaMeta mediaMeta) {
+
+            }
+
+            @Override
+            public void onFailed(@NonNull Throwable e) {
+
+            }
+        }
+
+    }
+
+    /**
+     * 保存任务
+     */
+    static final class Task implements Runnable {
+
+        private final Context context;
+        private final String relativePath;
+        private final String authority;
+        private final Source source;
+        private final Callback callback;
+        private final FutureTask<Void> future;
+        /**
+         * 任务是否已开始执行, 开始执行后由 run 负责释放数据源, 否则由取消负责
+         */
+        private final AtomicBoolean isStarted = new AtomicBoolean(false);
+        private volatile boolean isCancelled;
+
+        private Task(Context context, String relativePath, String authority, Source source, Callback callback) {
+            this.context = context;
+            this.relativePath = relativePath;
+            this.authority = authority;
+            this.source = source;
+            this.callback = callback;
+            this.future = new FutureTask<Void>(this, null) {
+                @Override
+                protected void done() {
+                    // 在执行前被取消, run 不会再执行, 在工作线程中释放数据源
+                    if (isCancelled() && isStarted.compareAndSet(false, true)) {
+                        EXECUTOR.execute(new Runnable() {
+                            @Override
+                            public void run() {
+                                source.release();
+                            }
+                        });
+                    }
+                }
+            };
+        }
+
+        /**
+         * 取消任务, 取消后不会再有任何回调, 已写入的目标文件会被删除
+         */
+        @MainThread
+        void cancel() {
+            isCancelled = true;
+            future.cancel(true);
+        }
+
+        @Override
+        public void run() {
+            if (!isStarted.compareAndSet(false, true)) {
+                return;
+            }
+            Uri uri = null;
+            File file = null;
+            try {
+                // 1. 创建目标文件
+                postProgress(0f);
+                if (VersionUtil.isQ()) {
+                    uri = FileUtil.createJpegPendingItem(context, relativePath);
+                } else {
+                    file = FileUtil.createJpegFile(context, relativePath);
+                    uri = FileUtil.getUriFromFile(context, authority, file);
+                }
+                checkCancelled();
+                postProgress(0.1f);
+                // 2. 写入数据
+                ParcelFileDescriptor pfd = context.getContentResolver().openFileDescriptor(uri, "w");
+                if (pfd == null) {
+                    throw new IOException("Open file descriptor failed -> " + uri);
+                }
+                try {
+                    source.writeTo(pfd.getFileDescriptor());
+                } finally {
+                    pfd.close();
+                }
+                checkCancelled();
+                postProgress(0.9f);
+                // 3. 发布到 MediaStore
+                final MediaMeta mediaMeta;
+                if (VersionUtil.isQ()) {
+                    FileUtil.publishPendingItem(context, uri);
+                    mediaMeta = MediaMeta.create(uri, FileUtil.getImagePath(context, uri), true);
+                } else {
+                    FileUtil.notifyMediaStore(context, file.getAbsolutePath());
+                    mediaMeta = MediaMeta.create(uri, file.getAbsolutePath(), true);
+                }
+                mediaMeta.date = System.currentTimeMillis();
+                postProgress(1f);
+                postMain(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onComplete(mediaMeta);
+                    }
+                });
+            } catch (final Throwable e) {
+                // 删除未完成的目标文件
+                if (VersionUtil.isQ()) {
+                    FileUtil.delete(context, uri);
+                } else {
+                    FileUtil.delete(context, file);
+                }
+                if (e instanceof CancellationException) {
+                    Log.i(TAG, "Save picture cancelled.");
+                } else {
+                    Log.e(TAG, "Save picture failed.", e);
+                    postMain(new Runnable() {
+                        @Override
+                        public void run() {
+                            callback.onFailed(e);
+                        }
+                    });
+                }
+            } finally {
+                source.release();
+                BitmapPool.GLOBAL.clear();
+            }
+        }
+
+        private void checkCancelled() {
+            if (isCancelled || Thread.currentThread().isInterrupted()) {
+                throw new CancellationException();
+            }
+        }
+
+        private void postProgress(final float progress) {
+            postMain(new Runnable() {
+                @Override
+                public void run() {
+                    callback.onProgress(progress);
+                }
+            });
+        }
+
+        private void postMain(final Runnable runnable) {
+            MAIN_HANDLER.post(new Runnable() {
+                @Override
+                public void run() {
+                    // 在主线程二次校验, 保证 cancel 之后不会再有回调
+                    if (!isCancelled) {
+                        runnable.run();
+                    }
+                }
+            });
+        }
+
+    }
+
+}
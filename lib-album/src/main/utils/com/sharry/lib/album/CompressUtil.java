@@ -2,13 +2,30 @@ package com.sharry.lib.album;
 
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Canvas;
 import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
 import android.media.ExifInterface;
+import android.os.Build;
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.OsConstants;
 import android.text.TextUtils;
 
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.ByteArrayOutputStream;
 import java.io.FileDescriptor;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 
 /**
  * 处理图片相关的工具类
@@ -19,6 +36,45 @@ import java.io.IOException;
  */
 class CompressUtil {
 
+    /**
+     * 按字节数上限压缩时的最低质量
+     */
+    private static final int MIN_QUALITY = 10;
+
+    /**
+     * 按字节数上限压缩时, 短边缩小到此值后不再继续缩小
+     */
+    private static final int MIN_SIDE = 64;
+
+    /**
+     * 估算 JPEG 质量时读取的文件头长度, 量化表位于图像数据之前
+     */
+    private static final int QUALITY_PROBE_LENGTH = 64 * 1024;
+
+    /**
+     * JPEG 标准亮度量化表(ITU T.81 Annex K)之和
+     */
+    private static final int STANDARD_LUMINANCE_SUM = sum(new int[]{
+            16, 11, 10, 16, 24, 40, 51, 61,
+            12, 12, 14, 19, 26, 58, 60, 55,
+            14, 13, 16, 24, 40, 57, 69, 56,
+            14, 17, 22, 29, 51, 87, 80, 62,
+            18, 22, 37, 56, 68, 109, 103, 77,
+            24, 35, 55, 64, 81, 104, 113, 92,
+            49, 64, 78, 87, 103, 121, 120, 101,
+            72, 92, 95, 98, 112, 100, 103, 99
+    });
+
+    /**
+     * 按字节数上限压缩时复用的内存缓冲, 每个线程一份
+     */
+    private static final ThreadLocal<ReusableOutputStream> OUTPUT_BUFFER = new ThreadLocal<ReusableOutputStream>() {
+        @Override
+        protected ReusableOutputStream initialValue() {
+            return new ReusableOutputStream();
+        }
+    };
+
     /**
      * 图片压缩
      */
@@ -26,16 +82,210 @@ class CompressUtil {
         if (TextUtils.isEmpty(originPath)) {
             throw new IllegalArgumentException("CompressUtil.doCompress -> parameter originFilePath must not be null!");
         }
-        // 1. 邻近采样压缩尺寸(Nearest Neighbour Resampling Compress)
-        BitmapFactory.Options options = getBitmapOptions(originPath);
-        Bitmap bitmap = BitmapFactory.decodeFile(originPath, options);
-        if (bitmap == null) {
+        FileInputStream in = new FileInputStream(originPath);
+        try {
+            doCompress(originPath, in.getFD(), fd, quality, PixelBudget.GLOBAL);
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException("CompressUtil.doCompress -> interrupted.");
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * 图片压缩, 解码前向 budget 申请像素配额
+     * <p>
+     * 1. 仅读取一次文件头, 获取尺寸与旋转角度
+     * 2. 通过 inSampleSize 与 inTargetDensity 在解码时直接缩放到目标尺寸, 解码到池化的 Bitmap 中
+     * 3. 需要旋转时, 解码仅做采样, 旋转与最终缩放在一次绘制中完成
+     *
+     * @param originPath 原始文件路径, 为 null 时从 originFd 中读取
+     * @param originFd   原始文件的描述符
+     * @param budget     解码像素的配额
+     */
+    static void doCompress(@Nullable String originPath, @NonNull FileDescriptor originFd, @NonNull FileDescriptor fd,
+                           int quality, @NonNull PixelBudget budget) throws IOException, InterruptedException {
+        doCompress(originPath, originFd, fd, quality, 0, budget);
+    }
+
+    /**
+     * 图片压缩, 解码前向 budget 申请像素配额
+     *
+     * @param quality  压缩质量, 指定了 maxBytes 时为质量的上限
+     * @param maxBytes 输出文件的字节数上限, 0 表示不限制
+     * @see #sizeBudgetCompress(Bitmap, int, long, FileDescriptor)
+     * @see #tryPassThrough(ImageHeader, FileDescriptor, FileDescriptor, int, long)
+     */
+    static void doCompress(@Nullable String originPath, @NonNull FileDescriptor originFd, @NonNull FileDescriptor fd,
+                           int quality, long maxBytes, @NonNull PixelBudget budget) throws IOException, InterruptedException {
+        // 1. 读取文件头
+        ImageHeader header = readHeader(originPath, originFd);
+        // 2. 计算采样后的尺寸与目标尺寸
+        int sampleSize = calculateSampleSize(header.width, header.height);
+        if (sampleSize == 1 && tryPassThrough(header, originFd, fd, quality, maxBytes)) {
+            return;
+        }
+        int inSampleSize = Integer.highestOneBit(sampleSize);
+        int sampledWidth = ceilDiv(header.width, inSampleSize);
+        int sampledHeight = ceilDiv(header.height, inSampleSize);
+        int dstWidth = Math.max(1, Math.round(header.width / (float) sampleSize));
+        int dstHeight = Math.max(1, Math.round(header.height / (float) sampleSize));
+        boolean isRotate = header.angle != 0;
+        // 3. 申请像素配额: 解码时缩放会产生一张采样尺寸的临时 Bitmap, 旋转时需要额外一张目标尺寸的 Bitmap
+        long pixels = (long) sampledWidth * sampledHeight;
+        if (isRotate || sampleSize != inSampleSize) {
+            pixels += (long) dstWidth * dstHeight;
+        }
+        budget.acquire(pixels);
+        Bitmap decoded = null;
+        Bitmap output = null;
+        try {
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inSampleSize = inSampleSize;
+            options.inMutable = true;
+            if (!isRotate && sampleSize != inSampleSize) {
+                // 解码时直接缩放到目标尺寸
+                options.inScaled = true;
+                options.inDensity = sampleSize;
+                options.inTargetDensity = inSampleSize;
+                // 缩放后的尺寸存在 1 像素的舍入误差, 按上界申请
+                options.inBitmap = BitmapPool.GLOBAL.get(dstWidth + 1, dstHeight + 1, Bitmap.Config.ARGB_8888);
+            } else {
+                options.inScaled = false;
+                options.inBitmap = BitmapPool.GLOBAL.get(sampledWidth, sampledHeight, Bitmap.Config.ARGB_8888);
+            }
+            decoded = decode(originFd, options);
+            // 4. 旋转与最终缩放
+            if (isRotate) {
+                output = rotateAndScale(decoded, header.angle, dstWidth, dstHeight);
+            } else {
+                output = decoded;
+                decoded = null;
+            }
+            // 5. 质量压缩
+            if (maxBytes > 0) {
+                sizeBudgetCompress(output, quality, maxBytes, fd);
+            } else {
+                qualityCompress(output, quality, fd);
+            }
+        } finally {
+            BitmapPool.GLOBAL.put(decoded);
+            BitmapPool.GLOBAL.put(output);
+            budget.release(pixels);
+        }
+    }
+
+    /**
+     * 区域裁剪
+     * <p>
+     * 通过 {@link BitmapRegionDecoder} 仅解码裁剪区域, 采样到不低于输出尺寸的分辨率,
+     * 旋转与缩放在一次绘制中完成后直接写入目标文件描述符
+     *
+     * @param originFd 原始文件的描述符
+     * @param cropRect 裁剪区域在旋转后的图片中的归一化坐标
+     * @param outputX  输出的宽
+     * @param outputY  输出的高
+     */
+    static void doCrop(@NonNull FileDescriptor originFd, @NonNull RectF cropRect, int outputX, int outputY,
+                       int quality, @NonNull FileDescriptor fd) throws IOException, InterruptedException {
+        // 1. 将展示方向的裁剪区域映射到原图方向
+        ImageHeader header = readHeader(null, originFd);
+        RectF rawRect = mapToRaw(cropRect, header.angle);
+        Rect region = new Rect(
+                Math.round(rawRect.left * header.width),
+                Math.round(rawRect.top * header.height),
+                Math.round(rawRect.right * header.width),
+                Math.round(rawRect.bottom * header.height)
+        );
+        if (!region.intersect(0, 0, header.width, header.height) || region.isEmpty()) {
+            throw new IOException("CompressUtil.doCrop -> crop region is empty.");
+        }
+        // 2. 原图方向下的输出尺寸, 采样率保证解码后的区域不小于输出尺寸
+        boolean isSwap = header.angle == 90 || header.angle == 270;
+        int dstWidth = isSwap ? outputY : outputX;
+        int dstHeight = isSwap ? outputX : outputY;
+        // 选取了整张图片且无需缩放时, 直接拷贝原图
+        if (region.width() == header.width && region.height() == header.height
+                && dstWidth == header.width && dstHeight == header.height
+                && tryPassThrough(header, originFd, fd, quality, 0)) {
             return;
         }
-        // 2. 旋转一下 Bitmap
-        bitmap = rotateBitmap(bitmap, readPictureAngle(originPath));
-        // 3. 质量压缩(Quality Compress)
-        qualityCompress(bitmap, quality, fd);
+        int inSampleSize = 1;
+        while (region.width() / (inSampleSize * 2) >= dstWidth
+                && region.height() / (inSampleSize * 2) >= dstHeight) {
+            inSampleSize *= 2;
+        }
+        long pixels = (long) ceilDiv(region.width(), inSampleSize) * ceilDiv(region.height(), inSampleSize)
+                + (long) dstWidth * dstHeight;
+        PixelBudget.GLOBAL.acquire(pixels);
+        BitmapRegionDecoder decoder = null;
+        Bitmap decoded = null;
+        Bitmap output = null;
+        try {
+            // 3. 仅解码裁剪区域
+            decoder = BitmapRegionDecoder.newInstance(originFd, false);
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inSampleSize = inSampleSize;
+            decoded = decoder.decodeRegion(region, options);
+            if (decoded == null) {
+                throw new IOException("CompressUtil.doCrop -> decode region failed.");
+            }
+            // 4. 旋转并缩放到输出尺寸, 写入目标文件
+            output = rotateAndScale(decoded, header.angle, dstWidth, dstHeight);
+            qualityCompress(output, quality, fd);
+        } finally {
+            if (decoder != null) {
+                decoder.recycle();
+            }
+            if (decoded != null) {
+                decoded.recycle();
+            }
+            BitmapPool.GLOBAL.put(output);
+            PixelBudget.GLOBAL.release(pixels);
+        }
+    }
+
+    /**
+     * 将顺时针旋转 angle 后的归一化区域映射回原图
+     */
+    private static RectF mapToRaw(RectF rect, int angle) {
+        switch (angle) {
+            case 90:
+                return new RectF(rect.top, 1 - rect.right, rect.bottom, 1 - rect.left);
+            case 180:
+                return new RectF(1 - rect.right, 1 - rect.bottom, 1 - rect.left, 1 - rect.top);
+            case 270:
+                return new RectF(1 - rect.bottom, rect.left, 1 - rect.top, rect.right);
+            default:
+                return new RectF(rect);
+        }
+    }
+
+    /**
+     * 解码预览图, 长边不超过 maxSide, 并按 EXIF 旋转到展示方向
+     */
+    @NonNull
+    static Bitmap decodePreview(@NonNull FileDescriptor originFd, int maxSide) throws IOException {
+        ImageHeader header = readHeader(null, originFd);
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = 1;
+        while (Math.max(header.width, header.height) / (options.inSampleSize * 2) >= maxSide) {
+            options.inSampleSize *= 2;
+        }
+        Bitmap bitmap = BitmapFactory.decodeFileDescriptor(originFd, null, options);
+        if (bitmap == null) {
+            throw new IOException("CompressUtil.decodePreview -> decode bitmap failed.");
+        }
+        if (header.angle == 0) {
+            return bitmap;
+        }
+        Matrix matrix = new Matrix();
+        matrix.postRotate(header.angle);
+        Bitmap rotated = Bitmap.createBitmap(bitmap, 0, 0, bitmap.getWidth(), bitmap.getHeight(), matrix, true);
+        if (rotated != bitmap) {
+            bitmap.recycle();
+        }
+        return rotated;
     }
 
     /**
@@ -47,23 +297,165 @@ class CompressUtil {
         float scale = Math.max(desireWidth, desireHeight) / (float) Math.max(width, height);
         int w = Math.round(scale * width);
         int h = Math.round(scale * height);
+        // 尺寸一致时直接压缩, 避免多拷贝一份像素
+        if (w == width && h == height) {
+            qualityCompress(originBitmap, quality, fd);
+            return;
+        }
         Bitmap bitmap = Bitmap.createScaledBitmap(originBitmap, w, h, true);
-        qualityCompress(bitmap, quality, fd);
+        try {
+            qualityCompress(bitmap, quality, fd);
+        } finally {
+            bitmap.recycle();
+        }
     }
 
     /**
-     * 解析图片文件的宽高与目标宽高, 获取 Bitmap.Options
-     *
-     * @param filePath 文件路径
-     * @return 获取 Bitmap.Options
+     * 读取文件头
+     * <p>
+     * 优先通过 {@link ImageHeader} 解析, 无法识别的格式回退到 BitmapFactory 与 ExifInterface
      */
-    private static BitmapFactory.Options getBitmapOptions(String filePath) {
+    private static ImageHeader readHeader(@Nullable String originPath, @NonNull FileDescriptor originFd) throws IOException {
+        // 不关闭输入流, originFd 由调用方管理
+        ImageHeader header = ImageHeader.read(new FileInputStream(originFd).getChannel());
+        if (header.isValid()) {
+            return header;
+        }
         BitmapFactory.Options options = new BitmapFactory.Options();
         options.inJustDecodeBounds = true;
-        BitmapFactory.decodeFile(filePath, options);
-        options.inSampleSize = calculateSampleSize(options.outWidth, options.outHeight);
-        options.inJustDecodeBounds = false;
-        return options;
+        BitmapFactory.decodeFileDescriptor(originFd, null, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            throw new IOException("CompressUtil.readHeader -> decode bounds failed.");
+        }
+        int angle = 0;
+        if (Constants.MIME_TYPE_JPEG.equals(options.outMimeType)) {
+            angle = TextUtils.isEmpty(originPath) ? readPictureAngle(originFd) : readPictureAngle(originPath);
+        }
+        return new ImageHeader(options.outMimeType, options.outWidth, options.outHeight, angle);
+    }
+
+    /**
+     * 原图已满足尺寸, 大小与质量的限制时直接拷贝字节, 避免重新编码带来的耗时与画质损失
+     * <p>
+     * 拷贝保留了原图的 EXIF, 需要旋转的图片依靠方向标签展示, 无需旋转像素
+     *
+     * @return 是否已完成拷贝
+     */
+    private static boolean tryPassThrough(ImageHeader header, FileDescriptor originFd, FileDescriptor fd,
+                                          int quality, long maxBytes) throws IOException {
+        if (!Constants.MIME_TYPE_JPEG.equals(header.mimeType)) {
+            return false;
+        }
+        // 不关闭输入流, originFd 由调用方管理
+        FileChannel src = new FileInputStream(originFd).getChannel();
+        long size = src.size();
+        if (maxBytes > 0 && size > maxBytes) {
+            return false;
+        }
+        int sourceQuality = estimateJpegQuality(src);
+        if (sourceQuality <= 0 || sourceQuality > quality) {
+            return false;
+        }
+        FileUtil.copy(originFd, fd);
+        return true;
+    }
+
+    /**
+     * 根据亮度量化表估算 JPEG 的编码质量, 算法与 libjpeg 的质量缩放相反
+     *
+     * @return 估算的质量, 解析失败时返回 -1
+     */
+    private static int estimateJpegQuality(FileChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(QUALITY_PROBE_LENGTH);
+        while (buffer.hasRemaining() && channel.read(buffer, buffer.position()) > 0) {
+            // read until full or EOF.
+        }
+        buffer.flip();
+        if (buffer.remaining() < 4 || (buffer.get() & 0xFF) != 0xFF || (buffer.get() & 0xFF) != 0xD8) {
+            return -1;
+        }
+        while (buffer.remaining() >= 4) {
+            if ((buffer.get() & 0xFF) != 0xFF) {
+                return -1;
+            }
+            int marker = buffer.get() & 0xFF;
+            int length = buffer.getShort() & 0xFFFF;
+            // 读到图像数据仍未找到量化表
+            if (marker == 0xDA || length < 2 || buffer.remaining() < length - 2) {
+                return -1;
+            }
+            int end = buffer.position() + length - 2;
+            if (marker == 0xDB) {
+                while (buffer.position() < end) {
+                    int info = buffer.get() & 0xFF;
+                    boolean isSixteenBit = (info >> 4) != 0;
+                    long sum = 0;
+                    for (int i = 0; i < 64; i++) {
+                        sum += isSixteenBit ? buffer.getShort() & 0xFFFF : buffer.get() & 0xFF;
+                    }
+                    if ((info & 0x0F) == 0) {
+                        float scale = sum * 100f / STANDARD_LUMINANCE_SUM;
+                        int estimate = Math.round(scale <= 100 ? (200 - scale) / 2 : 5000 / scale);
+                        return Math.max(1, Math.min(100, estimate));
+                    }
+                }
+            }
+            buffer.position(end);
+        }
+        return -1;
+    }
+
+    /**
+     * 解码 Bitmap, 复用的 Bitmap 不可用时回退到新分配
+     */
+    private static Bitmap decode(FileDescriptor originFd, BitmapFactory.Options options) throws IOException {
+        Bitmap bitmap;
+        try {
+            bitmap = BitmapFactory.decodeFileDescriptor(originFd, null, options);
+        } catch (IllegalArgumentException e) {
+            BitmapPool.GLOBAL.put(options.inBitmap);
+            options.inBitmap = null;
+            bitmap = BitmapFactory.decodeFileDescriptor(originFd, null, options);
+        }
+        if (bitmap == null) {
+            BitmapPool.GLOBAL.put(options.inBitmap);
+            throw new IOException("CompressUtil.decode -> decode bitmap failed.");
+        }
+        return bitmap;
+    }
+
+    /**
+     * 在一次绘制中完成旋转与缩放
+     */
+    private static Bitmap rotateAndScale(Bitmap src, int angle, int dstWidth, int dstHeight) {
+        boolean isSwap = angle == 90 || angle == 270;
+        int outWidth = isSwap ? dstHeight : dstWidth;
+        int outHeight = isSwap ? dstWidth : dstHeight;
+        Bitmap output = BitmapPool.GLOBAL.get(outWidth, outHeight, Bitmap.Config.ARGB_8888);
+        if (output == null) {
+            output = Bitmap.createBitmap(outWidth, outHeight, Bitmap.Config.ARGB_8888);
+        }
+        // 以中心为原点缩放并旋转, 再平移到输出画布的中心
+        Matrix matrix = new Matrix();
+        matrix.postTranslate(-src.getWidth() / 2f, -src.getHeight() / 2f);
+        matrix.postScale(dstWidth / (float) src.getWidth(), dstHeight / (float) src.getHeight());
+        matrix.postRotate(angle);
+        matrix.postTranslate(outWidth / 2f, outHeight / 2f);
+        Canvas canvas = new Canvas(output);
+        canvas.drawBitmap(src, matrix, new Paint(Paint.FILTER_BITMAP_FLAG));
+        return output;
+    }
+
+    private static int sum(int[] values) {
+        int sum = 0;
+        for (int value : values) {
+            sum += value;
+        }
+        return sum;
+    }
+
+    private static int ceilDiv(int value, int divisor) {
+        return (value + divisor - 1) / divisor;
     }
 
     /**
@@ -116,21 +508,90 @@ class CompressUtil {
     }
 
     /**
-     * 旋转 Bitmap
+     * 按字节数上限压缩
+     * <p>
+     * 1. 在 [{@link #MIN_QUALITY}, maxQuality] 区间内二分查找满足上限的最高质量, 编码结果写入复用的内存缓冲
+     * 2. 最低质量仍超出上限时, 按比例缩小尺寸后重新查找
+     * 3. 最终结果一次性写入文件描述符
      *
-     * @param bitmap 原始 bitmap
-     * @param angle  旋转的角度
+     * @param srcBitmap  原始 Bitmap
+     * @param maxQuality 压缩质量的上限
+     * @param maxBytes   字节数上限
+     * @param fd         压缩目标的文件描述符
      */
-    private static Bitmap rotateBitmap(Bitmap bitmap, int angle) {
-        if (angle == 0) {
-            return bitmap;
+    static void sizeBudgetCompress(Bitmap srcBitmap, int maxQuality, long maxBytes, FileDescriptor fd) throws IOException {
+        ReusableOutputStream buffer = OUTPUT_BUFFER.get();
+        Bitmap bitmap = srcBitmap;
+        try {
+            while (true) {
+                // 二分查找满足上限的最高质量
+                int low = MIN_QUALITY;
+                int high = Math.max(MIN_QUALITY, maxQuality);
+                int best = -1;
+                while (low <= high) {
+                    int mid = (low + high) >>> 1;
+                    if (encode(bitmap, mid, buffer) <= maxBytes) {
+                        best = mid;
+                        low = mid + 1;
+                    } else {
+                        high = mid - 1;
+                    }
+                }
+                boolean isTooSmall = Math.min(bitmap.getWidth(), bitmap.getHeight()) <= MIN_SIDE;
+                if (best != -1 || isTooSmall) {
+                    // 缓冲中是最后一次尝试的结果, 需要时按找到的质量重新编码
+                    int quality = best != -1 ? best : MIN_QUALITY;
+                    if (buffer.quality != quality) {
+                        encode(bitmap, quality, buffer);
+                    }
+                    break;
+                }
+                // 最低质量仍超出上限, 按字节数的比例缩小尺寸
+                float scale = Math.min(0.9f, (float) Math.sqrt(maxBytes / (double) buffer.size()));
+                Bitmap scaled = scaleBitmap(bitmap, scale);
+                if (bitmap != srcBitmap) {
+                    BitmapPool.GLOBAL.put(bitmap);
+                }
+                bitmap = scaled;
+            }
+            FileOutputStream out = new FileOutputStream(fd);
+            try {
+                buffer.writeTo(out);
+                out.flush();
+            } finally {
+                out.close();
+            }
+        } finally {
+            if (bitmap != srcBitmap) {
+                BitmapPool.GLOBAL.put(bitmap);
+            }
+            buffer.release();
+        }
+    }
+
+    /**
+     * 编码到内存缓冲
+     *
+     * @return 编码后的字节数
+     */
+    private static int encode(Bitmap bitmap, int quality, ReusableOutputStream buffer) {
+        buffer.reset();
+        bitmap.compress(Bitmap.CompressFormat.JPEG, quality, buffer);
+        buffer.quality = quality;
+        return buffer.size();
+    }
+
+    private static Bitmap scaleBitmap(Bitmap src, float scale) {
+        int width = Math.max(1, Math.round(src.getWidth() * scale));
+        int height = Math.max(1, Math.round(src.getHeight() * scale));
+        Bitmap output = BitmapPool.GLOBAL.get(width, height, Bitmap.Config.ARGB_8888);
+        if (output == null) {
+            output = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
         }
-        //旋转图片 动作
         Matrix matrix = new Matrix();
-        matrix.postRotate(angle);
-        // 旋转后的 Bitmap
-        return Bitmap.createBitmap(bitmap, 0, 0,
-                bitmap.getWidth(), bitmap.getHeight(), matrix, true);
+        matrix.setScale(width / (float) src.getWidth(), height / (float) src.getHeight());
+        new Canvas(output).drawBitmap(src, matrix, new Paint(Paint.FILTER_BITMAP_FLAG));
+        return output;
     }
 
     /**
@@ -139,8 +600,30 @@ class CompressUtil {
      * @param path 文件路径
      */
     private static int readPictureAngle(String path) throws IOException {
+        return parseAngle(new ExifInterface(path));
+    }
+
+    /**
+     * 读取图片文件旋转的角度
+     *
+     * @param fd 文件描述符
+     */
+    private static int readPictureAngle(FileDescriptor fd) throws IOException {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.N) {
+            return 0;
+        }
+        int angle = parseAngle(new ExifInterface(fd));
+        // ExifInterface 会移动读取位置, 需要复位以便后续解码
+        try {
+            Os.lseek(fd, 0, OsConstants.SEEK_SET);
+        } catch (ErrnoException e) {
+            throw new IOException(e);
+        }
+        return angle;
+    }
+
+    private static int parseAngle(ExifInterface exifInterface) {
         int degree = 0;
-        ExifInterface exifInterface = new ExifInterface(path);
         int orientation = exifInterface.getAttributeInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL);
         switch (orientation) {
             case ExifInterface.ORIENTATION_ROTATE_90:
@@ -158,4 +641,30 @@ class CompressUtil {
         return degree;
     }
 
+    /**
+     * 可复用的内存输出流, 记录最后一次编码使用的质量
+     */
+    private static final class ReusableOutputStream extends ByteArrayOutputStream {
+
+        /**
+         * 超出此容量的缓冲在使用后释放, 避免线程长期持有大块内存
+         */
+        private static final int MAX_RETAINED_CAPACITY = 2 * 1024 * 1024;
+
+        int quality = -1;
+
+        ReusableOutputStream() {
+            super(64 * 1024);
+        }
+
+        void release() {
+            reset();
+            quality = -1;
+            if (buf.length > MAX_RETAINED_CAPACITY) {
+                buf = new byte[64 * 1024];
+            }
+        }
+
+    }
+
 }
@@ -15,6 +15,7 @@ interface Constants {
     String MIME_TYPE_PNG = "image/png";
     String MIME_TYPE_WEBP = "image/webp";
     String MIME_TYPE_GIF = "image/gif";
+    String MIME_TYPE_HEIF = "image/heif";
 
     /**
      * Video
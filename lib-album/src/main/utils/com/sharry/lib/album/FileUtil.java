@@ -15,10 +15,17 @@ import android.text.TextUtils;
 import android.text.format.DateFormat;
 import android.util.Log;
 
+import androidx.annotation.NonNull;
 import androidx.core.content.FileProvider;
 
 import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.Calendar;
 import java.util.Locale;
 
@@ -33,6 +40,11 @@ class FileUtil {
 
     private static final String TAG = FileUtil.class.getSimpleName();
 
+    /**
+     * 目标不支持 transferTo 时使用的拷贝缓冲区大小
+     */
+    private static final int TRANSFER_BUFFER_SIZE = 64 * 1024;
+
     /**
      * Get parent folder associated with this file.
      */
@@ -62,30 +74,6 @@ class FileUtil {
                 FileProvider.getUriForFile(context, authority, file) : Uri.fromFile(file);
     }
 
-    /**
-     * 创建临时文件
-     *
-     * @return 创建的文件
-     */
-    static File createTempJpegFile(Context context) {
-        // 获取临时文件目录
-        File tempDirectory = context.getExternalFilesDir(Environment.DIRECTORY_PICTURES);
-        // 创建临时文件
-        String tempFileName = "temp_file_" + DateFormat.format("yyyyMMdd_HH_mm_ss",
-                Calendar.getInstance(Locale.CHINA)) + ".jpg";
-        File tempFile = new File(tempDirectory, tempFileName);
-        try {
-            if (tempFile.exists()) {
-                tempFile.delete();
-            }
-            tempFile.createNewFile();
-            Log.i(TAG, "create temp file directory success -> " + tempFile.getAbsolutePath());
-        } catch (IOException e) {
-            Log.e(TAG, "create temp file directory failed ->" + tempFile.getAbsolutePath(), e);
-        }
-        return tempFile;
-    }
-
     /**
      * 创建图片路径的 URI
      *
@@ -252,4 +240,64 @@ class FileUtil {
         return data;
     }
 
+    /**
+     * 在两个文件描述符之间拷贝数据, 从源的起始位置拷贝到目标的当前位置
+     * <p>
+     * 目标可以是 ContentResolver 打开的 MediaStore 条目, 不会关闭传入的描述符
+     *
+     * @return 拷贝的字节数
+     */
+    static long copy(@NonNull FileDescriptor src, @NonNull FileDescriptor dest) throws IOException {
+        FileChannel in = new FileInputStream(src).getChannel();
+        FileChannel out = new FileOutputStream(dest).getChannel();
+        long size = in.size();
+        transfer(in, 0, size, out);
+        return size;
+    }
+
+    /**
+     * 通过 FileChannel 拷贝数据, 数据由内核直接搬运, 无需经过 Java 堆
+     * <p>
+     * transferTo 对部分目标(如管道)可能无法一次完成, 需要循环; 无进展时回退到缓冲区拷贝.
+     * 全程使用基于位置的读取, 不会修改源的读取位置(与其他持有同一 fd 的对象共享)
+     *
+     * @param position 源的起始位置
+     * @param count    拷贝的字节数
+     * @param dest     目标, 可以是不支持定位的管道
+     */
+    static void transfer(@NonNull FileChannel src, long position, long count, @NonNull WritableByteChannel dest)
+            throws IOException {
+        long transferred = 0;
+        while (transferred < count) {
+            long bytes = src.transferTo(position + transferred, count - transferred, dest);
+            if (bytes <= 0) {
+                // 目标不支持 transferTo 时, 以缓冲区拷贝剩余的数据
+                copyBuffered(src, position + transferred, count - transferred, dest);
+                return;
+            }
+            transferred += bytes;
+        }
+    }
+
+    private static void copyBuffered(FileChannel src, long position, long count, WritableByteChannel dest)
+            throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect((int) Math.min(count, TRANSFER_BUFFER_SIZE));
+        long copied = 0;
+        while (copied < count) {
+            buffer.clear();
+            if (count - copied < buffer.capacity()) {
+                buffer.limit((int) (count - copied));
+            }
+            int read = src.read(buffer, position + copied);
+            if (read <= 0) {
+                throw new IOException("FileUtil.transfer -> unexpected end of source at " + (position + copied));
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                dest.write(buffer);
+            }
+            copied += read;
+        }
+    }
+
 }
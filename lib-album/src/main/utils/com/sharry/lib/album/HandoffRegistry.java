@@ -0,0 +1,108 @@
+package com.sharry.lib.album;
+
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 进程内的对象交接表
+ * <p>
+ * 组件间传递大对象时, Intent 中仅携带 token, 对象本身留在进程内,
+ * 避免 Binder 序列化的开销以及 TransactionTooLargeException.
+ * 进程被杀后 token 失效, 调用方需要从紧凑格式中恢复数据.
+ * <p>
+ * 无法保证被取回的对象需要设置有效期, 过期后在下一次寄存时清理, 避免常驻内存.
+ *
+ * @author Sharry <a href="sharrychoochn@gmail.com">Contact me.</a>
+ * @version 1.0
+ * @since 2020-03-12 14:52
+ */
+final class HandoffRegistry {
+
+    /**
+     * 不过期
+     */
+    static final long NEVER_EXPIRE = 0;
+
+    private static final Map<String, Entry> ENTRIES = new ConcurrentHashMap<>();
+
+    private HandoffRegistry() {
+    }
+
+    /**
+     * 寄存对象, 由寄存方负责取回
+     *
+     * @return 用于取回对象的 token, UUID 保证进程重建后不会与旧 token 冲突
+     */
+    @NonNull
+    static String deposit(@NonNull Object value) {
+        return deposit(value, NEVER_EXPIRE);
+    }
+
+    /**
+     * 寄存对象
+     *
+     * @param ttlMillis 有效期, {@link #NEVER_EXPIRE} 表示不过期
+     * @return 用于取回对象的 token, UUID 保证进程重建后不会与旧 token 冲突
+     */
+    @NonNull
+    static String deposit(@NonNull Object value, long ttlMillis) {
+        long now = SystemClock.elapsedRealtime();
+        evictExpired(now);
+        String token = UUID.randomUUID().toString();
+        ENTRIES.put(token, new Entry(value, ttlMillis > 0 ? now + ttlMillis : NEVER_EXPIRE));
+        return token;
+    }
+
+    /**
+     * 获取对象, 但不移除
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    static <T> T peek(@Nullable String token) {
+        Entry entry = token == null ? null : ENTRIES.get(token);
+        return entry == null || entry.isExpired(SystemClock.elapsedRealtime()) ? null : (T) entry.value;
+    }
+
+    /**
+     * 取回并移除对象
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    static <T> T withdraw(@Nullable String token) {
+        Entry entry = token == null ? null : ENTRIES.remove(token);
+        return entry == null || entry.isExpired(SystemClock.elapsedRealtime()) ? null : (T) entry.value;
+    }
+
+    private static void evictExpired(long now) {
+        Iterator<Entry> iterator = ENTRIES.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().isExpired(now)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static final class Entry {
+
+        final Object value;
+        final long expireAt;
+
+        Entry(Object value, long expireAt) {
+            this.value = value;
+            this.expireAt = expireAt;
+        }
+
+        boolean isExpired(long now) {
+            return expireAt != NEVER_EXPIRE && now >= expireAt;
+        }
+
+    }
+
+}
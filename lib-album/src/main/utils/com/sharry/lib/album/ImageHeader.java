@@ -0,0 +1,322 @@
+package com.sharry.lib.album;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+import static com.sharry.lib.album.Constants.MIME_TYPE_GIF;
+import static com.sharry.lib.album.Constants.MIME_TYPE_HEIF;
+import static com.sharry.lib.album.Constants.MIME_TYPE_JPEG;
+import static com.sharry.lib.album.Constants.MIME_TYPE_PNG;
+import static com.sharry.lib.album.Constants.MIME_TYPE_WEBP;
+
+/**
+ * 图片的文件头信息
+ * <p>
+ * 仅通过少量的定位读取解析真实格式, 宽高与 EXIF 旋转角度, 不依赖 Android 的解码器,
+ * 也不会修改文件描述符的读取位置. 支持 JPEG, PNG, WebP, GIF 与 HEIF.
+ *
+ * @author Sharry <a href="sharrychoochn@gmail.com">Contact me.</a>
+ * @version 1.0
+ * @since 2020-03-18 15:30
+ */
+final class ImageHeader {
+
+    /**
+     * 单个段落/盒子读取的上限, EXIF 与 HEIF 的 meta 盒子通常只有几 KB
+     */
+    private static final int MAX_SEGMENT_LENGTH = 64 * 1024;
+
+    /**
+     * JPEG 中查找 SOF 时最多跳过的段落数
+     */
+    private static final int MAX_JPEG_SEGMENTS = 64;
+
+    private static final int EXIF_TAG_ORIENTATION = 0x0112;
+
+    private static final ImageHeader UNKNOWN = new ImageHeader(null, 0, 0, 0);
+
+    /**
+     * 读取文件头
+     *
+     * @return 无法识别的格式返回 mimeType 为 null 的实例
+     */
+    @NonNull
+    static ImageHeader read(@NonNull FileChannel channel) throws IOException {
+        ByteBuffer head = readAt(channel, 0, 32);
+        if (head.remaining() < 12) {
+            return UNKNOWN;
+        }
+        if (u8(head, 0) == 0xFF && u8(head, 1) == 0xD8) {
+            return readJpeg(channel);
+        }
+        if (u8(head, 0) == 0x89 && isTag(head, 1, "PNG") && head.remaining() >= 24) {
+            head.order(ByteOrder.BIG_ENDIAN);
+            return new ImageHeader(MIME_TYPE_PNG, head.getInt(16), head.getInt(20), 0);
+        }
+        if (isTag(head, 0, "GIF8")) {
+            head.order(ByteOrder.LITTLE_ENDIAN);
+            return new ImageHeader(MIME_TYPE_GIF, u16(head, 6), u16(head, 8), 0);
+        }
+        if (isTag(head, 0, "RIFF") && isTag(head, 8, "WEBP")) {
+            return readWebP(head);
+        }
+        if (isTag(head, 4, "ftyp") && isHeifBrand(head)) {
+            return readHeif(channel);
+        }
+        return UNKNOWN;
+    }
+
+    @Nullable
+    final String mimeType;
+    final int width;
+    final int height;
+
+    /**
+     * 顺时针旋转的角度
+     */
+    final int angle;
+
+    ImageHeader(@Nullable String mimeType, int width, int height, int angle) {
+        this.mimeType = mimeType;
+        this.width = width;
+        this.height = height;
+        this.angle = angle;
+    }
+
+    /**
+     * 是否解析出了有效的格式与尺寸
+     */
+    boolean isValid() {
+        return mimeType != null && width > 0 && height > 0;
+    }
+
+    // ==================================== JPEG ====================================
+
+    private static ImageHeader readJpeg(FileChannel channel) throws IOException {
+        long position = 2;
+        int angle = 0;
+        for (int i = 0; i < MAX_JPEG_SEGMENTS; i++) {
+            ByteBuffer marker = readAt(channel, position, 4);
+            if (marker.remaining() < 4 || u8(marker, 0) != 0xFF) {
+                break;
+            }
+            int type = u8(marker, 1);
+            // 填充字节
+            if (type == 0xFF) {
+                position += 1;
+                continue;
+            }
+            // 没有长度的独立标记
+            if (type == 0x01 || (type >= 0xD0 && type <= 0xD7)) {
+                position += 2;
+                continue;
+            }
+            // 读到图像数据或结束标记仍未找到 SOF
+            if (type == 0xDA || type == 0xD9) {
+                break;
+            }
+            int length = u16(marker.order(ByteOrder.BIG_ENDIAN), 2);
+            if (type == 0xE1) {
+                angle = readExifAngle(readAt(channel, position + 4, Math.min(length - 2, MAX_SEGMENT_LENGTH)));
+            } else if (isStartOfFrame(type)) {
+                ByteBuffer frame = readAt(channel, position + 4, 5).order(ByteOrder.BIG_ENDIAN);
+                if (frame.remaining() < 5) {
+                    break;
+                }
+                return new ImageHeader(MIME_TYPE_JPEG, u16(frame, 3), u16(frame, 1), angle);
+            }
+            position += 2 + length;
+        }
+        return new ImageHeader(MIME_TYPE_JPEG, 0, 0, angle);
+    }
+
+    private static boolean isStartOfFrame(int type) {
+        // SOF0 ~ SOF15, 排除 DHT(C4), JPG(C8), DAC(CC)
+        return type >= 0xC0 && type <= 0xCF && type != 0xC4 && type != 0xC8 && type != 0xCC;
+    }
+
+    /**
+     * 解析 APP1 段中 IFD0 的方向标签
+     */
+    private static int readExifAngle(ByteBuffer segment) {
+        if (segment.remaining() < 14 || !isTag(segment, 0, "Exif") || u16(segment, 4) != 0) {
+            return 0;
+        }
+        int tiff = 6;
+        if (isTag(segment, tiff, "II")) {
+            segment.order(ByteOrder.LITTLE_ENDIAN);
+        } else if (isTag(segment, tiff, "MM")) {
+            segment.order(ByteOrder.BIG_ENDIAN);
+        } else {
+            return 0;
+        }
+        long ifdOffset = segment.getInt(tiff + 4) & 0xFFFFFFFFL;
+        int ifd = (int) Math.min(tiff + ifdOffset, Integer.MAX_VALUE);
+        if (ifd + 2 > segment.limit()) {
+            return 0;
+        }
+        int count = u16(segment, ifd);
+        for (int i = 0; i < count; i++) {
+            int entry = ifd + 2 + i * 12;
+            if (entry + 12 > segment.limit()) {
+                break;
+            }
+            if (u16(segment, entry) == EXIF_TAG_ORIENTATION) {
+                switch (u16(segment, entry + 8)) {
+                    case 3:
+                        return 180;
+                    case 6:
+                        return 90;
+                    case 8:
+                        return 270;
+                    default:
+                        return 0;
+                }
+            }
+        }
+        return 0;
+    }
+
+    // ==================================== WebP ====================================
+
+    private static ImageHeader readWebP(ByteBuffer head) {
+        head.order(ByteOrder.LITTLE_ENDIAN);
+        if (head.remaining() < 30) {
+            return new ImageHeader(MIME_TYPE_WEBP, 0, 0, 0);
+        }
+        int width = 0;
+        int height = 0;
+        if (isTag(head, 12, "VP8 ")) {
+            // 有损: 3 字节帧标记 + 3 字节起始码之后为 14 位宽高
+            width = u16(head, 26) & 0x3FFF;
+            height = u16(head, 28) & 0x3FFF;
+        } else if (isTag(head, 12, "VP8L")) {
+            // 无损: 1 字节签名之后, 宽高各占 14 位
+            int bits = head.getInt(21);
+            width = (bits & 0x3FFF) + 1;
+            height = ((bits >> 14) & 0x3FFF) + 1;
+        } else if (isTag(head, 12, "VP8X")) {
+            // 扩展格式: 4 字节标记之后, 宽高各占 24 位
+            width = u24(head, 24) + 1;
+            height = u24(head, 27) + 1;
+        }
+        return new ImageHeader(MIME_TYPE_WEBP, width, height, 0);
+    }
+
+    // ==================================== HEIF ====================================
+
+    private static boolean isHeifBrand(ByteBuffer head) {
+        return isTag(head, 8, "heic") || isTag(head, 8, "heix")
+                || isTag(head, 8, "hevc") || isTag(head, 8, "hevx")
+                || isTag(head, 8, "heim") || isTag(head, 8, "heis")
+                || isTag(head, 8, "mif1") || isTag(head, 8, "msf1");
+    }
+
+    /**
+     * 在 meta/iprp/ipco 中查找 ispe(尺寸) 与 irot(旋转)
+     */
+    private static ImageHeader readHeif(FileChannel channel) throws IOException {
+        long size = channel.size();
+        long position = 0;
+        while (position + 8 <= size) {
+            ByteBuffer box = readAt(channel, position, 16).order(ByteOrder.BIG_ENDIAN);
+            long boxSize = box.getInt(0) & 0xFFFFFFFFL;
+            int headerSize = 8;
+            if (boxSize == 1 && box.remaining() >= 16) {
+                boxSize = box.getLong(8);
+                headerSize = 16;
+            } else if (boxSize == 0) {
+                boxSize = size - position;
+            }
+            if (boxSize < headerSize) {
+                break;
+            }
+            if (isTag(box, 4, "meta")) {
+                int length = (int) Math.min(boxSize - headerSize, MAX_SEGMENT_LENGTH);
+                ByteBuffer meta = readAt(channel, position + headerSize, length).order(ByteOrder.BIG_ENDIAN);
+                // meta 是 FullBox, 跳过 version 与 flags
+                return readHeifProperties(meta, 4, meta.limit());
+            }
+            position += boxSize;
+        }
+        return new ImageHeader(MIME_TYPE_HEIF, 0, 0, 0);
+    }
+
+    private static ImageHeader readHeifProperties(ByteBuffer buffer, int start, int end) {
+        int width = 0;
+        int height = 0;
+        int angle = 0;
+        int position = start;
+        while (position + 8 <= end) {
+            int boxSize = buffer.getInt(position);
+            if (boxSize < 8 || position + boxSize > end) {
+                break;
+            }
+            if (isTag(buffer, position + 4, "iprp") || isTag(buffer, position + 4, "ipco")) {
+                ImageHeader child = readHeifProperties(buffer, position + 8, position + boxSize);
+                // 取面积最大的 ispe 作为主图尺寸
+                if ((long) child.width * child.height > (long) width * height) {
+                    width = child.width;
+                    height = child.height;
+                }
+                angle = angle != 0 ? angle : child.angle;
+            } else if (isTag(buffer, position + 4, "ispe") && boxSize >= 20) {
+                int w = buffer.getInt(position + 12);
+                int h = buffer.getInt(position + 16);
+                if ((long) w * h > (long) width * height) {
+                    width = w;
+                    height = h;
+                }
+            } else if (isTag(buffer, position + 4, "irot") && boxSize >= 9 && angle == 0) {
+                // irot 为逆时针旋转, 转换为顺时针
+                angle = (360 - (buffer.get(position + 8) & 0x03) * 90) % 360;
+            }
+            position += boxSize;
+        }
+        return new ImageHeader(MIME_TYPE_HEIF, width, height, angle);
+    }
+
+    // ==================================== Utils ====================================
+
+    private static ByteBuffer readAt(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(Math.max(0, length));
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read <= 0) {
+                break;
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static boolean isTag(ByteBuffer buffer, int offset, String tag) {
+        if (offset + tag.length() > buffer.limit()) {
+            return false;
+        }
+        for (int i = 0; i < tag.length(); i++) {
+            if (buffer.get(offset + i) != (byte) tag.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int u8(ByteBuffer buffer, int offset) {
+        return buffer.get(offset) & 0xFF;
+    }
+
+    private static int u16(ByteBuffer buffer, int offset) {
+        return buffer.getShort(offset) & 0xFFFF;
+    }
+
+    private static int u24(ByteBuffer buffer, int offset) {
+        return u8(buffer, offset) | u8(buffer, offset + 1) << 8 | u8(buffer, offset + 2) << 16;
+    }
+
+}
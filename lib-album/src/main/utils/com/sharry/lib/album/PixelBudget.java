@@ -0,0 +1,52 @@
+package com.sharry.lib.album;
+
+/**
+ * 解码像素的全局配额
+ * <p>
+ * 并发解码前需要申请配额, 防止多张大图同时解码导致 OOM.
+ * 超过总配额的单次申请会被截断为总配额, 即大图之间串行执行.
+ *
+ * @author Sharry <a href="sharrychoochn@gmail.com">Contact me.</a>
+ * @version 1.0
+ * @since 2020-03-16 11:12
+ */
+final class PixelBudget {
+
+    private static final int BYTES_PER_PIXEL = 4;
+
+    /**
+     * 全局配额, 占用可用堆内存的四分之一
+     */
+    static final PixelBudget GLOBAL = new PixelBudget(
+            Runtime.getRuntime().maxMemory() / 4 / BYTES_PER_PIXEL
+    );
+
+    private final long mCapacity;
+    private long mAvailable;
+
+    PixelBudget(long capacity) {
+        Preconditions.checkArgument(capacity > 0, "Capacity must be positive.");
+        this.mCapacity = capacity;
+        this.mAvailable = capacity;
+    }
+
+    /**
+     * 申请配额, 配额不足时阻塞
+     */
+    synchronized void acquire(long pixels) throws InterruptedException {
+        long required = Math.min(pixels, mCapacity);
+        while (mAvailable < required) {
+            wait();
+        }
+        mAvailable -= required;
+    }
+
+    /**
+     * 归还配额
+     */
+    synchronized void release(long pixels) {
+        mAvailable += Math.min(pixels, mCapacity);
+        notifyAll();
+    }
+
+}
@@ -17,7 +17,6 @@ import android.widget.TextView;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
-import androidx.localbroadcastmanager.content.LocalBroadcastManager;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
@@ -45,10 +44,6 @@ public class WatcherActivity extends AppCompatActivity implements
     private static final String EXTRA_SHARED_ELEMENT = "start_intent_extra_shared_element";
     static final int REQUEST_CODE = 508;
 
-    static final String BROADCAST_PICKED_SET_CHANGED = "com.sharry.lib.album.watcheractivity.broadcast.picked.set.changed";
-    static final String BROADCAST_PICKED_SET_ENSURE = "com.sharry.lib.album.watcheractivity.broadcast.picked.set.ensure";
-    static final String BROADCAST_EXTRA_DATA = "BROADCAST_EXTRA_DATA";
-
     /**
      * 图片浏览器的配置, 使用静态变量暂存数据
      * <p>
@@ -298,9 +293,7 @@ public class WatcherActivity extends AppCompatActivity implements
         if ((adapter = mRvPickedPanel.getAdapter()) != null) {
             adapter.notifyItemRemoved(removedIndex);
         }
-        Intent data = new Intent(BROADCAST_PICKED_SET_CHANGED);
-        data.putExtra(BROADCAST_EXTRA_DATA, removedMeta);
-        LocalBroadcastManager.getInstance(this).sendBroadcast(data);
+        PickedSetStore.getInstance().notifyPickedSetChanged(removedMeta);
     }
 
     @Override
@@ -309,9 +302,7 @@ public class WatcherActivity extends AppCompatActivity implements
         if ((adapter = mRvPickedPanel.getAdapter()) != null) {
             adapter.notifyItemInserted(addedIndex);
         }
-        Intent data = new Intent(BROADCAST_PICKED_SET_CHANGED);
-        data.putExtra(BROADCAST_EXTRA_DATA, addedMeta);
-        LocalBroadcastManager.getInstance(this).sendBroadcast(data);
+        PickedSetStore.getInstance().notifyPickedSetChanged(addedMeta);
     }
 
     @Override
@@ -363,9 +354,8 @@ public class WatcherActivity extends AppCompatActivity implements
     }
 
     @Override
-    public void sendEnsureBroadcast() {
-        Intent data = new Intent(BROADCAST_PICKED_SET_ENSURE);
-        LocalBroadcastManager.getInstance(this).sendBroadcast(data);
+    public void notifyPickedSetEnsure() {
+        PickedSetStore.getInstance().notifyPickedSetEnsure();
     }
 
     ////////////////////////////////////////// DraggableViewPager.Callback /////////////////////////////////////////////
@@ -53,7 +53,7 @@ interface WatcherContract {
 
         void showMsg(@NonNull String msg);
 
-        void sendEnsureBroadcast();
+        void notifyPickedSetEnsure();
 
         void finish();
     }
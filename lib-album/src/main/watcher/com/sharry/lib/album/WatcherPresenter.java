@@ -148,7 +148,7 @@ class WatcherPresenter implements WatcherContract.IPresenter {
             mView.showMsg(mView.getString(R.string.lib_album_watcher_tips_ensure_failed));
             return;
         }
-        mView.sendEnsureBroadcast();
+        mView.notifyPickedSetEnsure();
         mView.finish();
     }
 
@@ -0,0 +1,257 @@
+package com.sharry.lib.album;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.RectF;
+import android.util.AttributeSet;
+import android.view.GestureDetector;
+import android.view.MotionEvent;
+import android.view.ScaleGestureDetector;
+import android.view.View;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * 图片裁剪的预览控件
+ * <p>
+ * 裁剪框固定在控件中央, 通过拖拽与双指缩放调整图片, 图片始终覆盖裁剪框.
+ * 展示的是降采样后的预览图, 裁剪区域以归一化坐标输出, 由调用方映射回原图.
+ *
+ * @author Sharry <a href="sharrychoochn@gmail.com">Contact me.</a>
+ * @version 1.0
+ * @since 2020-03-19 10:20
+ */
+public class CropView extends View {
+
+    /**
+     * 裁剪框占控件的最大比例
+     */
+    private static final float FRAME_RATIO = 0.8f;
+
+    /**
+     * 相对于刚好覆盖裁剪框时的最大放大倍数
+     */
+    private static final float MAX_SCALE_FACTOR = 8f;
+
+    /**
+     * 用于绘制的相关属性
+     */
+    private final Paint mBitmapPaint = new Paint(Paint.FILTER_BITMAP_FLAG | Paint.ANTI_ALIAS_FLAG);
+    private final Paint mMaskPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint mFramePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Path mMaskPath = new Path();
+    private final Matrix mMatrix = new Matrix();
+    private final RectF mFrame = new RectF();
+    private final RectF mBitmapBounds = new RectF();
+
+    /**
+     * 手势相关
+     */
+    private final GestureDetector mGestureDetector;
+    private final ScaleGestureDetector mScaleDetector;
+
+    private Bitmap mBitmap;
+    private float mAspectRatio = 1f;
+    private boolean mIsCircle;
+    private float mMinScale;
+
+    public CropView(Context context) {
+        this(context, null);
+    }
+
+    public CropView(Context context, @Nullable AttributeSet attrs) {
+        this(context, attrs, 0);
+    }
+
+    public CropView(Context context, @Nullable AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+        mMaskPaint.setColor(Color.parseColor("#99000000"));
+        mFramePaint.setColor(Color.WHITE);
+        mFramePaint.setStyle(Paint.Style.STROKE);
+        mFramePaint.setStrokeWidth(DensityUtil.dp2px(context, 1));
+        mGestureDetector = new GestureDetector(context, new GestureDetector.SimpleOnGestureListener() {
+            @Override
+            public boolean onScroll(MotionEvent e1, MotionEvent e2, float distanceX, float distanceY) {
+                mMatrix.postTranslate(-distanceX, -distanceY);
+                constrain();
+                return true;
+            }
+        });
+        mScaleDetector = new ScaleGestureDetector(context, new ScaleGestureDetector.SimpleOnScaleGestureListener() {
+            @Override
+            public boolean onScale(ScaleGestureDetector detector) {
+                float current = currentScale();
+                float target = Math.max(mMinScale, Math.min(mMinScale * MAX_SCALE_FACTOR,
+                        current * detector.getScaleFactor()));
+                mMatrix.postScale(target / current, target / current, detector.getFocusX(), detector.getFocusY());
+                constrain();
+                return true;
+            }
+        });
+    }
+
+    /**
+     * 设置裁剪框的宽高比与形状
+     */
+    public void setFrame(int aspectX, int aspectY, boolean isCircle) {
+        mAspectRatio = aspectX > 0 && aspectY > 0 ? aspectX / (float) aspectY : 1f;
+        mIsCircle = isCircle;
+        layoutFrame();
+        resetMatrix();
+        invalidate();
+    }
+
+    /**
+     * 设置预览图
+     */
+    public void setBitmap(@NonNull Bitmap bitmap) {
+        mBitmap = bitmap;
+        resetMatrix();
+        invalidate();
+    }
+
+    /**
+     * 获取裁剪区域在预览图中的归一化坐标
+     *
+     * @return 预览图未加载时返回 null
+     */
+    @Nullable
+    public RectF getCropRect() {
+        if (mBitmap == null || mFrame.isEmpty()) {
+            return null;
+        }
+        mapBitmapBounds();
+        float width = mBitmapBounds.width();
+        float height = mBitmapBounds.height();
+        return new RectF(
+                clamp((mFrame.left - mBitmapBounds.left) / width),
+                clamp((mFrame.top - mBitmapBounds.top) / height),
+                clamp((mFrame.right - mBitmapBounds.left) / width),
+                clamp((mFrame.bottom - mBitmapBounds.top) / height)
+        );
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        layoutFrame();
+        resetMatrix();
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        if (mBitmap == null) {
+            return false;
+        }
+        mScaleDetector.onTouchEvent(event);
+        mGestureDetector.onTouchEvent(event);
+        invalidate();
+        return true;
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        if (mBitmap != null) {
+            canvas.drawBitmap(mBitmap, mMatrix, mBitmapPaint);
+        }
+        if (mFrame.isEmpty()) {
+            return;
+        }
+        // 绘制裁剪框之外的遮罩
+        canvas.drawPath(mMaskPath, mMaskPaint);
+        // 绘制裁剪框
+        if (mIsCircle) {
+            canvas.drawOval(mFrame, mFramePaint);
+        } else {
+            canvas.drawRect(mFrame, mFramePaint);
+        }
+    }
+
+    /**
+     * 在控件中央布局裁剪框
+     */
+    private void layoutFrame() {
+        int width = getWidth();
+        int height = getHeight();
+        if (width == 0 || height == 0) {
+            return;
+        }
+        float frameWidth = width * FRAME_RATIO;
+        float frameHeight = frameWidth / mAspectRatio;
+        if (frameHeight > height * FRAME_RATIO) {
+            frameHeight = height * FRAME_RATIO;
+            frameWidth = frameHeight * mAspectRatio;
+        }
+        mFrame.set(
+                (width - frameWidth) / 2,
+                (height - frameHeight) / 2,
+                (width + frameWidth) / 2,
+                (height + frameHeight) / 2
+        );
+        mMaskPath.reset();
+        mMaskPath.setFillType(Path.FillType.EVEN_ODD);
+        mMaskPath.addRect(0, 0, width, height, Path.Direction.CW);
+        if (mIsCircle) {
+            mMaskPath.addOval(mFrame, Path.Direction.CW);
+        } else {
+            mMaskPath.addRect(mFrame, Path.Direction.CW);
+        }
+    }
+
+    /**
+     * 将图片缩放到刚好覆盖裁剪框, 并居中
+     */
+    private void resetMatrix() {
+        if (mBitmap == null || mFrame.isEmpty()) {
+            return;
+        }
+        mMinScale = Math.max(mFrame.width() / mBitmap.getWidth(), mFrame.height() / mBitmap.getHeight());
+        mMatrix.setScale(mMinScale, mMinScale);
+        mMatrix.postTranslate(
+                mFrame.centerX() - mBitmap.getWidth() * mMinScale / 2,
+                mFrame.centerY() - mBitmap.getHeight() * mMinScale / 2
+        );
+    }
+
+    /**
+     * 约束图片的位置, 保证裁剪框始终位于图片内部
+     */
+    private void constrain() {
+        mapBitmapBounds();
+        float dx = 0;
+        float dy = 0;
+        if (mBitmapBounds.left > mFrame.left) {
+            dx = mFrame.left - mBitmapBounds.left;
+        } else if (mBitmapBounds.right < mFrame.right) {
+            dx = mFrame.right - mBitmapBounds.right;
+        }
+        if (mBitmapBounds.top > mFrame.top) {
+            dy = mFrame.top - mBitmapBounds.top;
+        } else if (mBitmapBounds.bottom < mFrame.bottom) {
+            dy = mFrame.bottom - mBitmapBounds.bottom;
+        }
+        mMatrix.postTranslate(dx, dy);
+    }
+
+    private void mapBitmapBounds() {
+        mBitmapBounds.set(0, 0, mBitmap.getWidth(), mBitmap.getHeight());
+        mMatrix.mapRect(mBitmapBounds);
+    }
+
+    private float currentScale() {
+        float[] values = new float[9];
+        mMatrix.getValues(values);
+        return values[Matrix.MSCALE_X];
+    }
+
+    private static float clamp(float value) {
+        return Math.max(0f, Math.min(1f, value));
+    }
+
+}
@@ -0,0 +1,137 @@
+package com.sharry.lib.album;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.channels.FileChannel;
+
+import static com.sharry.lib.album.Constants.MIME_TYPE_GIF;
+import static com.sharry.lib.album.Constants.MIME_TYPE_HEIF;
+import static com.sharry.lib.album.Constants.MIME_TYPE_JPEG;
+import static com.sharry.lib.album.Constants.MIME_TYPE_PNG;
+import static com.sharry.lib.album.Constants.MIME_TYPE_WEBP;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link ImageHeader} 的解析测试
+ * <p>
+ * 测试图片均为 4x3, WebP 与 HEIF 仅包含文件头.
+ *
+ * @author Sharry <a href="sharrychoochn@gmail.com">Contact me.</a>
+ * @version 1.0
+ * @since 2020-03-26 10:20
+ */
+public class ImageHeaderTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void readJpeg() throws Exception {
+        assertHeader(read("sample.jpg"), MIME_TYPE_JPEG, 4, 3, 0);
+    }
+
+    @Test
+    public void readJpegWithExifOrientation() throws Exception {
+        // EXIF 方向 6 表示需要顺时针旋转 90 度
+        assertHeader(read("exif_orientation_6.jpg"), MIME_TYPE_JPEG, 4, 3, 90);
+    }
+
+    @Test
+    public void readPng() throws Exception {
+        assertHeader(read("sample.png"), MIME_TYPE_PNG, 4, 3, 0);
+    }
+
+    @Test
+    public void readGif() throws Exception {
+        assertHeader(read("sample.gif"), MIME_TYPE_GIF, 4, 3, 0);
+    }
+
+    @Test
+    public void readLossyWebP() throws Exception {
+        assertHeader(read("lossy.webp"), MIME_TYPE_WEBP, 4, 3, 0);
+    }
+
+    @Test
+    public void readLosslessWebP() throws Exception {
+        assertHeader(read("lossless.webp"), MIME_TYPE_WEBP, 4, 3, 0);
+    }
+
+    @Test
+    public void readExtendedWebP() throws Exception {
+        assertHeader(read("extended.webp"), MIME_TYPE_WEBP, 4, 3, 0);
+    }
+
+    @Test
+    public void readHeif() throws Exception {
+        // 取面积最大的 ispe, irot 为逆时针 90 度
+        assertHeader(read("rotated.heic"), MIME_TYPE_HEIF, 4, 3, 270);
+    }
+
+    @Test
+    public void readUnknown() throws Exception {
+        File file = temporaryFolder.newFile("unknown.txt");
+        FileOutputStream fos = new FileOutputStream(file);
+        try {
+            fos.write("This is not an image file.".getBytes("UTF-8"));
+        } finally {
+            fos.close();
+        }
+        ImageHeader header = read(file);
+        assertNull(header.mimeType);
+        assertFalse(header.isValid());
+    }
+
+    @Test
+    public void readKeepsChannelPosition() throws Exception {
+        RandomAccessFile file = new RandomAccessFile(resource("exif_orientation_6.jpg"), "r");
+        try {
+            FileChannel channel = file.getChannel();
+            channel.position(5);
+            ImageHeader.read(channel);
+            assertEquals(5, channel.position());
+        } finally {
+            file.close();
+        }
+    }
+
+    private static void assertHeader(ImageHeader header, String mimeType, int width, int height, int angle) {
+        assertEquals(mimeType, header.mimeType);
+        assertEquals(width, header.width);
+        assertEquals(height, header.height);
+        assertEquals(angle, header.angle);
+        assertTrue(header.isValid());
+    }
+
+    private static ImageHeader read(String name) throws IOException, URISyntaxException {
+        return read(resource(name));
+    }
+
+    private static ImageHeader read(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            return ImageHeader.read(raf.getChannel());
+        } finally {
+            raf.close();
+        }
+    }
+
+    private static File resource(String name) throws URISyntaxException {
+        URL url = ImageHeaderTest.class.getClassLoader().getResource("image_header/" + name);
+        if (url == null) {
+            throw new IllegalArgumentException("Missing test resource: " + name);
+        }
+        return new File(url.toURI());
+    }
+
+}
@@ -20,6 +20,40 @@
  */
 #define OPENSLES_PCM_PROVIDER_CLASS_NAME "com/sharry/lib/media/recorder/OpenSLESPCMProvider"
 
+/**
+ * 每个录制槽位的字节数
+ */
 #define RECORD_BUFFER_SIZE 4096
 
+/**
+ * 初始交给 OpenSL ES 的槽位数, 回调延迟时会继续加深
+ */
+#define RECORD_QUEUED_BUFFER_COUNT 2
+
+/**
+ * 录制的 PCM 格式
+ */
+#define RECORD_SAMPLE_RATE 44100
+#define RECORD_CHANNEL_COUNT 2
+#define RECORD_BYTES_PER_SAMPLE 2
+
+/**
+ * 传递给 Java 层的统计数据的下标
+ */
+#define RECORD_STATS_SLOT_COUNT 0
+#define RECORD_STATS_QUEUED_COUNT 1
+#define RECORD_STATS_FILLED_COUNT 2
+#define RECORD_STATS_MAX_FILLED_COUNT 3
+#define RECORD_STATS_RECORDED_COUNT 4
+#define RECORD_STATS_OVERRUN_COUNT 5
+#define RECORD_STATS_LATE_CALLBACK_COUNT 6
+#define RECORD_STATS_LENGTH 7
+
+/**
+ * 等待写满的槽位失败时的返回值, 与 Java 层保持一致
+ * 超时可以继续等待, 错误或未启动时读取线程需要退出
+ */
+#define RECORD_ACQUIRE_TIMEOUT -1
+#define RECORD_ACQUIRE_ERROR -2
+
 #endif //SMEDIA_RECORDER_CONSTDEFINE_H
@@ -4,12 +4,21 @@
 
 #include <cassert>
 #include <pthread.h>
+#include <time.h>
 #include "OpenSLRecorder.h"
 #include "ConstDefine.h"
 
-OpenSLRecorder::OpenSLRecorder(JNICall *jni_call) {
-    this->jni_call = jni_call;
-    this->buffer = new RecordBuffer(RECORD_BUFFER_SIZE);
+static int64_t nowUs() {
+    struct timespec now;
+    clock_gettime(CLOCK_MONOTONIC, &now);
+    return now.tv_sec * 1000000LL + now.tv_nsec / 1000;
+}
+
+OpenSLRecorder::OpenSLRecorder(RecordBuffer *buffer) : last_callback_time_us(0) {
+    this->buffer = buffer;
+    this->max_queued_count = buffer->slot_count / 2;
+    this->slot_duration_us = 1000000LL * buffer->slot_size
+                             / (RECORD_SAMPLE_RATE * RECORD_CHANNEL_COUNT * RECORD_BYTES_PER_SAMPLE);
 }
 
 OpenSLRecorder::~OpenSLRecorder() {
@@ -34,31 +43,60 @@ void recordCallback(SLAndroidSimpleBufferQueueItf caller, void *context) {
     OpenSLRecorder *impl = static_cast<OpenSLRecorder *>(context);
     // 记录 OpenSL 录制线程的数据
     impl->thread_opensl_es_recode = pthread_self();
-    // 通过 JNI 将数据回调到 Java 层
-    impl->jni_call->callOnPCMChanged(reinterpret_cast<uint8_t *>(impl->buffer->getNowBuffer()),
-                                     RECORD_BUFFER_SIZE);
-    // 将下一个 buffer 入队列
-    (*caller)->Enqueue(caller, impl->buffer->getRecordBuffer(), RECORD_BUFFER_SIZE);
+    impl->onRecordCallback(caller);
+}
+
+void OpenSLRecorder::onRecordCallback(SLAndroidSimpleBufferQueueItf caller) {
+    // 将写满的槽位交给 Java 层, 下一个槽位入队列, 不做 JNI 调用
+    (*caller)->Enqueue(caller, buffer->onRecordBufferFilled(), buffer->slot_size);
+    // 回调间隔超过 1.5 倍的槽位时长, 说明系统负载较高, 多入队一个槽位
+    int64_t now = nowUs();
+    int64_t last = last_callback_time_us.exchange(now, std::memory_order_relaxed);
+    if (last > 0 && now - last > slot_duration_us * 3 / 2) {
+        buffer->late_callback_count.fetch_add(1, std::memory_order_relaxed);
+        if (buffer->getQueuedCount() < max_queued_count) {
+            uint8_t *extra = buffer->obtainRecordBuffer();
+            if (extra != NULL) {
+                (*caller)->Enqueue(caller, extra, buffer->slot_size);
+            }
+        }
+    }
 }
 
-void OpenSLRecorder::start() {
+bool OpenSLRecorder::start() {
     initOpenSLES();
-    (*sl_itf_recorder)->SetRecordState(sl_itf_recorder, SL_RECORDSTATE_RECORDING);
+    // 缺少录音权限或设备被占用时无法获取录制接口
+    if (sl_itf_recorder == NULL || sl_itf_record_buffer_queue == NULL) {
+        LOGE("Create OpenSL ES recorder failed.");
+        return false;
+    }
+    SLresult result = (*sl_itf_recorder)->SetRecordState(sl_itf_recorder, SL_RECORDSTATE_RECORDING);
+    if (result != SL_RESULT_SUCCESS) {
+        LOGE("Start OpenSL ES recorder failed, result = %d", result);
+        return false;
+    }
+    return true;
 }
 
 void OpenSLRecorder::pause() {
     if (sl_itf_recorder != NULL) {
+        last_callback_time_us.store(0, std::memory_order_relaxed);
         (*sl_itf_recorder)->SetRecordState(sl_itf_recorder, SL_RECORDSTATE_PAUSED);
     }
 }
 
 void OpenSLRecorder::resume() {
     if (sl_itf_recorder != NULL) {
+        last_callback_time_us.store(0, std::memory_order_relaxed);
         (*sl_itf_recorder)->SetRecordState(sl_itf_recorder, SL_RECORDSTATE_RECORDING);
     }
 }
 
 void OpenSLRecorder::stop() {
+    if (stopped || sl_itf_recorder == NULL) {
+        return;
+    }
+    stopped = true;
     // 停止 OpenSL ES 的录制
     (*sl_itf_recorder)->SetRecordState(sl_itf_recorder, SL_RECORDSTATE_STOPPED);
     // 等待录制线程终止
@@ -84,10 +122,12 @@ void OpenSLRecorder::initOpenSLES() {
                                       SL_DEFAULTDEVICEID_AUDIOINPUT, NULL};
     SLDataSource audio_src = {&loc_dev, NULL};
     // 创建 pAudioSnk
-    SLDataLocator_AndroidSimpleBufferQueue loc_bq = {SL_DATALOCATOR_ANDROIDSIMPLEBUFFERQUEUE, 2};
+    // 队列容量按最大深度创建, 初始只入队 RECORD_QUEUED_BUFFER_COUNT 个槽位
+    SLDataLocator_AndroidSimpleBufferQueue loc_bq = {SL_DATALOCATOR_ANDROIDSIMPLEBUFFERQUEUE,
+                                                     static_cast<SLuint32>(max_queued_count)};
     SLDataFormat_PCM format_pcm = {
             SL_DATAFORMAT_PCM,
-            2,                                                          // 通道数
+            RECORD_CHANNEL_COUNT,                                       // 通道数
             SL_SAMPLINGRATE_44_1,                                       // 采样率
             SL_PCMSAMPLEFORMAT_FIXED_16, SL_PCMSAMPLEFORMAT_FIXED_16,
             SL_SPEAKER_FRONT_LEFT | SL_SPEAKER_FRONT_RIGHT,             // 通道布局
@@ -112,7 +152,9 @@ void OpenSLRecorder::initOpenSLES() {
     /// 设置队列与回调
     (*sl_itf_record_buffer_queue)->RegisterCallback(sl_itf_record_buffer_queue, recordCallback,
                                                     this);
-    // 主动回调一次, 后面会自动开启录制
-    (*sl_itf_record_buffer_queue)->Enqueue(sl_itf_record_buffer_queue, buffer->getRecordBuffer(),
-                                           RECORD_BUFFER_SIZE);
+    // 填满缓冲队列, 后面会自动开启录制
+    for (int i = 0; i < RECORD_QUEUED_BUFFER_COUNT; ++i) {
+        (*sl_itf_record_buffer_queue)->Enqueue(sl_itf_record_buffer_queue,
+                                               buffer->obtainRecordBuffer(), buffer->slot_size);
+    }
 }
\ No newline at end of file
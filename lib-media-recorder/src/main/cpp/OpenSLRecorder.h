@@ -9,16 +9,34 @@
 #include <SLES/OpenSLES_Android.h>
 #include <sys/types.h>
 #include "RecordBuffer.h"
-#include "JNICall.h"
 #include <pthread.h>
+#include <stdint.h>
+#include <atomic>
 
 class OpenSLRecorder {
 
 public:
-    JNICall *jni_call;
     RecordBuffer *buffer;
     pthread_t thread_opensl_es_recode;
 
+    /**
+     * 缓冲队列的最大深度, 至少留出一半的槽位给 Java 层读取
+     */
+    int max_queued_count;
+    /**
+     * 上一次回调的时间, 用于判断回调是否延迟
+     * 回调线程读写, 暂停与恢复时由调用线程重置
+     */
+    std::atomic<int64_t> last_callback_time_us;
+    /**
+     * 每个槽位对应的录制时长
+     */
+    int64_t slot_duration_us;
+    /**
+     * 是否已经停止录制, stop 可能先于析构调用
+     */
+    bool stopped = false;
+
     /**
      * OpenSL ES 相关变量
      */
@@ -29,19 +47,30 @@ public:
     SLRecordItf sl_itf_recorder = NULL;
     SLAndroidSimpleBufferQueueItf sl_itf_record_buffer_queue = NULL;
 
-    OpenSLRecorder(JNICall *jni_call);
+    OpenSLRecorder(RecordBuffer *buffer);
 
     ~OpenSLRecorder();
 
-    void start();
+    /**
+     * @return 是否成功开始录制
+     */
+    bool start();
 
     void pause();
 
     void resume();
 
+    /**
+     * 停止录制并等待回调线程退出, 之后不会再有槽位写满, 可重复调用
+     */
     void stop();
 
     void initOpenSLES();
+
+    /**
+     * 回调延迟时加深缓冲队列, 避免 OpenSL ES 内部溢出
+     */
+    void onRecordCallback(SLAndroidSimpleBufferQueueItf caller);
 };
 
 
@@ -2,32 +2,144 @@
 // Created by Sharry Choo on 2019-08-26.
 //
 
+#include <errno.h>
+#include <time.h>
 #include "RecordBuffer.h"
+#include "ConstDefine.h"
 
-RecordBuffer::RecordBuffer(int buffer_size) {
-    buffer = new short *[2];
-    for (int i = 0; i < 2; ++i) {
-        buffer[i] = new short[buffer_size];
+////////////////////////////////////////////////////////////////////////////
+// SlotQueue
+////////////////////////////////////////////////////////////////////////////
+
+SlotQueue::SlotQueue(int capacity) : head(0), tail(0) {
+    this->capacity = capacity;
+    this->slots = new int[capacity];
+}
+
+SlotQueue::~SlotQueue() {
+    delete[] slots;
+}
+
+bool SlotQueue::push(int slot) {
+    uint32_t t = tail.load(std::memory_order_relaxed);
+    if (t - head.load(std::memory_order_acquire) >= static_cast<uint32_t>(capacity)) {
+        return false;
+    }
+    slots[t % capacity] = slot;
+    tail.store(t + 1, std::memory_order_release);
+    return true;
+}
+
+bool SlotQueue::pop(int *slot) {
+    uint32_t h = head.load(std::memory_order_relaxed);
+    if (h == tail.load(std::memory_order_acquire)) {
+        return false;
+    }
+    *slot = slots[h % capacity];
+    head.store(h + 1, std::memory_order_release);
+    return true;
+}
+
+int SlotQueue::size() const {
+    return static_cast<int>(tail.load(std::memory_order_acquire)
+                            - head.load(std::memory_order_acquire));
+}
+
+////////////////////////////////////////////////////////////////////////////
+// RecordBuffer
+////////////////////////////////////////////////////////////////////////////
+
+RecordBuffer::RecordBuffer(uint8_t *memory, int slot_count, int slot_size)
+        : recorded_count(0), overrun_count(0), late_callback_count(0), max_filled_count(0),
+          pending_dropped_count(0),
+          free_slots(slot_count), queued_slots(slot_count), filled_slots(slot_count) {
+    this->memory = memory;
+    this->slot_count = slot_count;
+    this->slot_size = slot_size;
+    this->dropped_before = new int[slot_count]();
+    sem_init(&filled_semaphore, 0, 0);
+    for (int i = 0; i < slot_count; ++i) {
+        free_slots.push(i);
     }
 }
 
 RecordBuffer::~RecordBuffer() {
-    for (int i = 0; i < 2; ++i) {
-        delete buffer[i];
+    sem_destroy(&filled_semaphore);
+    delete[] dropped_before;
+    // 内存由 Java 层持有, 这里不做释放
+    memory = NULL;
+}
+
+uint8_t *RecordBuffer::obtainRecordBuffer() {
+    int slot;
+    if (!free_slots.pop(&slot)) {
+        return NULL;
+    }
+    queued_slots.push(slot);
+    return memory + slot * slot_size;
+}
+
+uint8_t *RecordBuffer::onRecordBufferFilled() {
+    int filled;
+    queued_slots.pop(&filled);
+    recorded_count.fetch_add(1, std::memory_order_relaxed);
+    int next;
+    if (free_slots.pop(&next)) {
+        // 交给消费者, 槽位号通过队列的 release 语义发布, 消费者能看到写入的溢出数
+        dropped_before[filled] = pending_dropped_count;
+        pending_dropped_count = 0;
+        filled_slots.push(filled);
+        sem_post(&filled_semaphore);
+        int filled_count = filled_slots.size();
+        if (filled_count > max_filled_count.load(std::memory_order_relaxed)) {
+            max_filled_count.store(filled_count, std::memory_order_relaxed);
+        }
+    } else {
+        // 消费者跟不上, 丢弃该槽位的数据重新录制
+        next = filled;
+        overrun_count.fetch_add(1, std::memory_order_relaxed);
+        pending_dropped_count++;
     }
-    delete buffer;
+    queued_slots.push(next);
+    return memory + next * slot_size;
 }
 
-short *RecordBuffer::getRecordBuffer() {
-    index++;
-    if (index > 1) {
-        index = 0;
+int RecordBuffer::acquireFilledOffset(int timeout_ms) {
+    struct timespec deadline;
+    clock_gettime(CLOCK_REALTIME, &deadline);
+    deadline.tv_sec += timeout_ms / 1000;
+    deadline.tv_nsec += (timeout_ms % 1000) * 1000000L;
+    if (deadline.tv_nsec >= 1000000000L) {
+        deadline.tv_sec += 1;
+        deadline.tv_nsec -= 1000000000L;
     }
-    return buffer[index];
+    while (sem_timedwait(&filled_semaphore, &deadline) != 0) {
+        if (errno == ETIMEDOUT) {
+            return RECORD_ACQUIRE_TIMEOUT;
+        }
+        if (errno != EINTR) {
+            return RECORD_ACQUIRE_ERROR;
+        }
+    }
+    int slot;
+    if (!filled_slots.pop(&slot)) {
+        return RECORD_ACQUIRE_TIMEOUT;
+    }
+    return slot * slot_size;
+}
+
+void RecordBuffer::releaseFilledOffset(int offset) {
+    free_slots.push(offset / slot_size);
 }
 
-short *RecordBuffer::getNowBuffer() {
-    return buffer[index];
+int RecordBuffer::getDroppedCountBefore(int offset) const {
+    return dropped_before[offset / slot_size];
 }
 
+int RecordBuffer::getQueuedCount() const {
+    return queued_slots.size();
+}
 
+int RecordBuffer::getFilledCount() const {
+    return filled_slots.size();
+}
@@ -6,22 +6,128 @@
 #define SMEDIA_RECORDBUFFER_H
 
 
+#include <atomic>
+#include <semaphore.h>
 #include <stdint.h>
 
+/**
+ * 单生产者单消费者的无锁槽位队列
+ */
+class SlotQueue {
+
+public:
+    SlotQueue(int capacity);
+
+    ~SlotQueue();
+
+    bool push(int slot);
+
+    bool pop(int *slot);
+
+    int size() const;
+
+private:
+    int *slots;
+    int capacity;
+    /**
+     * 只由消费者写入
+     */
+    std::atomic<uint32_t> head;
+    /**
+     * 只由生产者写入
+     */
+    std::atomic<uint32_t> tail;
+
+};
+
+/**
+ * 录制缓冲区
+ *
+ * 内存由 Java 层的 Direct ByteBuffer 提供, 按 slot_size 切分为 slot_count 个槽位, 每个槽位依次处于以下状态:
+ * 1. 空闲: 等待交给 OpenSL ES
+ * 2. 录制中: 在 OpenSL ES 的缓冲队列中
+ * 3. 已写满: 等待 Java 层读取, 读取完毕后归还为空闲
+ *
+ * 生产者为 OpenSL ES 的回调线程, 消费者为 Java 层的读取线程, 两者之间通过无锁队列交换槽位, 回调线程从不阻塞.
+ * 没有空闲槽位时, 写满的槽位不会交给 Java 层, 而是直接重新录制, 并记为一次溢出;
+ * 溢出的槽位数记录在下一个交给 Java 层的槽位上.
+ */
 class RecordBuffer {
 
 public:
-    short **buffer;
-    int index = -1;
+    uint8_t *memory;
+    int slot_count;
+    int slot_size;
+
+    /**
+     * 统计数据
+     */
+    std::atomic<int64_t> recorded_count;
+    std::atomic<int64_t> overrun_count;
+    std::atomic<int64_t> late_callback_count;
+    std::atomic<int> max_filled_count;
+
+private:
+    /**
+     * 尚未交给 Java 层的溢出槽位数, 只由生产者访问
+     */
+    int pending_dropped_count;
+    /**
+     * 每个写满的槽位之前紧邻溢出的槽位数, 随槽位一同交给消费者, 保证静音补在丢弃的位置
+     */
+    int *dropped_before;
+
+    SlotQueue free_slots;
+    SlotQueue queued_slots;
+    SlotQueue filled_slots;
+    sem_t filled_semaphore;
+
 public:
-    RecordBuffer(int buffer_size);
+    RecordBuffer(uint8_t *memory, int slot_count, int slot_size);
 
     ~RecordBuffer();
 
 public:
-    short *getRecordBuffer();
+    /**
+     * 取出一个空闲槽位交给 OpenSL ES, 在生产者线程调用
+     *
+     * @return 槽位的地址, 没有空闲槽位时返回 NULL
+     */
+    uint8_t *obtainRecordBuffer();
+
+    /**
+     * 最早交给 OpenSL ES 的槽位已写满, 在生产者线程调用
+     *
+     * @return 下一个交给 OpenSL ES 的槽位
+     */
+    uint8_t *onRecordBufferFilled();
+
+    /**
+     * 等待一个写满的槽位, 在消费者线程调用
+     *
+     * @return 槽位在内存中的偏移量, 超时返回 RECORD_ACQUIRE_TIMEOUT, 出错返回 RECORD_ACQUIRE_ERROR
+     */
+    int acquireFilledOffset(int timeout_ms);
+
+    /**
+     * 归还读取完毕的槽位, 在消费者线程调用
+     */
+    void releaseFilledOffset(int offset);
+
+    /**
+     * 获取紧邻该槽位之前溢出丢弃的槽位数, 在消费者线程中读取该槽位之前调用, 用于补齐时间轴
+     */
+    int getDroppedCountBefore(int offset) const;
+
+    /**
+     * @return 在 OpenSL ES 缓冲队列中的槽位数
+     */
+    int getQueuedCount() const;
 
-    short *getNowBuffer();
+    /**
+     * @return 等待读取的槽位数
+     */
+    int getFilledCount() const;
 
 };
 
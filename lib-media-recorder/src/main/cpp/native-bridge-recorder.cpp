@@ -4,19 +4,15 @@
 
 
 #include <jni.h>
+#include <pthread.h>
 #include "ConstDefine.h"
 #include "OpenSLRecorder.h"
-#include "JNICall.h"
-
-JavaVM *gJavaVM = NULL;
 
 int registerNativeMethods(JNIEnv *env, jclass cls);
 
 extern "C"
 JNIEXPORT jint JNICALL
 JNI_OnLoad(JavaVM *javaVM, void *reserverd) {
-    // 通过初始化方法获取 JavaVM
-    gJavaVM = javaVM;
     JNIEnv *env;
     if (javaVM->GetEnv(reinterpret_cast<void **>(&env), JNI_VERSION_1_6) != JNI_OK) {
         return -1;
@@ -38,54 +34,156 @@ JNI_OnLoad(JavaVM *javaVM, void *reserverd) {
 namespace openslesprovider {
 
     OpenSLRecorder *pRecorder = NULL;
-    JNICall *pJniCall = NULL;
+    /**
+     * 保护 pRecorder 的生命周期
+     * 创建与销毁持有写锁, 其他访问持有读锁, 避免 UI 线程获取统计数据时与 stop 并发导致访问已释放的内存
+     */
+    pthread_rwlock_t recorderLock = PTHREAD_RWLOCK_INITIALIZER;
 
-    void nativeStart(JNIEnv *, jobject jobj) {
+    /**
+     * @return 是否成功开始录制
+     */
+    jboolean nativeStart(JNIEnv *env, jobject, jobject jbuffer) {
+        pthread_rwlock_wrlock(&recorderLock);
+        jboolean started = JNI_FALSE;
         if (pRecorder == NULL) {
-            pJniCall = new JNICall(gJavaVM, jobj);
-            pRecorder = new OpenSLRecorder(pJniCall);
-            pRecorder->start();
+            // 录制的数据直接写入 Java 层的 Direct ByteBuffer
+            uint8_t *memory = static_cast<uint8_t *>(env->GetDirectBufferAddress(jbuffer));
+            int slot_count = static_cast<int>(env->GetDirectBufferCapacity(jbuffer) / RECORD_BUFFER_SIZE);
+            if (memory == NULL || slot_count < RECORD_QUEUED_BUFFER_COUNT * 2) {
+                LOGE("Invalid pcm buffer, need at least %d slots of %d bytes.",
+                     RECORD_QUEUED_BUFFER_COUNT * 2, RECORD_BUFFER_SIZE);
+                pthread_rwlock_unlock(&recorderLock);
+                return JNI_FALSE;
+            }
+            pRecorder = new OpenSLRecorder(new RecordBuffer(memory, slot_count, RECORD_BUFFER_SIZE));
+            if (pRecorder->start()) {
+                started = JNI_TRUE;
+            } else {
+                delete pRecorder;
+                pRecorder = NULL;
+            }
         } else {
             LOGI("Please stop first");
         }
+        pthread_rwlock_unlock(&recorderLock);
+        return started;
     }
 
     void nativePause(JNIEnv *, jobject) {
+        pthread_rwlock_rdlock(&recorderLock);
         if (pRecorder != NULL) {
             pRecorder->pause();
         }
+        pthread_rwlock_unlock(&recorderLock);
     }
 
     void nativeResume(JNIEnv *, jobject) {
+        pthread_rwlock_rdlock(&recorderLock);
         if (pRecorder != NULL) {
             pRecorder->resume();
         }
+        pthread_rwlock_unlock(&recorderLock);
+    }
+
+    /**
+     * 等待一个写满的槽位, 由 Java 层的读取线程调用
+     *
+     * @return 槽位在 Direct ByteBuffer 中的偏移量, 超时返回 RECORD_ACQUIRE_TIMEOUT, 出错或未启动返回 RECORD_ACQUIRE_ERROR
+     */
+    jint nativeAcquire(JNIEnv *, jobject, jint timeout_ms) {
+        // 等待期间持有读锁, stop 最多等待一次超时, destroy 由 Java 层在读取线程退出后调用, 不会因此阻塞
+        pthread_rwlock_rdlock(&recorderLock);
+        jint offset = RECORD_ACQUIRE_ERROR;
+        if (pRecorder != NULL) {
+            offset = pRecorder->buffer->acquireFilledOffset(timeout_ms);
+        }
+        pthread_rwlock_unlock(&recorderLock);
+        return offset;
+    }
+
+    void nativeRelease(JNIEnv *, jobject, jint offset) {
+        pthread_rwlock_rdlock(&recorderLock);
+        if (pRecorder != NULL) {
+            pRecorder->buffer->releaseFilledOffset(offset);
+        }
+        pthread_rwlock_unlock(&recorderLock);
+    }
+
+    /**
+     * @return 紧邻该槽位之前溢出丢弃的字节数
+     */
+    jint nativeGetDroppedBytesBefore(JNIEnv *, jobject, jint offset) {
+        pthread_rwlock_rdlock(&recorderLock);
+        jint dropped_bytes = 0;
+        if (pRecorder != NULL) {
+            dropped_bytes = pRecorder->buffer->getDroppedCountBefore(offset) * pRecorder->buffer->slot_size;
+        }
+        pthread_rwlock_unlock(&recorderLock);
+        return dropped_bytes;
     }
 
+    void nativeGetStats(JNIEnv *env, jobject, jlongArray jstats) {
+        if (env->GetArrayLength(jstats) < RECORD_STATS_LENGTH) {
+            return;
+        }
+        pthread_rwlock_rdlock(&recorderLock);
+        if (pRecorder == NULL) {
+            pthread_rwlock_unlock(&recorderLock);
+            return;
+        }
+        RecordBuffer *buffer = pRecorder->buffer;
+        jlong stats[RECORD_STATS_LENGTH];
+        stats[RECORD_STATS_SLOT_COUNT] = buffer->slot_count;
+        stats[RECORD_STATS_QUEUED_COUNT] = buffer->getQueuedCount();
+        stats[RECORD_STATS_FILLED_COUNT] = buffer->getFilledCount();
+        stats[RECORD_STATS_MAX_FILLED_COUNT] = buffer->max_filled_count.load();
+        stats[RECORD_STATS_RECORDED_COUNT] = buffer->recorded_count.load();
+        stats[RECORD_STATS_OVERRUN_COUNT] = buffer->overrun_count.load();
+        stats[RECORD_STATS_LATE_CALLBACK_COUNT] = buffer->late_callback_count.load();
+        pthread_rwlock_unlock(&recorderLock);
+        env->SetLongArrayRegion(jstats, 0, RECORD_STATS_LENGTH, stats);
+    }
+
+    /**
+     * 停止录制, 已写满的槽位仍然可以读取
+     */
     void nativeStop(JNIEnv *, jobject) {
+        pthread_rwlock_wrlock(&recorderLock);
         if (pRecorder != NULL) {
             pRecorder->stop();
         }
-        if (pJniCall != NULL) {
-            delete pJniCall;
-            pJniCall = NULL;
-        }
+        pthread_rwlock_unlock(&recorderLock);
+        LOGI("OpenSL ES recorder stopped.");
+    }
+
+    /**
+     * 释放录制器与缓冲区, 由 Java 层在读取线程退出后调用
+     */
+    void nativeDestroy(JNIEnv *, jobject) {
+        pthread_rwlock_wrlock(&recorderLock);
         if (pRecorder != NULL) {
+            pRecorder->stop();
             delete pRecorder;
             pRecorder = NULL;
         }
-        LOGI("OpenSL ES recorder stopped.");
+        pthread_rwlock_unlock(&recorderLock);
+        LOGI("OpenSL ES recorder destroyed.");
     }
 
 }
 
 JNINativeMethod gBridgeMethods[] = {
-        {"nativeStart",  "()V", (void *) openslesprovider::nativeStart},
-        {"nativePause",  "()V", (void *) openslesprovider::nativePause},
-        {"nativeResume", "()V", (void *) openslesprovider::nativeResume},
-        {"nativeStop",   "()V", (void *) openslesprovider::nativeStop}
+        {"nativeStart",                 "(Ljava/nio/ByteBuffer;)Z", (void *) openslesprovider::nativeStart},
+        {"nativePause",                 "()V",                      (void *) openslesprovider::nativePause},
+        {"nativeResume",                "()V",                      (void *) openslesprovider::nativeResume},
+        {"nativeAcquire",               "(I)I",                     (void *) openslesprovider::nativeAcquire},
+        {"nativeRelease",               "(I)V",                     (void *) openslesprovider::nativeRelease},
+        {"nativeGetDroppedBytesBefore", "(I)I",                     (void *) openslesprovider::nativeGetDroppedBytesBefore},
+        {"nativeGetStats",              "([J)V",                    (void *) openslesprovider::nativeGetStats},
+        {"nativeStop",                  "()V",                      (void *) openslesprovider::nativeStop},
+        {"nativeDestroy",               "()V",                      (void *) openslesprovider::nativeDestroy}
 };
-
 int registerNativeMethods(JNIEnv *env, jclass cls) {
     return env->RegisterNatives(cls, gBridgeMethods,
                                 sizeof(gBridgeMethods) / sizeof(gBridgeMethods[0]));
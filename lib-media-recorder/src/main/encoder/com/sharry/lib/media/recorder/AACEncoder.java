@@ -3,14 +3,19 @@ package com.sharry.lib.media.recorder;
 import android.media.MediaCodec;
 import android.media.MediaCodecInfo;
 import android.media.MediaFormat;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.annotation.RequiresApi;
 
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
 
 /**
  * ACC 音频的编码器
@@ -32,6 +37,12 @@ public class AACEncoder implements IAudioEncoder {
 
     private static final int ACC_HEADER_ADTS_LENGTH = 7;
 
+    /**
+     * 等待空闲输入缓冲的最长时长, 超时后丢弃该段 PCM 数据
+     */
+    private static final long INPUT_BUFFER_TIMEOUT_US = 100 * 1000;
+    private static final long DEQUEUE_TIMEOUT_US = 10 * 1000;
+
     private static final String MIME_TYPE = MediaFormat.MIMETYPE_AUDIO_AAC;  // 当前编码器要编码的类型描述
     private final MediaCodec.BufferInfo mBufferInfo = new MediaCodec.BufferInfo();
     private FileOutputStream mFileOutputSteam;
@@ -39,6 +50,14 @@ public class AACEncoder implements IAudioEncoder {
     private MediaCodec mImpl;
     private long mPts = 0;
 
+    /**
+     * API 23 以上使用异步模式, 编码器在 {@link #mCallbackThread} 中回调空闲的输入缓冲与输出数据,
+     * PCM 数据源的线程只负责填充输入缓冲
+     */
+    private HandlerThread mCallbackThread;
+    private Handler mCallbackHandler;
+    private final ArrayDeque<Integer> mInputBufferIndices = new ArrayDeque<>();
+
     @Override
     public void prepare(@NonNull Context context) throws IOException {
         mContext = context;
@@ -56,6 +75,12 @@ public class AACEncoder implements IAudioEncoder {
         }
         // 初始化编码器
         mImpl = MediaCodec.createEncoderByType(MIME_TYPE);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            mCallbackThread = new HandlerThread(TAG);
+            mCallbackThread.start();
+            mCallbackHandler = new Handler(mCallbackThread.getLooper());
+            mImpl.setCallback(new EncodeCallback(), mCallbackHandler);
+        }
         mImpl.configure(audioFormat, null, null, MediaCodec.CONFIGURE_FLAG_ENCODE);
         mImpl.start();
     }
@@ -66,7 +91,7 @@ public class AACEncoder implements IAudioEncoder {
             return;
         }
         // 1. 将输入流传递给编码器的 inputBuffer 队列, 等待编码
-        final int indexOfInputBuffer = mImpl.dequeueInputBuffer(0);
+        final int indexOfInputBuffer = dequeueInputBuffer();
         if (indexOfInputBuffer >= 0) {
             final ByteBuffer inputBuffer;
             if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.LOLLIPOP) {
@@ -84,10 +109,86 @@ public class AACEncoder implements IAudioEncoder {
                     mContext.perSampleSize);
             mImpl.queueInputBuffer(indexOfInputBuffer, 0, pcmBytes.length, mPts, 0);
         } else {
-            // ignore.
+            // 丢弃该段数据, 时间戳照常累加, 保持与视频同步
+            Log.w(TAG, "No input buffer available, drop " + pcmBytes.length + " bytes.");
+            calcPresentationTimeUs(pcmBytes.length, mContext.sampleRate, mContext.channelCount,
+                    mContext.perSampleSize);
+            return;
+        }
+        // 2. 异步模式下编码后的数据在回调线程中输出
+        if (mCallbackThread != null) {
+            return;
+        }
+        // 3. 从 MediaCodec 中获取编码后的数据
+        drainOutputBuffers();
+    }
+
+    @Override
+    public void stop() {
+        if (mImpl == null) {
             return;
         }
-        // 2. 从 MediaCodec 中获取编码后的数据
+        if (mCallbackThread != null) {
+            // 在回调线程中释放, 保证释放之后不会再处理回调
+            mCallbackHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    releaseCodec();
+                }
+            });
+            mCallbackThread.quitSafely();
+            try {
+                mCallbackThread.join();
+            } catch (InterruptedException e) {
+                Log.w(TAG, e.getMessage(), e);
+            }
+            mCallbackThread = null;
+            mCallbackHandler = null;
+            synchronized (mInputBufferIndices) {
+                mInputBufferIndices.clear();
+            }
+        } else {
+            releaseCodec();
+        }
+        mImpl = null;
+    }
+
+    /**
+     * 获取空闲的输入缓冲, 最多等待 {@link #INPUT_BUFFER_TIMEOUT_US}
+     *
+     * @return 输入缓冲的索引, 超时返回 -1
+     */
+    private int dequeueInputBuffer() {
+        long deadlineNanos = System.nanoTime() + INPUT_BUFFER_TIMEOUT_US * 1000;
+        if (mCallbackThread == null) {
+            int index;
+            while ((index = mImpl.dequeueInputBuffer(DEQUEUE_TIMEOUT_US)) < 0
+                    && System.nanoTime() < deadlineNanos) {
+                // 同步模式下输出缓冲被占满时, 编码器不会再释放输入缓冲
+                drainOutputBuffers();
+            }
+            return index;
+        }
+        synchronized (mInputBufferIndices) {
+            long remainingNanos;
+            while (mInputBufferIndices.isEmpty()
+                    && (remainingNanos = deadlineNanos - System.nanoTime()) > 0) {
+                try {
+                    mInputBufferIndices.wait(remainingNanos / 1000000, (int) (remainingNanos % 1000000));
+                } catch (InterruptedException e) {
+                    Log.w(TAG, e.getMessage(), e);
+                    break;
+                }
+            }
+            Integer index = mInputBufferIndices.poll();
+            return index != null ? index : -1;
+        }
+    }
+
+    /**
+     * 同步模式下获取编码后的数据, 直到没有可用的输出
+     */
+    private void drainOutputBuffers() {
         boolean isAvailable = true;
         while (isAvailable) {
             int indexOfOutputBuffer = mImpl.dequeueOutputBuffer(mBufferInfo, 0);
@@ -104,49 +205,50 @@ public class AACEncoder implements IAudioEncoder {
                         isAvailable = false;
                         break;
                     }
-                    // 获取数据
-                    final ByteBuffer outBuffer;
-                    if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.LOLLIPOP) {
-                        outBuffer = mImpl.getOutputBuffer(indexOfOutputBuffer);
-                    } else {
-                        outBuffer = mImpl.getOutputBuffers()[indexOfOutputBuffer];
-                    }
-                    if (null == outBuffer) {
-                        isAvailable = false;
-                        break;
-                    }
-                    outBuffer.position(mBufferInfo.offset);
-                    outBuffer.limit(mBufferInfo.offset + mBufferInfo.size);
-                    // 回调音频编码数据
-                    mContext.callback.onAudioEncoded(outBuffer, mBufferInfo);
-                    // 写到文件
-                    writeToFile(outBuffer, mBufferInfo);
-                    // 释放 encoderStatus 索引处的输出缓冲流
-                    mImpl.releaseOutputBuffer(indexOfOutputBuffer, false);
+                    handleOutputBuffer(indexOfOutputBuffer, mBufferInfo);
                     break;
             }
         }
     }
 
-    @Override
-    public void stop() {
-        if (mImpl != null) {
-            try {
-                mImpl.flush();
-            } catch (Throwable e) {
-                Log.w(TAG, e.getMessage(), e);
-            }
-            try {
-                mImpl.stop();
-            } catch (Throwable e) {
-                Log.w(TAG, e.getMessage(), e);
-            }
-            try {
-                mImpl.release();
-            } catch (Throwable e) {
-                Log.w(TAG, e.getMessage(), e);
-            }
-            mImpl = null;
+    /**
+     * 处理编码后的数据
+     */
+    private void handleOutputBuffer(int index, @NonNull MediaCodec.BufferInfo bufferInfo) {
+        // 获取数据
+        final ByteBuffer outBuffer;
+        if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.LOLLIPOP) {
+            outBuffer = mImpl.getOutputBuffer(index);
+        } else {
+            outBuffer = mImpl.getOutputBuffers()[index];
+        }
+        if (null != outBuffer) {
+            outBuffer.position(bufferInfo.offset);
+            outBuffer.limit(bufferInfo.offset + bufferInfo.size);
+            // 回调音频编码数据
+            mContext.callback.onAudioEncoded(outBuffer, bufferInfo);
+            // 写到文件
+            writeToFile(outBuffer, bufferInfo);
+        }
+        // 释放 encoderStatus 索引处的输出缓冲流
+        mImpl.releaseOutputBuffer(index, false);
+    }
+
+    private void releaseCodec() {
+        try {
+            mImpl.flush();
+        } catch (Throwable e) {
+            Log.w(TAG, e.getMessage(), e);
+        }
+        try {
+            mImpl.stop();
+        } catch (Throwable e) {
+            Log.w(TAG, e.getMessage(), e);
+        }
+        try {
+            mImpl.release();
+        } catch (Throwable e) {
+            Log.w(TAG, e.getMessage(), e);
         }
     }
 
@@ -237,4 +339,35 @@ public class AACEncoder implements IAudioEncoder {
         return frequencyId;
     }
 
+    /**
+     * 异步模式的编码回调
+     */
+    @RequiresApi(Build.VERSION_CODES.LOLLIPOP)
+    private final class EncodeCallback extends MediaCodec.Callback {
+
+        @Override
+        public void onInputBufferAvailable(@NonNull MediaCodec codec, int index) {
+            synchronized (mInputBufferIndices) {
+                mInputBufferIndices.offer(index);
+                mInputBufferIndices.notify();
+            }
+        }
+
+        @Override
+        public void onOutputBufferAvailable(@NonNull MediaCodec codec, int index,
+                                            @NonNull MediaCodec.BufferInfo info) {
+            handleOutputBuffer(index, info);
+        }
+
+        @Override
+        public void onError(@NonNull MediaCodec codec, @NonNull MediaCodec.CodecException e) {
+            Log.e(TAG, e.getMessage(), e);
+        }
+
+        @Override
+        public void onOutputFormatChanged(@NonNull MediaCodec codec, @NonNull MediaFormat format) {
+            mContext.callback.onAudioFormatChanged(format);
+        }
+    }
+
 }
@@ -3,15 +3,22 @@ package com.sharry.lib.media.recorder;
 import android.media.MediaCodec;
 import android.media.MediaCodecInfo;
 import android.media.MediaFormat;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
 import android.util.Log;
 import android.view.Surface;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.RequiresApi;
 
 import com.sharry.lib.opengles.util.EglCore;
+import com.sharry.lib.opengles.util.GlResourcePool;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 /**
  * H.264 编码类
@@ -29,8 +36,19 @@ public class H264Encoder implements IVideoEncoder {
      */
     private static final String MIME_TYPE = "video/avc";
 
-    private final Object mPauseLock = new Object();
-    private final MediaCodec.BufferInfo mBufferInfo = new MediaCodec.BufferInfo();
+    private static final long NO_FRAME = -1;
+
+    /**
+     * 同步模式下阻塞获取输出缓冲的超时时长
+     */
+    private static final long DEQUEUE_TIMEOUT_US = 10 * 1000;
+
+    /**
+     * 等待编码器输出结束流的最长时长
+     */
+    private static final long END_OF_STREAM_TIMEOUT_MS = 3000;
+
+    private final Object mFrameLock = new Object();
 
     /**
      * 以下的属性在 prepare 中初始化
@@ -39,11 +57,27 @@ public class H264Encoder implements IVideoEncoder {
     private Context mContext;
     private Surface mInputSurface;
     private RendererThread mRenderThread;
+    private CountDownLatch mOutputEndedLatch;
+
+    /**
+     * API 23 以上使用异步模式, 输出数据在 {@link #mCallbackThread} 中回调;
+     * 否则由 {@link #mEncodeThread} 阻塞获取
+     */
+    private HandlerThread mCallbackThread;
+    private Handler mCallbackHandler;
     private EncodeThread mEncodeThread;
 
     private volatile boolean mIsEncoding;
     private volatile boolean mIsPausing;
 
+    /**
+     * 以下字段由 {@link #mFrameLock} 保护
+     */
+    private boolean mIsInputEnded;
+    private boolean mIsResumed;
+    private int mPendingTextureId;
+    private long mPendingTimestamp = NO_FRAME;
+
     @Override
     public void prepare(@NonNull Context context) throws IOException {
         mContext = context;
@@ -52,21 +86,32 @@ public class H264Encoder implements IVideoEncoder {
         mediaFormat.setInteger(MediaFormat.KEY_I_FRAME_INTERVAL, 1);
         mediaFormat.setInteger(MediaFormat.KEY_FRAME_RATE, mContext.frameRate);
         mediaFormat.setInteger(MediaFormat.KEY_BIT_RATE, mContext.frameWidth * mContext.frameHeight * 4);
-        // 创建编码器
+        mOutputEndedLatch = new CountDownLatch(1);
+        // 创建编码器, 异步模式的回调需要在 configure 之前设置
         mImpl = MediaCodec.createEncoderByType(MIME_TYPE);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            mCallbackThread = new HandlerThread(TAG);
+            mCallbackThread.start();
+            mCallbackHandler = new Handler(mCallbackThread.getLooper());
+            mImpl.setCallback(new EncodeCallback(), mCallbackHandler);
+        } else {
+            mEncodeThread = new EncodeThread();
+        }
         mImpl.configure(mediaFormat, null, null, MediaCodec.CONFIGURE_FLAG_ENCODE);
         // 将 Camera 中的数据拷贝到这个 Surface 上, 当做输入流
         mInputSurface = mImpl.createInputSurface();
         // 创建线程
         mRenderThread = new RendererThread();
-        mEncodeThread = new EncodeThread();
     }
 
     @Override
     public void start() {
         mIsEncoding = true;
+        mImpl.start();
         mRenderThread.start();
-        mEncodeThread.start();
+        if (mEncodeThread != null) {
+            mEncodeThread.start();
+        }
     }
 
     @Override
@@ -77,19 +122,20 @@ public class H264Encoder implements IVideoEncoder {
     @Override
     public void resume() {
         mIsPausing = false;
-        synchronized (mPauseLock) {
-            mPauseLock.notify();
+        synchronized (mFrameLock) {
+            mIsResumed = true;
+            mFrameLock.notify();
         }
     }
 
     @Override
     public void stop() {
         mIsPausing = false;
-        synchronized (mPauseLock) {
-            mPauseLock.notify();
+        // 停止绘制, 之后不会再向输入 Surface 写入数据
+        synchronized (mFrameLock) {
+            mIsInputEnded = true;
+            mFrameLock.notify();
         }
-        // 使用这个方法, 通知 MediaCodec 渲染结束
-        mImpl.signalEndOfInputStream();
         try {
             mRenderThread.join();
         } catch (Throwable e) {
@@ -97,148 +143,278 @@ public class H264Encoder implements IVideoEncoder {
         } finally {
             mRenderThread = null;
         }
+        // 使用这个方法, 通知 MediaCodec 渲染结束, 等待剩余的数据输出完毕
+        mImpl.signalEndOfInputStream();
         try {
-            mEncodeThread.join();
-        } catch (Throwable e) {
+            if (!mOutputEndedLatch.await(END_OF_STREAM_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                Log.w(TAG, "Wait for end of stream timeout.");
+            }
+        } catch (InterruptedException e) {
             Log.w(TAG, e.getMessage(), e);
-        } finally {
-            mEncodeThread = null;
+        }
+        mIsEncoding = false;
+        // 在输出数据的线程中释放编码器
+        if (mEncodeThread != null) {
+            try {
+                mEncodeThread.join();
+            } catch (Throwable e) {
+                Log.w(TAG, e.getMessage(), e);
+            } finally {
+                mEncodeThread = null;
+            }
+        } else {
+            mCallbackHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    releaseCodec();
+                }
+            });
+            mCallbackThread.quitSafely();
+            try {
+                mCallbackThread.join();
+            } catch (Throwable e) {
+                Log.w(TAG, e.getMessage(), e);
+            } finally {
+                mCallbackThread = null;
+                mCallbackHandler = null;
+            }
+        }
+    }
+
+    @Override
+    public void onFrameAvailable(int textureId, long timestampNanos) {
+        synchronized (mFrameLock) {
+            // 编码线程未取走的帧直接被覆盖
+            mPendingTextureId = textureId;
+            mPendingTimestamp = timestampNanos;
+            mFrameLock.notify();
         }
     }
 
     /**
      * 录制的渲染线程
+     * <p>
+     * 由预览帧驱动绘制, 以数据源的时间戳计算 PTS:
+     * 1. 时间戳未变化的帧不做绘制
+     * 2. 通过令牌桶将编码帧率限制在 {@link Context#frameRate}, 允许 {@link #BURST_FRAMES} 帧的抖动
+     * 3. 暂停期间的时长从 PTS 中扣除, 与只在录制期间累计时长的音频 PTS 保持同步
      */
     private final class RendererThread extends Thread {
 
-        private final long mFrameIntervalMills;
+        private static final int BURST_FRAMES = 2;
+
+        private final long mFrameIntervalNanos;
         private final EglCore mEglCore;
+        private final GlResourcePool mResourcePool;
         private final H264Render mRenderer;
         private boolean mIsContextCreated = true;
         private boolean mIsSizeChanged = true;
-        private long nextFramePts;
+
+        /**
+         * 上一次编码的帧的时间戳与 PTS
+         */
+        private long mLastTimestamp = NO_FRAME;
+        private long mLastPts;
+
+        /**
+         * PTS 为 0 时对应的时间戳
+         */
+        private long mTimestampOffset;
+
+        /**
+         * 令牌桶中剩余的时长
+         */
+        private long mAllowanceNanos;
 
         RendererThread() {
             mEglCore = new EglCore();
+            mResourcePool = new GlResourcePool();
             mRenderer = new H264Render(mContext.textureId);
-            mFrameIntervalMills = 800L / mContext.frameRate;
+            mFrameIntervalNanos = 1000L * 1000 * 1000 / mContext.frameRate;
         }
 
         @Override
         public void run() {
-            while (mIsEncoding) {
-                if (mIsPausing) {
-                    synchronized (mPauseLock) {
+            while (true) {
+                int textureId;
+                long timestamp;
+                boolean isResumed;
+                // 等待新的预览帧
+                synchronized (mFrameLock) {
+                    while (!mIsInputEnded && (mIsPausing || mPendingTimestamp == NO_FRAME)) {
                         try {
-                            mPauseLock.wait();
+                            mFrameLock.wait();
                         } catch (InterruptedException e) {
                             Log.w(TAG, e.getMessage());
                         }
                     }
+                    if (mIsInputEnded) {
+                        break;
+                    }
+                    textureId = mPendingTextureId;
+                    timestamp = mPendingTimestamp;
+                    isResumed = mIsResumed;
+                    mPendingTimestamp = NO_FRAME;
+                    mIsResumed = false;
+                }
+                if (mLastTimestamp == NO_FRAME || isResumed) {
+                    onFirstFrame(timestamp);
+                } else if (!acquireFrame(timestamp)) {
                     continue;
                 }
                 if (mIsContextCreated) {
                     // 初始化创建 EGL 环境，然后回调 Renderer
                     mEglCore.initialize(mInputSurface, mContext.eglContext);
+                    mResourcePool.attachToCurrentThread();
                     mRenderer.onAttach();
                     mIsContextCreated = false;
                 }
-                // 说明手机横竖屏切换, 导致尺寸变更了
                 if (mIsSizeChanged) {
                     mRenderer.onSizeChanged(mContext.frameWidth, mContext.frameHeight);
-                    mIsSizeChanged = true;
+                    mIsSizeChanged = false;
                 }
-                // 不停的绘制
+                // 绘制该帧
+                long pts = timestamp - mTimestampOffset;
+                mRenderer.setTextureId(textureId);
                 mRenderer.onDraw();
-                mEglCore.setPresentationTime(nextFramePts);
+                mEglCore.setPresentationTime(pts);
                 mEglCore.swapBuffers();
-                // 更新下一帧渲染时间
-                nextFramePts += mFrameIntervalMills * 1000 * 1000;
-                // 睡眠一下, 等待下次绘制
-                try {
-                    sleep(mFrameIntervalMills);
-                } catch (InterruptedException e) {
-                    // ignore.
-                }
+                mLastTimestamp = timestamp;
+                mLastPts = pts;
             }
             onDestroy();
         }
 
+        /**
+         * 开始录制或暂停恢复后的第一帧
+         */
+        private void onFirstFrame(long timestamp) {
+            if (mLastTimestamp == NO_FRAME) {
+                mTimestampOffset = timestamp;
+            } else {
+                // 紧接暂停前的最后一帧
+                mTimestampOffset = timestamp - (mLastPts + mFrameIntervalNanos);
+            }
+            mAllowanceNanos = mFrameIntervalNanos * (BURST_FRAMES - 1);
+        }
+
+        /**
+         * @return {@code false} 画面未变化或超过了帧率上限, 跳过该帧
+         */
+        private boolean acquireFrame(long timestamp) {
+            long elapsed = timestamp - mLastTimestamp;
+            if (elapsed <= 0) {
+                return false;
+            }
+            mAllowanceNanos = Math.min(mAllowanceNanos + elapsed, mFrameIntervalNanos * BURST_FRAMES);
+            if (mAllowanceNanos < mFrameIntervalNanos) {
+                return false;
+            }
+            mAllowanceNanos -= mFrameIntervalNanos;
+            return true;
+        }
+
         private void onDestroy() {
+            if (!mIsContextCreated) {
+                mRenderer.onDetach();
+            }
+            mResourcePool.detachFromCurrentThread();
             mEglCore.release();
         }
     }
 
     /**
-     * 录制编码的线程
+     * 处理编码器输出的数据
+     */
+    private void handleOutputBuffer(int index, @NonNull MediaCodec.BufferInfo bufferInfo) {
+        // 存在 BUFFER_FLAG_END_OF_STREAM flag 则说明渲染结束了
+        if ((bufferInfo.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
+            mImpl.releaseOutputBuffer(index, false);
+            mOutputEndedLatch.countDown();
+            return;
+        }
+        ByteBuffer outputBuffer;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            outputBuffer = mImpl.getOutputBuffer(index);
+        } else {
+            outputBuffer = mImpl.getOutputBuffers()[index];
+        }
+        if (null != outputBuffer) {
+            outputBuffer.position(bufferInfo.offset);
+            outputBuffer.limit(bufferInfo.offset + bufferInfo.size);
+            mContext.callback.onVideoEncoded(outputBuffer, bufferInfo);
+        }
+        // 释放指定位置的输出缓冲流
+        mImpl.releaseOutputBuffer(index, false);
+    }
+
+    private void releaseCodec() {
+        try {
+            mImpl.flush();
+        } catch (Exception e) {
+            Log.w(TAG, e.getMessage(), e);
+        }
+        try {
+            mImpl.stop();
+        } catch (Throwable e) {
+            Log.w(TAG, e.getMessage(), e);
+        }
+        try {
+            mImpl.release();
+        } catch (Throwable e) {
+            Log.w(TAG, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 异步模式的编码回调, 输入数据来自 Surface, 无需处理输入缓冲
+     */
+    @RequiresApi(Build.VERSION_CODES.LOLLIPOP)
+    private final class EncodeCallback extends MediaCodec.Callback {
+
+        @Override
+        public void onInputBufferAvailable(@NonNull MediaCodec codec, int index) {
+            // nothing.
+        }
+
+        @Override
+        public void onOutputBufferAvailable(@NonNull MediaCodec codec, int index,
+                                            @NonNull MediaCodec.BufferInfo info) {
+            if (mIsEncoding) {
+                handleOutputBuffer(index, info);
+            }
+        }
+
+        @Override
+        public void onError(@NonNull MediaCodec codec, @NonNull MediaCodec.CodecException e) {
+            Log.e(TAG, e.getMessage(), e);
+            mOutputEndedLatch.countDown();
+        }
+
+        @Override
+        public void onOutputFormatChanged(@NonNull MediaCodec codec, @NonNull MediaFormat format) {
+            mContext.callback.onVideoFormatChanged(format);
+        }
+    }
+
+    /**
+     * 同步模式的编码线程, 阻塞等待输出缓冲
      */
-    public final class EncodeThread extends Thread {
+    private final class EncodeThread extends Thread {
+
+        private final MediaCodec.BufferInfo mBufferInfo = new MediaCodec.BufferInfo();
 
         @Override
         public void run() {
-            mImpl.start();
-            while (mIsEncoding) {
-                if (mIsPausing) {
-                    synchronized (mPauseLock) {
-                        try {
-                            mPauseLock.wait();
-                        } catch (InterruptedException e) {
-                            e.printStackTrace();
-                        }
-                    }
-                    continue;
-                }
-                int indexOfOutputBuffer = mImpl.dequeueOutputBuffer(mBufferInfo, 0);
-                switch (indexOfOutputBuffer) {
-                    case MediaCodec.INFO_TRY_AGAIN_LATER:
-                    case  MediaCodec.INFO_OUTPUT_BUFFERS_CHANGED:
-                        break;
-                    case   MediaCodec.INFO_OUTPUT_FORMAT_CHANGED:
-                        mContext.callback.onVideoFormatChanged(mImpl.getOutputFormat());
-                        break;
-                    default:
-                        if (indexOfOutputBuffer < 0) {
-                            continue;
-                        }
-                        // 存在 BUFFER_FLAG_END_OF_STREAM flag 则说明渲染结束了
-                        if ((mBufferInfo.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
-                            mIsEncoding = false;
-                            continue;
-                        }
-                        // 处理编码后的输出数据
-                        ByteBuffer outputBuffer;
-                        if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.LOLLIPOP) {
-                            outputBuffer = mImpl.getOutputBuffer(indexOfOutputBuffer);
-                        } else {
-                            outputBuffer = mImpl.getOutputBuffers()[indexOfOutputBuffer];
-                        }
-                        if (null == outputBuffer) {
-                            continue;
-                        }
-                        outputBuffer.position(mBufferInfo.offset);
-                        outputBuffer.limit(mBufferInfo.offset + mBufferInfo.size);
-                        // 回调 onAudioEncoded
-                        mContext.callback.onVideoEncoded(outputBuffer, mBufferInfo);
-                        // 3.2 释放指定位置的输出缓冲流
-                        mImpl.releaseOutputBuffer(indexOfOutputBuffer, false);
-                        break;
+            while (mIsEncoding && mOutputEndedLatch.getCount() > 0) {
+                int indexOfOutputBuffer = mImpl.dequeueOutputBuffer(mBufferInfo, DEQUEUE_TIMEOUT_US);
+                if (indexOfOutputBuffer == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+                    mContext.callback.onVideoFormatChanged(mImpl.getOutputFormat());
+                } else if (indexOfOutputBuffer >= 0) {
+                    handleOutputBuffer(indexOfOutputBuffer, mBufferInfo);
                 }
             }
-            try {
-                mImpl.flush();
-            } catch (Exception e) {
-                Log.w(TAG, e.getMessage(), e);
-            }
-            try {
-                mImpl.stop();
-            } catch (Throwable e) {
-                Log.w(TAG, e.getMessage(), e);
-            }
-            try {
-                mImpl.release();
-            } catch (Throwable e) {
-                Log.w(TAG, e.getMessage(), e);
-            }
+            releaseCodec();
         }
     }
 
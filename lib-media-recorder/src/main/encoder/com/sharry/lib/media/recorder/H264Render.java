@@ -3,33 +3,11 @@ package com.sharry.lib.media.recorder;
 import android.opengl.GLES20;
 
 import com.sharry.lib.opengles.texture.ITextureRenderer;
-
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-import java.nio.FloatBuffer;
+import com.sharry.lib.opengles.util.FullscreenQuad;
+import com.sharry.lib.opengles.util.GlResourcePool;
 
 public class H264Render implements ITextureRenderer {
 
-    /**
-     * 顶点坐标
-     */
-    private float[] mVertexCoordinate = new float[]{
-            -1f, 1f,
-            -1f, -1f,
-            1f, 1f,
-            1f, -1f
-    };
-
-    /**
-     * 纹理坐标
-     */
-    private float[] mFragmentCoordinate = new float[]{
-            0f, 1f,
-            0f, 0f,
-            1f, 1f,
-            1f, 0f
-    };
-
     private static final String vertexSource = "attribute vec4 v_Position;\n" +
             "attribute vec2 f_Position;\n" +
             "varying vec2 ft_Position;\n" +
@@ -45,9 +23,7 @@ public class H264Render implements ITextureRenderer {
             "    gl_FragColor=texture2D(sTexture, ft_Position);\n" +
             "}\n";
 
-    private FloatBuffer mVertexBuffer;
-    private FloatBuffer mFragmentBuffer;
-    private int mVboId;
+    private FullscreenQuad mQuad;
     private int mProgram;
     private int vPosition;
     private int fPosition;
@@ -55,8 +31,13 @@ public class H264Render implements ITextureRenderer {
 
     H264Render(int textureId) {
         mTextureId = textureId;
-        mVertexBuffer = createBuffer(mVertexCoordinate);
-        mFragmentBuffer = createBuffer(mFragmentCoordinate);
+    }
+
+    /**
+     * 预览器输出的纹理可能随渲染器切换而变化, 每一帧绘制前更新
+     */
+    void setTextureId(int textureId) {
+        mTextureId = textureId;
     }
 
     @Override
@@ -65,20 +46,8 @@ public class H264Render implements ITextureRenderer {
         // 获取坐标
         vPosition = GLES20.glGetAttribLocation(mProgram, "v_Position");
         fPosition = GLES20.glGetAttribLocation(mProgram, "f_Position");
-        // 创建 vbos
-        int[] vBos = new int[1];
-        GLES20.glGenBuffers(1, vBos, 0);
-        // 绑定 vbos
-        mVboId = vBos[0];
-        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, mVboId);
-        // 开辟 vbos
-        GLES20.glBufferData(GLES20.GL_ARRAY_BUFFER, (mVertexCoordinate.length + mFragmentCoordinate.length) * 4,
-                null, GLES20.GL_STATIC_DRAW);
-        // 赋值 vbos
-        GLES20.glBufferSubData(GLES20.GL_ARRAY_BUFFER, 0, mVertexCoordinate.length * 4, mVertexBuffer);
-        GLES20.glBufferSubData(GLES20.GL_ARRAY_BUFFER, mVertexCoordinate.length * 4,
-                mFragmentCoordinate.length * 4, mFragmentBuffer);
-        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+        // 获取共享的 vbo
+        mQuad = GlResourcePool.current().acquireFullscreenQuad();
     }
 
     @Override
@@ -92,19 +61,9 @@ public class H264Render implements ITextureRenderer {
         GLES20.glUseProgram(mProgram);
         // 绑定纹理
         GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, mTextureId);
-        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, mVboId);
-        // 给顶点坐标赋值
-        GLES20.glEnableVertexAttribArray(vPosition);
-        GLES20.glVertexAttribPointer(vPosition, 2, GLES20.GL_FLOAT,
-                false, 8, 0);
-        // 给纹理坐标赋值
-        GLES20.glEnableVertexAttribArray(fPosition);
-        GLES20.glVertexAttribPointer(fPosition, 2, GLES20.GL_FLOAT, false,
-                8, mVertexCoordinate.length * 4);
-        // 绘制到屏幕
-        GLES20.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
+        // 给顶点坐标与纹理坐标赋值, 绘制到屏幕
+        mQuad.draw(vPosition, fPosition);
         // 解绑
-        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
         GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, 0);
     }
 
@@ -114,24 +73,13 @@ public class H264Render implements ITextureRenderer {
         if (mProgram != 0) {
             GLES20.glDeleteProgram(mProgram);
         }
-        // 释放 VBO
-        if (mVboId != 0) {
-            int size = 1;
-            int[] vboIds = new int[size];
-            vboIds[0] = mVboId;
-            GLES20.glDeleteBuffers(1, vboIds, 0);
+        // 归还 VBO
+        if (mQuad != null) {
+            mQuad.release();
+            mQuad = null;
         }
     }
 
-    private FloatBuffer createBuffer(float[] vertexData) {
-        FloatBuffer buffer = ByteBuffer.allocateDirect(vertexData.length * 4)
-                .order(ByteOrder.nativeOrder())
-                .asFloatBuffer();
-        buffer.put(vertexData, 0, vertexData.length)
-                .position(0);
-        return buffer;
-    }
-
     private int createProgram(String vertexSource, String fragmentSource) {
         // 分别加载创建着色器
         int vertexShaderId = compileShader(GLES20.GL_VERTEX_SHADER, vertexSource);
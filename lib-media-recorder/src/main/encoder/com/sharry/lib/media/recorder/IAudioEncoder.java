@@ -25,6 +25,8 @@ public interface IAudioEncoder {
 
     /**
      * 执行编码
+     * <p>
+     * 在编码器空闲之前可能会阻塞, 不要在音频采集的回调线程中直接调用
      */
     void encode(@Nullable byte[] inputBytes) throws Throwable;
 
@@ -31,6 +31,14 @@ public interface IVideoEncoder {
 
     void stop();
 
+    /**
+     * 预览帧渲染完成, 在预览器的渲染线程中调用, 实现中不可阻塞
+     *
+     * @param textureId      预览器输出的纹理 ID
+     * @param timestampNanos 该帧的时间戳, 用于计算 PTS
+     */
+    void onFrameAvailable(int textureId, long timestampNanos);
+
     interface Callback {
 
         /**
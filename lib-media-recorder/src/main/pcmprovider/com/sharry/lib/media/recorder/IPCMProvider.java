@@ -1,7 +1,10 @@
 package com.sharry.lib.media.recorder;
 
+import androidx.annotation.NonNull;
 import androidx.annotation.WorkerThread;
 
+import java.nio.ByteBuffer;
+
 /**
  * 音频 PCM 数据源的提供者
  *
@@ -28,4 +31,27 @@ public interface IPCMProvider {
 
     }
 
+    /**
+     * 支持直接读取 PCM 缓冲区的监听器, 数据源支持时不再拷贝到数组中回调
+     */
+    interface OnPCMBufferAvailableListener extends OnPCMChangedListener {
+
+        /**
+         * @param pcmBuffer position 到 limit 之间为本次的 PCM 数据, 仅在回调期间有效, 需要在返回前读取完毕
+         */
+        @WorkerThread
+        void onPCMBufferAvailable(@NonNull ByteBuffer pcmBuffer);
+
+        /**
+         * 数据源内部溢出, 丢弃了部分数据
+         * <p>
+         * 按数据流的顺序回调, 即在丢弃处之后的数据之前回调, 接收方可以在当前位置补齐
+         *
+         * @param droppedBytes 丢弃的字节数, 接收方可以据此补齐时间轴
+         */
+        @WorkerThread
+        void onPCMDropped(int droppedBytes);
+
+    }
+
 }
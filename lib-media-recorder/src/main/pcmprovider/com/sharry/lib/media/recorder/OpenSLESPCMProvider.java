@@ -1,23 +1,101 @@
 package com.sharry.lib.media.recorder;
 
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
 /**
  * 使用 OpenSL ES 实现的音频录制引擎
+ * <p>
+ * 录制的数据由 native 层直接写入 {@link #mPCMBuffer} 中的槽位, native 层与 {@link #mReadThread} 之间
+ * 通过无锁的环形队列交换槽位:
+ * 1. OpenSL ES 的回调线程不做 JNI 调用, 从不阻塞
+ * 2. 读取不及时导致没有空闲槽位时, native 层丢弃最新的数据并记录溢出, 丢弃的字节数在紧随其后的槽位之前通知给监听器
+ * 3. 回调出现延迟时, native 层会加深 OpenSL ES 的缓冲队列, 最多占用一半的槽位
+ * 4. 停止时先停止录制, 读取完已写满的槽位后再释放 native 层的缓冲区
  *
  * @author Sharry <a href="xiaoyu.zhu@1hai.cn">Contact me.</a>
  * @version 1.0
  * @since 2019-08-26 15:34
  */
-public class OpenSLESPCMProvider implements IPCMProvider, IPCMProvider.OnPCMChangedListener {
+public class OpenSLESPCMProvider implements IPCMProvider {
 
     static {
         System.loadLibrary("smedia-recorder");
     }
 
-    private OnPCMChangedListener listener;
+    private static final String TAG = OpenSLESPCMProvider.class.getSimpleName();
+
+    /**
+     * 每个槽位的大小, 与 native 层的 RECORD_BUFFER_SIZE 保持一致
+     */
+    private static final int SLOT_SIZE = 4096;
+
+    /**
+     * 槽位数量的默认值与最小值, 每个槽位约 23ms
+     */
+    private static final int DEFAULT_SLOT_COUNT = 16;
+    private static final int MIN_SLOT_COUNT = 4;
+
+    /**
+     * 读取线程每次等待的时长, 用于及时响应停止
+     */
+    private static final int ACQUIRE_TIMEOUT_MS = 100;
+
+    /**
+     * 等待槽位失败时的返回值, 与 native 层的 RECORD_ACQUIRE_XXX 保持一致
+     */
+    private static final int ACQUIRE_TIMEOUT = -1;
+    private static final int ACQUIRE_ERROR = -2;
+
+    /**
+     * 统计数据的下标, 与 native 层的 RECORD_STATS_XXX 保持一致
+     */
+    private static final int STATS_SLOT_COUNT = 0;
+    private static final int STATS_QUEUED_COUNT = 1;
+    private static final int STATS_FILLED_COUNT = 2;
+    private static final int STATS_MAX_FILLED_COUNT = 3;
+    private static final int STATS_RECORDED_COUNT = 4;
+    private static final int STATS_OVERRUN_COUNT = 5;
+    private static final int STATS_LATE_CALLBACK_COUNT = 6;
+    private static final int STATS_LENGTH = 7;
+
+    private final int mSlotCount;
+    private volatile OnPCMChangedListener listener;
+    private ByteBuffer mPCMBuffer;
+    private byte[] mPCMBytes;
+    private Thread mReadThread;
+    private volatile boolean mIsReading;
+
+    public OpenSLESPCMProvider() {
+        this(DEFAULT_SLOT_COUNT);
+    }
+
+    /**
+     * @param slotCount 环形缓冲区的槽位数量, 读取线程可能被长时间阻塞时可以适当加大
+     */
+    public OpenSLESPCMProvider(int slotCount) {
+        this.mSlotCount = Math.max(slotCount, MIN_SLOT_COUNT);
+    }
 
     @Override
     public void start() {
-        nativeStart();
+        mPCMBuffer = ByteBuffer.allocateDirect(SLOT_SIZE * mSlotCount).order(ByteOrder.nativeOrder());
+        if (!nativeStart(mPCMBuffer)) {
+            mPCMBuffer = null;
+            throw new IllegalStateException("Start OpenSL ES recorder failed.");
+        }
+        mIsReading = true;
+        mReadThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                readLoop();
+            }
+        }, TAG);
+        mReadThread.start();
     }
 
     @Override
@@ -32,30 +110,126 @@ public class OpenSLESPCMProvider implements IPCMProvider, IPCMProvider.OnPCMChan
 
     @Override
     public void stop() {
+        // 先停止录制, 返回后不会再有新的槽位写满
         nativeStop();
+        // 读取线程读完剩余的槽位后退出, 再释放 native 层的缓冲区
+        mIsReading = false;
+        if (mReadThread != null) {
+            try {
+                mReadThread.join();
+            } catch (InterruptedException e) {
+                Log.w(TAG, e.getMessage(), e);
+            }
+            mReadThread = null;
+        }
+        PCMBufferStats stats = getStats();
+        if (stats.getOverrunCount() > 0 || stats.getLateCallbackCount() > 0) {
+            Log.w(TAG, "Recording finished with " + stats);
+        }
+        nativeDestroy();
         // 防止内存泄漏
         listener = null;
+        mPCMBuffer = null;
+        mPCMBytes = null;
     }
 
     @Override
-    public void OnPCMChanged(byte[] pcmData) {
-        if (listener != null) {
-            listener.OnPCMChanged(pcmData);
+    public void setOnPCMChangedListener(OnPCMChangedListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * 获取当前录制会话的缓冲区统计数据, 可在任意线程调用
+     */
+    @NonNull
+    public PCMBufferStats getStats() {
+        long[] stats = new long[STATS_LENGTH];
+        nativeGetStats(stats);
+        return new PCMBufferStats(
+                (int) stats[STATS_SLOT_COUNT],
+                (int) stats[STATS_QUEUED_COUNT],
+                (int) stats[STATS_FILLED_COUNT],
+                (int) stats[STATS_MAX_FILLED_COUNT],
+                stats[STATS_RECORDED_COUNT],
+                stats[STATS_OVERRUN_COUNT],
+                stats[STATS_LATE_CALLBACK_COUNT]
+        );
+    }
+
+    /**
+     * 从 native 层的环形队列中读取写满的槽位, 分发给监听器
+     * <p>
+     * 停止后不再等待, 读取完剩余的槽位后退出
+     */
+    private void readLoop() {
+        ByteBuffer pcmBuffer = mPCMBuffer;
+        while (true) {
+            boolean isReading = mIsReading;
+            int offset = nativeAcquire(isReading ? ACQUIRE_TIMEOUT_MS : 0);
+            if (offset == ACQUIRE_TIMEOUT) {
+                if (isReading) {
+                    continue;
+                }
+                break;
+            }
+            if (offset <= ACQUIRE_ERROR) {
+                Log.e(TAG, "Acquire pcm buffer failed, stop reading.");
+                break;
+            }
+            // 丢弃的数据在该槽位之前, 先补齐
+            dispatchDropped(nativeGetDroppedBytesBefore(offset));
+            try {
+                dispatch(pcmBuffer, offset);
+            } finally {
+                nativeRelease(offset);
+            }
         }
     }
 
-    @Override
-    public void setOnPCMChangedListener(OnPCMChangedListener listener) {
-        this.listener = listener;
+    private void dispatchDropped(int droppedBytes) {
+        OnPCMChangedListener listener = this.listener;
+        if (droppedBytes > 0 && listener instanceof OnPCMBufferAvailableListener) {
+            ((OnPCMBufferAvailableListener) listener).onPCMDropped(droppedBytes);
+        }
+    }
+
+    private void dispatch(ByteBuffer pcmBuffer, int offset) {
+        OnPCMChangedListener listener = this.listener;
+        if (listener == null) {
+            return;
+        }
+        pcmBuffer.clear();
+        pcmBuffer.position(offset);
+        pcmBuffer.limit(offset + SLOT_SIZE);
+        if (listener instanceof OnPCMBufferAvailableListener) {
+            ((OnPCMBufferAvailableListener) listener).onPCMBufferAvailable(pcmBuffer);
+        } else {
+            // 兼容只接收数组的监听器, 数组在回调之间复用
+            if (mPCMBytes == null) {
+                mPCMBytes = new byte[SLOT_SIZE];
+            }
+            pcmBuffer.get(mPCMBytes);
+            listener.OnPCMChanged(mPCMBytes);
+        }
     }
 
     // native method.
-    private native void nativeStart();
+    private native boolean nativeStart(ByteBuffer pcmBuffer);
 
     private native void nativePause();
 
     private native void nativeResume();
 
+    private native int nativeAcquire(int timeoutMs);
+
+    private native void nativeRelease(int offset);
+
+    private native int nativeGetDroppedBytesBefore(int offset);
+
+    private native void nativeGetStats(long[] stats);
+
     private native void nativeStop();
 
+    private native void nativeDestroy();
+
 }
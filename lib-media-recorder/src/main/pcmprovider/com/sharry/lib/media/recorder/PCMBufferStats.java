@@ -0,0 +1,96 @@
+package com.sharry.lib.media.recorder;
+
+import androidx.annotation.NonNull;
+
+/**
+ * OpenSL ES 录制缓冲区的统计数据, 统计范围为当前的录制会话
+ *
+ * @author Sharry <a href="sharrychoochn@gmail.com">Contact me.</a>
+ * @version 1.0
+ * @since 2020-03-24 16:20
+ */
+public final class PCMBufferStats {
+
+    private final int slotCount;
+    private final int queuedCount;
+    private final int filledCount;
+    private final int maxFilledCount;
+    private final long recordedCount;
+    private final long overrunCount;
+    private final long lateCallbackCount;
+
+    PCMBufferStats(int slotCount, int queuedCount, int filledCount, int maxFilledCount,
+                   long recordedCount, long overrunCount, long lateCallbackCount) {
+        this.slotCount = slotCount;
+        this.queuedCount = queuedCount;
+        this.filledCount = filledCount;
+        this.maxFilledCount = maxFilledCount;
+        this.recordedCount = recordedCount;
+        this.overrunCount = overrunCount;
+        this.lateCallbackCount = lateCallbackCount;
+    }
+
+    /**
+     * 环形缓冲区的槽位总数
+     */
+    public int getSlotCount() {
+        return slotCount;
+    }
+
+    /**
+     * 当前在 OpenSL ES 缓冲队列中的槽位数, 即当前的队列深度
+     */
+    public int getQueuedCount() {
+        return queuedCount;
+    }
+
+    /**
+     * 当前等待读取的槽位数
+     */
+    public int getFilledCount() {
+        return filledCount;
+    }
+
+    /**
+     * 等待读取的槽位数的峰值
+     */
+    public int getMaxFilledCount() {
+        return maxFilledCount;
+    }
+
+    /**
+     * 已写满的槽位总数, 包括溢出丢弃的槽位
+     */
+    public long getRecordedCount() {
+        return recordedCount;
+    }
+
+    /**
+     * 读取不及时而丢弃的槽位数
+     */
+    public long getOverrunCount() {
+        return overrunCount;
+    }
+
+    /**
+     * 回调间隔超过 1.5 倍槽位时长的次数
+     */
+    public long getLateCallbackCount() {
+        return lateCallbackCount;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "PCMBufferStats{" +
+                "slotCount=" + slotCount +
+                ", queuedCount=" + queuedCount +
+                ", filledCount=" + filledCount +
+                ", maxFilledCount=" + maxFilledCount +
+                ", recordedCount=" + recordedCount +
+                ", overrunCount=" + overrunCount +
+                ", lateCallbackCount=" + lateCallbackCount +
+                '}';
+    }
+
+}
@@ -7,12 +7,14 @@ import android.media.MediaFormat;
 import android.net.Uri;
 import android.util.Log;
 
+import androidx.annotation.NonNull;
 import androidx.annotation.WorkerThread;
 
 import java.io.File;
 import java.io.FileDescriptor;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 /**
  * 音频信息录制者
@@ -21,7 +23,18 @@ import java.nio.ByteBuffer;
  * @version 1.0
  * @since 2019-07-15 17:36
  */
-final class AudioRecorder extends BaseMediaRecorder implements IAudioEncoder.Callback, IPCMProvider.OnPCMChangedListener {
+final class AudioRecorder extends BaseMediaRecorder implements IAudioEncoder.Callback,
+        IPCMProvider.OnPCMBufferAvailableListener {
+
+    /**
+     * 环形缓冲区可容纳的 PCM 时长
+     */
+    private static final int PCM_BUFFER_DURATION_MS = 1000;
+
+    /**
+     * AAC 每帧包含的采样数, 每次向编码器送入一帧的数据
+     */
+    private static final int SAMPLES_PER_FRAME = 1024;
 
     /**
      * Fields.
@@ -30,7 +43,14 @@ final class AudioRecorder extends BaseMediaRecorder implements IAudioEncoder.Cal
     private final IPCMProvider mProvider;
     private final IAudioEncoder mEncoder;
     private final IAudioEncoder.Context mEncodeContext;
+    private final PCMRingBuffer mPCMBuffer;
+    private final int mFrameBytes;
     private IAudioEncoder.Callback mEncodeCallback;
+    /**
+     * start 与 stop 可能运行在不同的线程中, 编码线程在投递前创建, 启停过程在锁内完成
+     */
+    private final Object mLifecycleLock = new Object();
+    private volatile Thread mFeedThread;
 
     AudioRecorder(Context context, Options.Audio options, IRecorderCallback callback) {
         super(context, callback);
@@ -74,6 +94,13 @@ final class AudioRecorder extends BaseMediaRecorder implements IAudioEncoder.Cal
         }
         // 创建编码实现者
         this.mEncoder = EncoderFactory.create(mOptions.getAudioEncodeType());
+        // 创建采集与编码之间的缓冲区
+        int bytesPerSample = options.getChannelLayout() * options.getPerSampleSize();
+        this.mFrameBytes = SAMPLES_PER_FRAME * bytesPerSample;
+        this.mPCMBuffer = new PCMRingBuffer(
+                Math.max(options.getSampleRate() * PCM_BUFFER_DURATION_MS / 1000, SAMPLES_PER_FRAME * 4)
+                        * bytesPerSample
+        );
     }
 
     // //////////////////////////////////// PCM 数据源回调 ////////////////////////////////////
@@ -81,11 +108,21 @@ final class AudioRecorder extends BaseMediaRecorder implements IAudioEncoder.Cal
     @Override
     @WorkerThread
     public void OnPCMChanged(byte[] pcmData) {
-        try {
-            mEncoder.encode(pcmData);
-        } catch (Throwable e) {
-            performRecordFailed(IRecorderCallback.ERROR_ENCODE_FAILED, e);
-        }
+        // 采集线程只负责拷贝, 编码在 mFeedThread 中进行
+        mPCMBuffer.write(pcmData, 0, pcmData.length);
+    }
+
+    @Override
+    @WorkerThread
+    public void onPCMBufferAvailable(@NonNull ByteBuffer pcmBuffer) {
+        mPCMBuffer.write(pcmBuffer);
+    }
+
+    @Override
+    @WorkerThread
+    public void onPCMDropped(int droppedBytes) {
+        // 数据源丢弃的数据同样以静音补齐
+        mPCMBuffer.markDropped(droppedBytes);
     }
 
     // //////////////////////////////////// 音频编码回调 ////////////////////////////////////
@@ -124,20 +161,36 @@ final class AudioRecorder extends BaseMediaRecorder implements IAudioEncoder.Cal
             return;
         }
         isRecording = true;
+        final Thread feedThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                feedEncoder();
+            }
+        }, AudioRecorder.class.getSimpleName());
+        mFeedThread = feedThread;
         AVPoolExecutor.getInstance().execute(new Runnable() {
             @Override
             public void run() {
-                // 准备编码器
-                try {
-                    mEncoder.prepare(mEncodeContext);
-                } catch (Throwable e) {
-                    performRecordFailed(IRecorderCallback.ERROR_ENCODER_PREPARE_FAILED, e);
-                }
-                // 开始录制
-                try {
-                    mProvider.start();
-                } catch (Throwable throwable) {
-                    performRecordFailed(IRecorderCallback.ERROR_START_FAILED, throwable);
+                synchronized (mLifecycleLock) {
+                    // 执行前已被停止
+                    if (!isRecording || mFeedThread != feedThread) {
+                        return;
+                    }
+                    // 准备编码器
+                    try {
+                        mEncoder.prepare(mEncodeContext);
+                    } catch (Throwable e) {
+                        performRecordFailed(IRecorderCallback.ERROR_ENCODER_PREPARE_FAILED, e);
+                        return;
+                    }
+                    // 启动编码线程
+                    feedThread.start();
+                    // 开始录制
+                    try {
+                        mProvider.start();
+                    } catch (Throwable throwable) {
+                        performRecordFailed(IRecorderCallback.ERROR_START_FAILED, throwable);
+                    }
                 }
             }
         });
@@ -205,10 +258,51 @@ final class AudioRecorder extends BaseMediaRecorder implements IAudioEncoder.Cal
 
     @Override
     protected void stop() {
-        if (isRecording) {
-            mProvider.stop();
-            mEncoder.stop();
+        Thread feedThread;
+        synchronized (mLifecycleLock) {
+            if (!isRecording) {
+                return;
+            }
             isRecording = false;
+            feedThread = mFeedThread;
+            mFeedThread = null;
+            mProvider.stop();
+            // 编码缓冲区中剩余的数据
+            mPCMBuffer.close();
+        }
+        // 在锁外等待编码线程, 编码线程出错时也会调用 stop, 此时无需等待自身
+        if (feedThread != null && feedThread != Thread.currentThread()) {
+            try {
+                feedThread.join();
+            } catch (InterruptedException e) {
+                Log.w(TAG, e.getMessage(), e);
+            }
+        }
+        if (mPCMBuffer.getOverrunCount() > 0) {
+            Log.w(TAG, "PCM buffer overrun " + mPCMBuffer.getOverrunCount() + " times, dropped "
+                    + mPCMBuffer.getOverrunBytes() + " bytes.");
+        }
+        mEncoder.stop();
+    }
+
+    /**
+     * 从缓冲区中读取 PCM 数据送入编码器, 直到缓冲区关闭
+     * <p>
+     * 编码器跟不上采集时, 缓冲区丢弃的数据在原位置以静音补齐, 保证音频时间轴与视频同步
+     */
+    @WorkerThread
+    private void feedEncoder() {
+        byte[] frame = new byte[mFrameBytes];
+        try {
+            while (true) {
+                int length = mPCMBuffer.read(frame);
+                if (length < 0) {
+                    break;
+                }
+                mEncoder.encode(length == frame.length ? frame : Arrays.copyOf(frame, length));
+            }
+        } catch (Throwable e) {
+            performRecordFailed(IRecorderCallback.ERROR_ENCODE_FAILED, e);
         }
     }
 
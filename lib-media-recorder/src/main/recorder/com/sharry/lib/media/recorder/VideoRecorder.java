@@ -7,6 +7,7 @@ import android.util.Log;
 
 import androidx.annotation.WorkerThread;
 
+import com.sharry.lib.camera.IPreviewer;
 import com.sharry.lib.camera.SCameraView;
 import com.sharry.lib.camera.Size;
 
@@ -25,12 +26,14 @@ import static com.sharry.lib.media.recorder.Options.Video.RESOLUTION_720P;
  * @version 1.0
  * @since 2019-07-15 17:36
  */
-final class VideoRecorder extends BaseMediaRecorder implements IAudioEncoder.Callback, IVideoEncoder.Callback {
+final class VideoRecorder extends BaseMediaRecorder implements IAudioEncoder.Callback, IVideoEncoder.Callback,
+        IPreviewer.OnFrameRenderedListener {
 
     private final AudioRecorder mAudio;
     private final IVideoEncoder mEncoder;
     private final IVideoEncoder.Context mEncodeContext;
     private final IMuxer mMuxer;
+    private final IPreviewer mPreviewer;
 
     VideoRecorder(Context context, Options.Video options, SCameraView cameraView, IRecorderCallback callback) {
         super(context, callback);
@@ -41,6 +44,7 @@ final class VideoRecorder extends BaseMediaRecorder implements IAudioEncoder.Cal
                 null
         );
         this.mAudio.setEncodeCallback(this);
+        this.mPreviewer = cameraView.getPreviewer();
         // inflate Context
         int[] frameSize = new int[2];
         calculateRecordFrameSize(options.getResolution(), frameSize, cameraView.getPreviewer().getSize(), cameraView.isLandscape());
@@ -108,6 +112,14 @@ final class VideoRecorder extends BaseMediaRecorder implements IAudioEncoder.Cal
         }
     }
 
+    // //////////////////////////////////// IPreviewer.OnFrameRenderedListener ////////////////////////////////////
+
+    @Override
+    public void onFrameRendered(int textureId, long timestampNanos) {
+        // 由预览帧驱动视频编码
+        mEncoder.onFrameAvailable(textureId, timestampNanos);
+    }
+
     // //////////////////////////////////// IMediaRecorder ////////////////////////////////////
 
     @Override
@@ -140,6 +152,7 @@ final class VideoRecorder extends BaseMediaRecorder implements IAudioEncoder.Cal
                 }
                 // start everything.
                 mEncoder.start();
+                mPreviewer.addOnFrameRenderedListener(VideoRecorder.this);
                 mAudio.start();
                 mCallback.onStart();
             }
@@ -217,6 +230,8 @@ final class VideoRecorder extends BaseMediaRecorder implements IAudioEncoder.Cal
         if (isRecording) {
             // 音频停止
             mAudio.stop();
+            // 不再接收预览帧
+            mPreviewer.removeOnFrameRenderedListener(this);
             // 停止编码器
             mEncoder.stop();
             // 停止音视频合并
@@ -0,0 +1,207 @@
+package com.sharry.lib.media.recorder;
+
+import androidx.annotation.NonNull;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * 有界的 PCM 环形缓冲区, 用于隔离音频采集线程与编码线程
+ * <p>
+ * 1. 写入方为采集回调, 只做一次数组拷贝, 从不阻塞
+ * 2. 剩余空间不足时丢弃整段写入的数据, 在丢弃处记录静音标记, 读取时在原位置以等长的静音补齐, 保证时间轴不变
+ * 3. 读取方阻塞等待凑满一段数据, 关闭后可以读出剩余的数据
+ *
+ * @author Sharry <a href="sharrychoochn@gmail.com">Contact me.</a>
+ * @version 1.0
+ * @since 2020-03-24 10:30
+ */
+final class PCMRingBuffer {
+
+    private final byte[] mBuffer;
+    private int mReadPosition;
+    private int mSize;
+    private boolean mIsClosed;
+
+    /**
+     * 自创建以来写入与读出的 PCM 字节总数, 作为静音标记的位置
+     */
+    private long mWrittenBytes;
+    private long mReadBytes;
+
+    /**
+     * 按位置排列的静音标记, 以及尚未读出的静音字节数
+     */
+    private final ArrayDeque<DropMarker> mDropMarkers = new ArrayDeque<>();
+    private long mPendingDroppedBytes;
+
+    /**
+     * 溢出统计
+     */
+    private int mOverrunCount;
+    private long mOverrunBytes;
+
+    PCMRingBuffer(int capacity) {
+        mBuffer = new byte[capacity];
+    }
+
+    /**
+     * 写入一段 PCM 数据
+     *
+     * @return {@code false} 剩余空间不足, 该段数据被丢弃
+     */
+    synchronized boolean write(@NonNull byte[] data, int offset, int length) {
+        if (!reserve(length)) {
+            return false;
+        }
+        int writePosition = (mReadPosition + mSize) % mBuffer.length;
+        int firstPart = Math.min(length, mBuffer.length - writePosition);
+        System.arraycopy(data, offset, mBuffer, writePosition, firstPart);
+        System.arraycopy(data, offset + firstPart, mBuffer, 0, length - firstPart);
+        commit(length);
+        return true;
+    }
+
+    /**
+     * 写入 position 到 limit 之间的 PCM 数据, 写入后 position 移动到 limit
+     *
+     * @return {@code false} 剩余空间不足, 该段数据被丢弃
+     */
+    synchronized boolean write(@NonNull ByteBuffer data) {
+        int length = data.remaining();
+        if (!reserve(length)) {
+            return false;
+        }
+        int writePosition = (mReadPosition + mSize) % mBuffer.length;
+        int firstPart = Math.min(length, mBuffer.length - writePosition);
+        data.get(mBuffer, writePosition, firstPart);
+        data.get(mBuffer, 0, length - firstPart);
+        commit(length);
+        return true;
+    }
+
+    /**
+     * 读取一段 PCM 数据, 数据不足 dst.length 时阻塞等待
+     * <p>
+     * 被丢弃的数据在其原本的位置以静音补齐, 静音同样计入读取的字节数
+     *
+     * @return 读取的字节数, 只有关闭后才可能不足 dst.length; 关闭且没有剩余数据时返回 -1
+     */
+    synchronized int read(@NonNull byte[] dst) throws InterruptedException {
+        while (!mIsClosed && mSize + mPendingDroppedBytes < dst.length) {
+            wait();
+        }
+        if (mSize + mPendingDroppedBytes == 0) {
+            return -1;
+        }
+        int length = (int) Math.min(dst.length, mSize + mPendingDroppedBytes);
+        int offset = 0;
+        while (offset < length) {
+            DropMarker marker = mDropMarkers.peekFirst();
+            if (marker != null && marker.position == mReadBytes) {
+                // 到达丢弃的位置, 写入静音
+                int silence = (int) Math.min(marker.bytes, length - offset);
+                Arrays.fill(dst, offset, offset + silence, (byte) 0);
+                offset += silence;
+                marker.bytes -= silence;
+                mPendingDroppedBytes -= silence;
+                if (marker.bytes == 0) {
+                    mDropMarkers.pollFirst();
+                }
+                continue;
+            }
+            // 读取到下一个静音标记为止
+            int count = (int) Math.min(length - offset,
+                    marker == null ? mSize : marker.position - mReadBytes);
+            int firstPart = Math.min(count, mBuffer.length - mReadPosition);
+            System.arraycopy(mBuffer, mReadPosition, dst, offset, firstPart);
+            System.arraycopy(mBuffer, 0, dst, offset + firstPart, count - firstPart);
+            mReadPosition = (mReadPosition + count) % mBuffer.length;
+            mSize -= count;
+            mReadBytes += count;
+            offset += count;
+        }
+        return length;
+    }
+
+    /**
+     * 记录数据源在写入前已丢弃的数据, 在当前写入位置以静音补齐
+     */
+    synchronized void markDropped(long droppedBytes) {
+        if (mIsClosed || droppedBytes <= 0) {
+            return;
+        }
+        mOverrunCount++;
+        mOverrunBytes += droppedBytes;
+        addDropMarker(droppedBytes);
+    }
+
+    synchronized int getOverrunCount() {
+        return mOverrunCount;
+    }
+
+    synchronized long getOverrunBytes() {
+        return mOverrunBytes;
+    }
+
+    /**
+     * 检查剩余空间, 不足时记录溢出
+     */
+    private boolean reserve(int length) {
+        if (mIsClosed) {
+            return false;
+        }
+        if (length > mBuffer.length - mSize) {
+            mOverrunCount++;
+            mOverrunBytes += length;
+            addDropMarker(length);
+            return false;
+        }
+        return true;
+    }
+
+    private void commit(int length) {
+        mSize += length;
+        mWrittenBytes += length;
+        notify();
+    }
+
+    /**
+     * 在当前写入位置记录静音, 连续的丢弃合并为一个标记
+     */
+    private void addDropMarker(long droppedBytes) {
+        DropMarker last = mDropMarkers.peekLast();
+        if (last != null && last.position == mWrittenBytes) {
+            last.bytes += droppedBytes;
+        } else {
+            mDropMarkers.addLast(new DropMarker(mWrittenBytes, droppedBytes));
+        }
+        mPendingDroppedBytes += droppedBytes;
+        notify();
+    }
+
+    /**
+     * 关闭缓冲区, 之后的写入被忽略, 唤醒等待的读取方
+     */
+    synchronized void close() {
+        mIsClosed = true;
+        notifyAll();
+    }
+
+    /**
+     * 静音标记, position 为丢弃处已写入的 PCM 字节总数
+     */
+    private static final class DropMarker {
+
+        final long position;
+        long bytes;
+
+        DropMarker(long position, long bytes) {
+            this.position = position;
+            this.bytes = bytes;
+        }
+
+    }
+
+}
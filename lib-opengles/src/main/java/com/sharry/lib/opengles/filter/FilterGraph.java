@@ -0,0 +1,210 @@
+package com.sharry.lib.opengles.filter;
+
+import android.opengl.GLES20;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+
+import com.sharry.lib.opengles.util.Framebuffer;
+import com.sharry.lib.opengles.util.FullscreenQuad;
+import com.sharry.lib.opengles.util.GlResourcePool;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 多通道的滤镜图
+ * <p>
+ * 1. 所有通道在两个同尺寸的 FBO 之间交替读写, 无论串联多少滤镜, 只占用两个全尺寸纹理
+ * 2. FBO 从当前 EGL 环境的 {@link GlResourcePool} 中获取, 首个启用的通道出现时才会申请
+ * 3. 所有通道共享缓存池中的 {@link FullscreenQuad}
+ * 4. 禁用的通道直接跳过, 没有启用的通道时原样返回输入纹理
+ * <p>
+ * 滤镜的增删可以在任意线程中进行, 在下一帧绘制时生效; 其他方法均在渲染线程中调用.
+ *
+ * @author Sharry <a href="sharrychoochn@gmail.com">Contact me.</a>
+ * @version 1.0
+ * @since 2020-03-22 15:00
+ */
+public class FilterGraph {
+
+    private final List<IFilter> mFilters = new CopyOnWriteArrayList<>();
+    private final TextureFilter mCopyFilter = new TextureFilter();
+    private volatile int mFiltersVersion;
+
+    /**
+     * 以下字段仅在渲染线程中访问
+     */
+    private final List<IFilter> mAttachedFilters = new ArrayList<>();
+    private int mAttachedVersion = -1;
+    private boolean mIsAttached;
+    private int mWidth, mHeight;
+    private GlResourcePool mPool;
+    private FullscreenQuad mQuad;
+    private Framebuffer mPing, mPong;
+
+    ////////////////////////////////////////////////////////////////////////////
+    // 滤镜管理
+    ////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * 在末尾追加一个通道
+     */
+    public void addFilter(@NonNull IFilter filter) {
+        if (!mFilters.contains(filter)) {
+            mFilters.add(filter);
+            mFiltersVersion++;
+        }
+    }
+
+    public void removeFilter(@NonNull IFilter filter) {
+        if (mFilters.remove(filter)) {
+            mFiltersVersion++;
+        }
+    }
+
+    @NonNull
+    public List<IFilter> getFilters() {
+        return new ArrayList<>(mFilters);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // 生命周期
+    ////////////////////////////////////////////////////////////////////////////
+
+    @WorkerThread
+    public void onAttach() {
+        mPool = GlResourcePool.current();
+        mQuad = mPool.acquireFullscreenQuad();
+        mCopyFilter.onAttach();
+        mIsAttached = true;
+        syncFilters();
+    }
+
+    @WorkerThread
+    public void onSizeChanged(int width, int height) {
+        if (mWidth != width || mHeight != height) {
+            // 尺寸变更后归还旧的 FBO, 使用时再按新尺寸获取
+            releaseFramebuffers();
+            mWidth = width;
+            mHeight = height;
+        }
+        mCopyFilter.onSizeChanged(width, height);
+        for (IFilter filter : mAttachedFilters) {
+            filter.onSizeChanged(width, height);
+        }
+    }
+
+    /**
+     * 依次执行启用的通道
+     *
+     * @param inputTextureId 输入的 2D 纹理
+     * @return 最后一个通道输出的纹理, 没有启用的通道时返回输入纹理
+     */
+    @WorkerThread
+    public int process(int inputTextureId) {
+        syncFilters();
+        int textureId = inputTextureId;
+        boolean isDrawn = false;
+        for (int i = 0, size = mAttachedFilters.size(); i < size; i++) {
+            IFilter filter = mAttachedFilters.get(i);
+            if (!filter.isEnabled()) {
+                continue;
+            }
+            // 写入另一个纹理, 避免读写同一个纹理
+            Framebuffer target = obtainTarget(textureId);
+            target.bind();
+            filter.onDraw(textureId, mQuad);
+            textureId = target.getTextureId();
+            isDrawn = true;
+        }
+        if (isDrawn) {
+            GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, 0);
+        }
+        return textureId;
+    }
+
+    /**
+     * 将纹理原样绘制到当前绑定的帧缓冲上
+     */
+    @WorkerThread
+    public void drawTexture(int textureId) {
+        mCopyFilter.onDraw(textureId, mQuad);
+    }
+
+    @WorkerThread
+    public void onDetach() {
+        for (IFilter filter : mAttachedFilters) {
+            filter.onDetach();
+        }
+        mAttachedFilters.clear();
+        mAttachedVersion = -1;
+        mCopyFilter.onDetach();
+        releaseFramebuffers();
+        if (mQuad != null) {
+            mQuad.release();
+            mQuad = null;
+        }
+        mPool = null;
+        mIsAttached = false;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // 内部实现
+    ////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * 将其他线程的增删同步到渲染线程, 仅在滤镜列表变更时执行
+     */
+    private void syncFilters() {
+        int version = mFiltersVersion;
+        if (!mIsAttached || version == mAttachedVersion) {
+            return;
+        }
+        List<IFilter> filters = new ArrayList<>(mFilters);
+        // 释放移除的滤镜
+        for (IFilter filter : mAttachedFilters) {
+            if (!filters.contains(filter)) {
+                filter.onDetach();
+            }
+        }
+        // 初始化新增的滤镜
+        for (IFilter filter : filters) {
+            if (!mAttachedFilters.contains(filter)) {
+                filter.onAttach();
+                if (mWidth > 0 && mHeight > 0) {
+                    filter.onSizeChanged(mWidth, mHeight);
+                }
+            }
+        }
+        mAttachedFilters.clear();
+        mAttachedFilters.addAll(filters);
+        mAttachedVersion = version;
+    }
+
+    private Framebuffer obtainTarget(int inputTextureId) {
+        if (mPing == null) {
+            mPing = mPool.acquireFramebuffer(mWidth, mHeight, GLES20.GL_RGBA);
+        }
+        if (inputTextureId != mPing.getTextureId()) {
+            return mPing;
+        }
+        if (mPong == null) {
+            mPong = mPool.acquireFramebuffer(mWidth, mHeight, GLES20.GL_RGBA);
+        }
+        return mPong;
+    }
+
+    private void releaseFramebuffers() {
+        if (mPing != null) {
+            mPing.release();
+            mPing = null;
+        }
+        if (mPong != null) {
+            mPong.release();
+            mPong = null;
+        }
+    }
+
+}
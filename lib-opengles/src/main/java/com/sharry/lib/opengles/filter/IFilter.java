@@ -0,0 +1,42 @@
+package com.sharry.lib.opengles.filter;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+
+import com.sharry.lib.opengles.util.FullscreenQuad;
+
+/**
+ * 滤镜图中的一个渲染通道
+ * <p>
+ * 滤镜不持有自己的 FBO 与顶点缓冲, 输出的目标由 {@link FilterGraph} 在调用 {@link #onDraw} 之前绑定.
+ *
+ * @author Sharry <a href="sharrychoochn@gmail.com">Contact me.</a>
+ * @version 1.0
+ * @since 2020-03-22 15:00
+ */
+public interface IFilter {
+
+    @WorkerThread
+    void onAttach();
+
+    @WorkerThread
+    void onSizeChanged(int width, int height);
+
+    /**
+     * 将输入纹理处理后绘制到当前绑定的帧缓冲上
+     *
+     * @param textureId 上一个通道输出的 2D 纹理
+     * @param quad      共享的全屏矩形
+     */
+    @WorkerThread
+    void onDraw(int textureId, @NonNull FullscreenQuad quad);
+
+    @WorkerThread
+    void onDetach();
+
+    /**
+     * @return {@code false} 跳过该通道, 不占用渲染时间
+     */
+    boolean isEnabled();
+
+}
@@ -0,0 +1,117 @@
+package com.sharry.lib.opengles.filter;
+
+import android.opengl.GLES20;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+
+import com.sharry.lib.opengles.util.FullscreenQuad;
+import com.sharry.lib.opengles.util.GlUtil;
+
+/**
+ * 对 2D 纹理采样的滤镜, 默认原样输出
+ * <p>
+ * 子类通过构造函数传入片元着色器, 着色器中约定使用 vPosition 与 uTexture 访问输入纹理,
+ * 其他 uniform 在 {@link #onProgramCreated} 中获取, 在 {@link #onPreDraw} 中赋值.
+ *
+ * @author Sharry <a href="sharrychoochn@gmail.com">Contact me.</a>
+ * @version 1.0
+ * @since 2020-03-22 15:00
+ */
+public class TextureFilter implements IFilter {
+
+    protected static final String VERTEX_SHADER_STR = "attribute vec4 aVertexPosition;\n" +
+            "    attribute vec2 aTexturePosition;\n" +
+            "    varying vec2 vPosition;\n" +
+            "    void main() {\n" +
+            "        vPosition = aTexturePosition;\n" +
+            "        gl_Position = aVertexPosition;\n" +
+            "    }";
+
+    protected static final String FRAGMENT_SHADER_STR = "precision mediump float;\n" +
+            "varying vec2 vPosition;\n" +
+            "uniform sampler2D uTexture;\n" +
+            "void main() {\n" +
+            "    gl_FragColor=texture2D(uTexture, vPosition);\n" +
+            "}";
+
+    private final String mFragmentShader;
+    private volatile boolean mIsEnabled = true;
+    private int mProgramId;
+    private int aVertexPosition;
+    private int aTexturePosition;
+    private int uTexture;
+
+    public TextureFilter() {
+        this(FRAGMENT_SHADER_STR);
+    }
+
+    public TextureFilter(@NonNull String fragmentShader) {
+        this.mFragmentShader = fragmentShader;
+    }
+
+    @Override
+    public void onAttach() {
+        mProgramId = GlUtil.createProgram(VERTEX_SHADER_STR, mFragmentShader);
+        aVertexPosition = GLES20.glGetAttribLocation(mProgramId, "aVertexPosition");
+        aTexturePosition = GLES20.glGetAttribLocation(mProgramId, "aTexturePosition");
+        uTexture = GLES20.glGetUniformLocation(mProgramId, "uTexture");
+        onProgramCreated(mProgramId);
+    }
+
+    @Override
+    public void onSizeChanged(int width, int height) {
+        // nothing.
+    }
+
+    @Override
+    public void onDraw(int textureId, @NonNull FullscreenQuad quad) {
+        GLES20.glUseProgram(mProgramId);
+        // 绑定输入纹理
+        GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, textureId);
+        GLES20.glUniform1i(uTexture, 0);
+        onPreDraw();
+        quad.draw(aVertexPosition, aTexturePosition);
+        // 解绑纹理
+        GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, 0);
+    }
+
+    @Override
+    public void onDetach() {
+        if (mProgramId != 0) {
+            GLES20.glDeleteProgram(mProgramId);
+            mProgramId = 0;
+        }
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return mIsEnabled;
+    }
+
+    /**
+     * 启用或禁用该滤镜, 可在任意线程调用, 下一帧生效
+     */
+    public void setEnabled(boolean enabled) {
+        mIsEnabled = enabled;
+    }
+
+    /**
+     * 着色器程序创建完毕, 子类在此获取自定义变量的位置
+     */
+    @WorkerThread
+    protected void onProgramCreated(int programId) {
+        // nothing.
+    }
+
+    /**
+     * 绘制之前回调, 子类在此为自定义变量赋值, 纹理单元 0 已被输入纹理占用
+     */
+    @WorkerThread
+    protected void onPreDraw() {
+        // nothing.
+    }
+
+}
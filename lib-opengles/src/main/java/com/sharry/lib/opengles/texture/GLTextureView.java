@@ -7,13 +7,19 @@ import android.os.Handler;
 import android.os.HandlerThread;
 import android.os.Message;
 import android.util.AttributeSet;
+import android.view.Choreographer;
 import android.view.TextureView;
 
+import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
 
 import com.sharry.lib.opengles.util.EglCore;
+import com.sharry.lib.opengles.util.GlResourcePool;
 
 import java.lang.ref.WeakReference;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 利用 TextureView 实现对外来 SurfaceTexture 的加工绘制
@@ -26,6 +32,9 @@ public class GLTextureView extends TextureView {
 
     private volatile ITextureRenderer mRenderer;
     private volatile RenderWorker mRenderWorker;
+    private volatile boolean mIsVsyncPacingEnabled = false;
+    private final AtomicLong mCoalescedFrameCount = new AtomicLong();
+    private final RenderStats mRenderStats = new RenderStats();
 
     public GLTextureView(Context context) {
         this(context, null);
@@ -101,6 +110,34 @@ public class GLTextureView extends TextureView {
         }
     }
 
+    /**
+     * Pace the rendering to the display vsync through {@link Choreographer}.
+     * <p>
+     * When enabled, the draw requests arrived within a vsync period are rendered only once at the
+     * next vsync, otherwise they are rendered as soon as the render thread is idle.
+     */
+    public void setVsyncPacingEnabled(boolean enabled) {
+        mIsVsyncPacingEnabled = enabled;
+    }
+
+    /**
+     * Gets the count of draw requests coalesced into a pending draw, which means the frames
+     * never be rendered.
+     */
+    public long getCoalescedFrameCount() {
+        return mCoalescedFrameCount.get();
+    }
+
+    /**
+     * Gets the rendering statistics of recent frames.
+     *
+     * @return a snapshot can be read at any thread.
+     */
+    @NonNull
+    public RenderStats.Snapshot getRenderStats() {
+        return mRenderStats.snapshot(mCoalescedFrameCount.get());
+    }
+
     /**
      * Gets a EGLContext
      *
@@ -115,8 +152,18 @@ public class GLTextureView extends TextureView {
         return res;
     }
 
+    /**
+     * Invoked on the render thread after a frame has been drawn and swapped.
+     * <p>
+     * Subclasses can notify the consumers of the rendered texture here, must not block.
+     */
+    @WorkerThread
+    protected void onFrameRendered() {
+        // nothing.
+    }
+
     static class RenderWorker extends HandlerThread implements Handler.Callback,
-            SurfaceTexture.OnFrameAvailableListener {
+            SurfaceTexture.OnFrameAvailableListener, Choreographer.FrameCallback {
 
         private static final int MSG_SURFACE_TEXTURE_CHANGED = 0;
         private static final int MSG_RENDERER_CHANGED = 1;
@@ -126,11 +173,35 @@ public class GLTextureView extends TextureView {
 
         private final WeakReference<GLTextureView> mWkRef;
         private final EglCore mEglCore = new EglCore();
+        private final RenderStats mRenderStats;
+        private final GpuTimer mGpuTimer = new GpuTimer();
+
+        /**
+         * 与 EGL 环境同生命周期的资源缓存池, 渲染器切换与尺寸变更时复用纹理与 FBO
+         */
+        private final GlResourcePool mResourcePool = new GlResourcePool();
         private Handler mHandler = null;
 
+        /**
+         * 待执行的绘制被请求的时刻
+         */
+        private volatile long mDrawRequestedTime;
+
+        /**
+         * 是否有待执行的绘制, 绘制开始前的多次请求只会绘制一次
+         */
+        private final AtomicBoolean mIsDrawPending = new AtomicBoolean(false);
+
+        /**
+         * 以下字段仅在渲染线程中访问
+         */
+        private Choreographer mChoreographer;
+        private boolean mIsFrameCallbackPosted = false;
+
         private RenderWorker(GLTextureView view) {
             super(RenderWorker.class.getSimpleName());
             mWkRef = new WeakReference<>(view);
+            mRenderStats = view.mRenderStats;
         }
 
         ////////////////////////////////////////////////////////////////////////////
@@ -144,6 +215,12 @@ public class GLTextureView extends TextureView {
             mHandler = new Handler(getLooper(), this);
         }
 
+        @Override
+        protected void onLooperPrepared() {
+            // 供渲染器记录自身的耗时
+            RenderStats.bindToCurrentThread(mRenderStats);
+        }
+
         @Override
         public boolean quit() {
             return quitSafely();
@@ -182,7 +259,7 @@ public class GLTextureView extends TextureView {
                     break;
                 // 绘制数据帧
                 case MSG_DRAW_FRAME:
-                    performDrawFrame();
+                    scheduleDrawFrame();
                     break;
                 // 处理线程退出
                 case MSG_DESTROY:
@@ -200,10 +277,17 @@ public class GLTextureView extends TextureView {
 
         @Override
         public void onFrameAvailable(SurfaceTexture surfaceTexture) {
-            Handler handler = mHandler;
-            if (handler != null) {
-                handler.sendEmptyMessage(MSG_DRAW_FRAME);
-            }
+            handleDrawFrame();
+        }
+
+        ////////////////////////////////////////////////////////////////////////////
+        // Choreographer.FrameCallback
+        ////////////////////////////////////////////////////////////////////////////
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            mIsFrameCallbackPosted = false;
+            performDrawFrame();
         }
 
         ////////////////////////////////////////////////////////////////////////////
@@ -251,9 +335,19 @@ public class GLTextureView extends TextureView {
          */
         void handleDrawFrame() {
             Handler handler = mHandler;
-            if (handler != null) {
-                handler.sendEmptyMessage(MSG_DRAW_FRAME);
+            if (handler == null) {
+                return;
+            }
+            // 已有尚未开始的绘制, 合并到该次绘制中
+            if (!mIsDrawPending.compareAndSet(false, true)) {
+                GLTextureView view = mWkRef.get();
+                if (view != null) {
+                    view.mCoalescedFrameCount.incrementAndGet();
+                }
+                return;
             }
+            mDrawRequestedTime = System.nanoTime();
+            handler.sendEmptyMessage(MSG_DRAW_FRAME);
         }
 
         /**
@@ -280,6 +374,8 @@ public class GLTextureView extends TextureView {
             }
             // Recreate egl context
             mEglCore.initialize(surfaceTexture, null);
+            mResourcePool.attachToCurrentThread();
+            mGpuTimer.initialize();
             // invoke render lifecycle
             ITextureRenderer renderer = view.mRenderer;
             if (renderer != null) {
@@ -290,10 +386,7 @@ public class GLTextureView extends TextureView {
 
         private void performRendererChanged(ITextureRenderer oldRenderer) {
             // 移除所有的绘制动作
-            Handler handler = mHandler;
-            if (handler != null) {
-                handler.removeMessages(MSG_DRAW_FRAME);
-            }
+            cancelDrawFrame();
             GLTextureView view = mWkRef.get();
             if (view == null) {
                 return;
@@ -321,7 +414,45 @@ public class GLTextureView extends TextureView {
             }
         }
 
+        /**
+         * 开启垂直同步时, 在下一个 vsync 到来时绘制, 否则立即绘制
+         */
+        private void scheduleDrawFrame() {
+            GLTextureView view = mWkRef.get();
+            if (view == null || !view.mIsVsyncPacingEnabled) {
+                performDrawFrame();
+                return;
+            }
+            if (mIsFrameCallbackPosted) {
+                return;
+            }
+            if (mChoreographer == null) {
+                // 需要在渲染线程中获取, 才能回调到该线程
+                mChoreographer = Choreographer.getInstance();
+            }
+            mChoreographer.postFrameCallback(this);
+            mIsFrameCallbackPosted = true;
+        }
+
+        /**
+         * 取消待执行的绘制
+         */
+        private void cancelDrawFrame() {
+            Handler handler = mHandler;
+            if (handler != null) {
+                handler.removeMessages(MSG_DRAW_FRAME);
+            }
+            if (mIsFrameCallbackPosted) {
+                mChoreographer.removeFrameCallback(this);
+                mIsFrameCallbackPosted = false;
+            }
+            mIsDrawPending.set(false);
+        }
+
         private void performDrawFrame() {
+            long requestedTime = mDrawRequestedTime;
+            // 绘制开始后的请求需要再次绘制
+            mIsDrawPending.set(false);
             GLTextureView view = mWkRef.get();
             if (view == null) {
                 return;
@@ -330,10 +461,25 @@ public class GLTextureView extends TextureView {
             ITextureRenderer renderer = view.mRenderer;
             // 执行渲染器的绘制
             if (renderer != null) {
+                long gpuTime = mGpuTimer.begin();
+                long startTime = System.nanoTime();
                 renderer.onDraw();
+                mRenderStats.recordDrawCpuTime(System.nanoTime() - startTime);
+                mGpuTimer.end();
+                if (GpuTimer.isValid(gpuTime)) {
+                    mRenderStats.recordDrawGpuTime(gpuTime);
+                }
             }
             // 将 EGL 绘制的数据, 输出到 View 的 preview 中
             mEglCore.swapBuffers();
+            long swappedTime = System.nanoTime();
+            mRenderStats.recordFrameSwapped(swappedTime - requestedTime, swappedTime);
+            // 通知纹理的使用者
+            if (renderer != null) {
+                view.onFrameRendered();
+            }
+            // 释放空闲超时的资源
+            mResourcePool.trim();
         }
 
         private void performDestroy() {
@@ -342,8 +488,8 @@ public class GLTextureView extends TextureView {
             if (handler != null) {
                 handler.removeMessages(MSG_SURFACE_TEXTURE_CHANGED);
                 handler.removeMessages(MSG_SURFACE_SIZE_CHANGED);
-                handler.removeMessages(MSG_DRAW_FRAME);
             }
+            cancelDrawFrame();
             // 回调 Renderer 的解绑方法
             GLTextureView view = mWkRef.get();
             if (view != null) {
@@ -353,6 +499,8 @@ public class GLTextureView extends TextureView {
                 }
             }
             // 释放该线程的 EGL 环境
+            mResourcePool.detachFromCurrentThread();
+            mGpuTimer.release();
             mEglCore.release();
         }
     }
@@ -0,0 +1,112 @@
+package com.sharry.lib.opengles.texture;
+
+import android.opengl.GLES20;
+import android.opengl.GLES30;
+
+import androidx.annotation.WorkerThread;
+
+/**
+ * 基于 GL_EXT_disjoint_timer_query 的 GPU 计时器
+ * <p>
+ * 查询结果需要等待 GPU 执行完毕, 为了不阻塞渲染线程, 使用环形的多个查询对象,
+ * 复用某个查询对象之前才读取它上一次的结果. 不支持该扩展的设备不做任何处理.
+ *
+ * @author Sharry <a href="sharrychoochn@gmail.com">Contact me.</a>
+ * @version 1.0
+ * @since 2020-03-22 11:30
+ */
+@WorkerThread
+final class GpuTimer {
+
+    private static final String EXTENSION = "GL_EXT_disjoint_timer_query";
+    private static final int GL_TIME_ELAPSED_EXT = 0x88BF;
+    private static final int GL_GPU_DISJOINT_EXT = 0x8FBB;
+    private static final int QUERY_COUNT = 3;
+    private static final long INVALID_TIME = -1;
+
+    private final int[] mQueries = new int[QUERY_COUNT];
+    private final boolean[] mIsPending = new boolean[QUERY_COUNT];
+    private final int[] mResult = new int[1];
+    private boolean mIsSupported;
+    private boolean mIsActive;
+    private int mIndex;
+
+    /**
+     * 在 EGL 环境创建之后调用
+     */
+    void initialize() {
+        String version = GLES20.glGetString(GLES20.GL_VERSION);
+        String extensions = GLES20.glGetString(GLES20.GL_EXTENSIONS);
+        // 查询对象的 API 需要 OpenGL ES 3.0
+        mIsSupported = version != null && version.startsWith("OpenGL ES 3")
+                && extensions != null && extensions.contains(EXTENSION);
+        if (mIsSupported) {
+            GLES30.glGenQueries(QUERY_COUNT, mQueries, 0);
+        }
+        mIndex = 0;
+        mIsActive = false;
+    }
+
+    /**
+     * 开始计时
+     *
+     * @return 当前查询对象上一次的耗时, 无可用结果时返回 {@link #INVALID_TIME}
+     */
+    long begin() {
+        if (!mIsSupported) {
+            return INVALID_TIME;
+        }
+        long elapsed = INVALID_TIME;
+        int query = mQueries[mIndex];
+        if (mIsPending[mIndex]) {
+            GLES30.glGetQueryObjectuiv(query, GLES30.GL_QUERY_RESULT_AVAILABLE, mResult, 0);
+            // GPU 仍未完成, 跳过本帧的计时
+            if (mResult[0] == GLES20.GL_FALSE) {
+                return INVALID_TIME;
+            }
+            // 期间发生了频率切换等事件, 结果不可信
+            GLES20.glGetIntegerv(GL_GPU_DISJOINT_EXT, mResult, 0);
+            boolean isDisjoint = mResult[0] != 0;
+            GLES30.glGetQueryObjectuiv(query, GLES30.GL_QUERY_RESULT, mResult, 0);
+            mIsPending[mIndex] = false;
+            if (!isDisjoint) {
+                elapsed = mResult[0] & 0xFFFFFFFFL;
+            }
+        }
+        GLES30.glBeginQuery(GL_TIME_ELAPSED_EXT, query);
+        mIsActive = true;
+        return elapsed;
+    }
+
+    /**
+     * 结束计时
+     */
+    void end() {
+        if (!mIsActive) {
+            return;
+        }
+        GLES30.glEndQuery(GL_TIME_ELAPSED_EXT);
+        mIsPending[mIndex] = true;
+        mIndex = (mIndex + 1) % QUERY_COUNT;
+        mIsActive = false;
+    }
+
+    /**
+     * 在 EGL 环境释放之前调用
+     */
+    void release() {
+        if (mIsSupported) {
+            GLES30.glDeleteQueries(QUERY_COUNT, mQueries, 0);
+        }
+        mIsSupported = false;
+        mIsActive = false;
+        for (int i = 0; i < QUERY_COUNT; i++) {
+            mIsPending[i] = false;
+        }
+    }
+
+    static boolean isValid(long elapsed) {
+        return elapsed != INVALID_TIME;
+    }
+
+}
@@ -0,0 +1,287 @@
+package com.sharry.lib.opengles.texture;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import java.util.Arrays;
+
+/**
+ * 渲染性能的统计
+ * <p>
+ * 渲染线程中记录每一帧的各项耗时, 仅保留最近 {@link #SAMPLE_COUNT} 帧的样本,
+ * 通过 {@link #snapshot(long)} 在任意线程获取聚合后的分位数. 记录过程不会分配内存.
+ *
+ * @author Sharry <a href="sharrychoochn@gmail.com">Contact me.</a>
+ * @version 1.0
+ * @since 2020-03-22 11:00
+ */
+public final class RenderStats {
+
+    /**
+     * 统计窗口的帧数, 约为 60fps 下 2 秒的数据
+     */
+    private static final int SAMPLE_COUNT = 120;
+
+    private static final ThreadLocal<RenderStats> CURRENT = new ThreadLocal<>();
+
+    /**
+     * 获取当前渲染线程的统计, 供渲染器记录自身的耗时
+     *
+     * @return 非 {@link GLTextureView} 的渲染线程返回 null
+     */
+    @Nullable
+    @WorkerThread
+    public static RenderStats current() {
+        return CURRENT.get();
+    }
+
+    static void bindToCurrentThread(RenderStats stats) {
+        CURRENT.set(stats);
+    }
+
+    private final Samples mDrawCpuTime = new Samples();
+    private final Samples mDrawGpuTime = new Samples();
+    private final Samples mFrameLatency = new Samples();
+    private final Samples mUpdateTexImageTime = new Samples();
+    private final Samples mSwapTimestamps = new Samples();
+    private long mRenderedFrames;
+
+    RenderStats() {
+    }
+
+    /**
+     * 记录 SurfaceTexture#updateTexImage 的耗时
+     */
+    @WorkerThread
+    public synchronized void recordUpdateTexImage(long nanos) {
+        mUpdateTexImageTime.add(nanos);
+    }
+
+    synchronized void recordDrawCpuTime(long nanos) {
+        mDrawCpuTime.add(nanos);
+    }
+
+    synchronized void recordDrawGpuTime(long nanos) {
+        mDrawGpuTime.add(nanos);
+    }
+
+    /**
+     * 记录一帧完成 swapBuffers
+     *
+     * @param latencyNanos  从帧可用到 swapBuffers 完成的耗时
+     * @param swapTimestamp swapBuffers 完成的时刻
+     */
+    synchronized void recordFrameSwapped(long latencyNanos, long swapTimestamp) {
+        mFrameLatency.add(latencyNanos);
+        mSwapTimestamps.add(swapTimestamp);
+        mRenderedFrames++;
+    }
+
+    /**
+     * 获取统计窗口内的聚合数据
+     */
+    @NonNull
+    synchronized Snapshot snapshot(long coalescedFrames) {
+        float fps = 0;
+        int count = mSwapTimestamps.size();
+        if (count >= 2) {
+            long duration = mSwapTimestamps.latest() - mSwapTimestamps.oldest();
+            fps = duration > 0 ? (count - 1) * 1e9f / duration : 0;
+        }
+        return new Snapshot(
+                mRenderedFrames,
+                coalescedFrames,
+                fps,
+                mDrawCpuTime.percentiles(),
+                mDrawGpuTime.size() > 0 ? mDrawGpuTime.percentiles() : null,
+                mFrameLatency.percentiles(),
+                mUpdateTexImageTime.percentiles()
+        );
+    }
+
+    /**
+     * 固定容量的环形样本
+     */
+    private static final class Samples {
+
+        private final long[] mValues = new long[SAMPLE_COUNT];
+        private int mNext;
+        private int mSize;
+
+        void add(long value) {
+            mValues[mNext] = value;
+            mNext = (mNext + 1) % SAMPLE_COUNT;
+            mSize = Math.min(mSize + 1, SAMPLE_COUNT);
+        }
+
+        int size() {
+            return mSize;
+        }
+
+        long latest() {
+            return mValues[(mNext - 1 + SAMPLE_COUNT) % SAMPLE_COUNT];
+        }
+
+        long oldest() {
+            return mValues[(mNext - mSize + SAMPLE_COUNT) % SAMPLE_COUNT];
+        }
+
+        Percentiles percentiles() {
+            if (mSize == 0) {
+                return Percentiles.EMPTY;
+            }
+            long[] sorted = new long[mSize];
+            for (int i = 0; i < mSize; i++) {
+                sorted[i] = mValues[(mNext - mSize + i + SAMPLE_COUNT) % SAMPLE_COUNT];
+            }
+            Arrays.sort(sorted);
+            return new Percentiles(at(sorted, 0.5f), at(sorted, 0.9f), at(sorted, 0.99f), sorted[mSize - 1]);
+        }
+
+        private static long at(long[] sorted, float percentile) {
+            return sorted[Math.min(sorted.length - 1, (int) (sorted.length * percentile))];
+        }
+
+    }
+
+    /**
+     * 一项耗时的分位数, 单位为纳秒
+     */
+    public static final class Percentiles {
+
+        static final Percentiles EMPTY = new Percentiles(0, 0, 0, 0);
+
+        private final long p50;
+        private final long p90;
+        private final long p99;
+        private final long max;
+
+        Percentiles(long p50, long p90, long p99, long max) {
+            this.p50 = p50;
+            this.p90 = p90;
+            this.p99 = p99;
+            this.max = max;
+        }
+
+        public long getP50Nanos() {
+            return p50;
+        }
+
+        public long getP90Nanos() {
+            return p90;
+        }
+
+        public long getP99Nanos() {
+            return p99;
+        }
+
+        public long getMaxNanos() {
+            return max;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return "{p50=" + p50 / 1000 + "us, p90=" + p90 / 1000 + "us, p99=" + p99 / 1000
+                    + "us, max=" + max / 1000 + "us}";
+        }
+
+    }
+
+    /**
+     * 统计数据的快照
+     */
+    public static final class Snapshot {
+
+        private final long renderedFrames;
+        private final long coalescedFrames;
+        private final float fps;
+        private final Percentiles drawCpuTime;
+        private final Percentiles drawGpuTime;
+        private final Percentiles frameLatency;
+        private final Percentiles updateTexImageTime;
+
+        Snapshot(long renderedFrames, long coalescedFrames, float fps, Percentiles drawCpuTime,
+                 Percentiles drawGpuTime, Percentiles frameLatency, Percentiles updateTexImageTime) {
+            this.renderedFrames = renderedFrames;
+            this.coalescedFrames = coalescedFrames;
+            this.fps = fps;
+            this.drawCpuTime = drawCpuTime;
+            this.drawGpuTime = drawGpuTime;
+            this.frameLatency = frameLatency;
+            this.updateTexImageTime = updateTexImageTime;
+        }
+
+        /**
+         * 渲染线程启动后完成绘制的总帧数
+         */
+        public long getRenderedFrames() {
+            return renderedFrames;
+        }
+
+        /**
+         * 被合并而未绘制的帧数
+         */
+        public long getCoalescedFrames() {
+            return coalescedFrames;
+        }
+
+        /**
+         * 统计窗口内的实际帧率
+         */
+        public float getFps() {
+            return fps;
+        }
+
+        /**
+         * 渲染器 onDraw 的 CPU 耗时
+         */
+        @NonNull
+        public Percentiles getDrawCpuTime() {
+            return drawCpuTime;
+        }
+
+        /**
+         * 渲染器 onDraw 的 GPU 耗时
+         *
+         * @return 设备不支持 GL_EXT_disjoint_timer_query 时返回 null
+         */
+        @Nullable
+        public Percentiles getDrawGpuTime() {
+            return drawGpuTime;
+        }
+
+        /**
+         * 从帧可用到 swapBuffers 完成的耗时
+         */
+        @NonNull
+        public Percentiles getFrameLatency() {
+            return frameLatency;
+        }
+
+        /**
+         * SurfaceTexture#updateTexImage 的耗时
+         */
+        @NonNull
+        public Percentiles getUpdateTexImageTime() {
+            return updateTexImageTime;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return "RenderStats{" +
+                    "renderedFrames=" + renderedFrames +
+                    ", coalescedFrames=" + coalescedFrames +
+                    ", fps=" + fps +
+                    ", drawCpuTime=" + drawCpuTime +
+                    ", drawGpuTime=" + drawGpuTime +
+                    ", frameLatency=" + frameLatency +
+                    ", updateTexImageTime=" + updateTexImageTime +
+                    '}';
+        }
+
+    }
+
+}
@@ -0,0 +1,67 @@
+package com.sharry.lib.opengles.util;
+
+import android.opengl.GLES20;
+
+/**
+ * 以 2D 纹理作为颜色附件的 FBO
+ * <p>
+ * 通过 {@link GlResourcePool#acquireFramebuffer} 获取, 不直接创建.
+ *
+ * @author Sharry <a href="sharrychoochn@gmail.com">Contact me.</a>
+ * @version 1.0
+ * @since 2020-03-22 15:00
+ */
+public final class Framebuffer extends GlResource {
+
+    private final int mFramebufferId;
+    private final int mTextureId;
+    private final int mWidth;
+    private final int mHeight;
+
+    Framebuffer(GlResourcePool pool, long key, int width, int height, int format) {
+        super(pool, key);
+        this.mWidth = width;
+        this.mHeight = height;
+        // 创建纹理并开辟空间
+        mTextureId = GlTexture.allocate(width, height, format);
+        // 创建 FBO, 将纹理作为颜色附件
+        int[] fBoIds = new int[1];
+        GLES20.glGenFramebuffers(1, fBoIds, 0);
+        mFramebufferId = fBoIds[0];
+        GlUtil.bindFrameTexture(mFramebufferId, mTextureId);
+        GlUtil.unBindFrameBuffer();
+    }
+
+    public void bind() {
+        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, mFramebufferId);
+    }
+
+    public void unbind() {
+        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, 0);
+    }
+
+    public int getFramebufferId() {
+        return mFramebufferId;
+    }
+
+    public int getTextureId() {
+        return mTextureId;
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    @Override
+    void delete() {
+        int[] fBoIds = new int[]{mFramebufferId};
+        GLES20.glDeleteFramebuffers(1, fBoIds, 0);
+        int[] textures = new int[]{mTextureId};
+        GLES20.glDeleteTextures(1, textures, 0);
+    }
+
+}
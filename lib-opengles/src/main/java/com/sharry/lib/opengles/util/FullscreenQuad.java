@@ -0,0 +1,90 @@
+package com.sharry.lib.opengles.util;
+
+import android.opengl.GLES20;
+
+import androidx.annotation.WorkerThread;
+
+/**
+ * 铺满画布的矩形, 顶点坐标与纹理坐标写入同一个 VBO 中
+ * <p>
+ * 同一个 EGL 环境中只有一个实例, 通过 {@link GlResourcePool#acquireFullscreenQuad()} 共享给所有渲染器.
+ *
+ * @author Sharry <a href="sharrychoochn@gmail.com">Contact me.</a>
+ * @version 1.0
+ * @since 2020-03-22 15:00
+ */
+@WorkerThread
+public final class FullscreenQuad extends GlResource {
+
+    private static final float[] VERTEX_COORDINATE = new float[]{
+            -1f, 1f,  // 左上
+            -1f, -1f, // 左下
+            1f, 1f,   // 右上
+            1f, -1f   // 右下
+    };
+    private static final float[] TEXTURE_COORDINATE = new float[]{
+            0f, 1f,   // 左上
+            0f, 0f,   // 左下
+            1f, 1f,   // 右上
+            1f, 0f    // 右下
+    };
+
+    private final int mVboId;
+
+    FullscreenQuad(GlResourcePool pool, long key) {
+        super(pool, key);
+        int[] vboIds = new int[1];
+        GLES20.glGenBuffers(1, vboIds, 0);
+        mVboId = vboIds[0];
+        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, mVboId);
+        // 开辟 VBO 空间
+        GLES20.glBufferData(
+                GLES20.GL_ARRAY_BUFFER,
+                (VERTEX_COORDINATE.length + TEXTURE_COORDINATE.length) * 4,
+                null,
+                GLES20.GL_STATIC_DRAW
+        );
+        // 写入顶点坐标
+        GLES20.glBufferSubData(
+                GLES20.GL_ARRAY_BUFFER,
+                0,
+                VERTEX_COORDINATE.length * 4,
+                GlUtil.createFloatBuffer(VERTEX_COORDINATE)
+        );
+        // 写入纹理坐标
+        GLES20.glBufferSubData(
+                GLES20.GL_ARRAY_BUFFER,
+                VERTEX_COORDINATE.length * 4,
+                TEXTURE_COORDINATE.length * 4,
+                GlUtil.createFloatBuffer(TEXTURE_COORDINATE)
+        );
+        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+    }
+
+    /**
+     * 使用当前激活的着色器程序绘制矩形
+     *
+     * @param aVertexPosition  顶点坐标的属性位置
+     * @param aTexturePosition 纹理坐标的属性位置
+     */
+    public void draw(int aVertexPosition, int aTexturePosition) {
+        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, mVboId);
+        // 写入顶点坐标
+        GLES20.glEnableVertexAttribArray(aVertexPosition);
+        GLES20.glVertexAttribPointer(aVertexPosition, 2, GLES20.GL_FLOAT, false,
+                8, 0);
+        // 写入纹理坐标
+        GLES20.glEnableVertexAttribArray(aTexturePosition);
+        GLES20.glVertexAttribPointer(aTexturePosition, 2, GLES20.GL_FLOAT, false,
+                8, VERTEX_COORDINATE.length * 4);
+        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+        GLES20.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
+    }
+
+    @Override
+    void delete() {
+        int[] vboIds = new int[]{mVboId};
+        GLES20.glDeleteBuffers(1, vboIds, 0);
+    }
+
+}
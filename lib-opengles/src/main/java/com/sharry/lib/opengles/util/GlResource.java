@@ -0,0 +1,61 @@
+package com.sharry.lib.opengles.util;
+
+import androidx.annotation.WorkerThread;
+
+/**
+ * {@link GlResourcePool} 中带引用计数的 GL 资源
+ * <p>
+ * 获取时引用计数为 1, 共享给其他渲染器时调用 {@link #retain()}, 不再使用时调用 {@link #release()},
+ * 引用计数归零后资源回到缓存池中等待复用, 不会立即删除.
+ *
+ * @author Sharry <a href="sharrychoochn@gmail.com">Contact me.</a>
+ * @version 1.0
+ * @since 2020-03-22 17:00
+ */
+@WorkerThread
+public abstract class GlResource {
+
+    final GlResourcePool pool;
+    final long key;
+    final int generation;
+
+    /**
+     * 以下字段仅在持有 EGL 环境的线程中访问
+     */
+    int refCount;
+    long idleSince;
+
+    GlResource(GlResourcePool pool, long key) {
+        this.pool = pool;
+        this.key = key;
+        this.generation = pool.generation;
+    }
+
+    /**
+     * 增加一次引用
+     */
+    public void retain() {
+        if (refCount <= 0) {
+            throw new IllegalStateException("Resource is already released.");
+        }
+        refCount++;
+    }
+
+    /**
+     * 减少一次引用, 归零后归还给缓存池
+     */
+    public void release() {
+        if (refCount <= 0) {
+            throw new IllegalStateException("Resource is already released.");
+        }
+        if (--refCount == 0) {
+            pool.recycle(this);
+        }
+    }
+
+    /**
+     * 删除底层的 GL 对象
+     */
+    abstract void delete();
+
+}
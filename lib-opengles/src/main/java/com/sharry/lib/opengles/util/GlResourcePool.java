@@ -0,0 +1,224 @@
+package com.sharry.lib.opengles.util;
+
+import android.opengl.GLES20;
+import android.os.SystemClock;
+import android.util.LongSparseArray;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+/**
+ * EGL 环境级别的 GL 资源缓存池
+ * <p>
+ * 1. 纹理与 FBO 以尺寸和格式为键缓存, 引用计数归零后进入空闲队列, 相同规格的下一次获取直接复用
+ * 2. 全屏矩形的 VBO 在同一个环境中只创建一份
+ * 3. 空闲超过 {@link #IDLE_TIMEOUT_MILLIS} 的资源由 {@link #trim()} 删除
+ * <p>
+ * 创建 EGL 环境的线程持有缓存池, 并通过 {@link #attachToCurrentThread()} 提供给渲染器,
+ * 渲染器通过 {@link #current()} 获取. 未绑定缓存池的线程获取到的是不做缓存的实例, 归还即删除.
+ * 所有方法均需在持有 EGL 环境的线程中调用.
+ *
+ * @author Sharry <a href="sharrychoochn@gmail.com">Contact me.</a>
+ * @version 1.0
+ * @since 2020-03-22 17:00
+ */
+@WorkerThread
+public final class GlResourcePool {
+
+    /**
+     * 空闲资源的保留时长, 覆盖渲染器切换与横竖屏切换的间隔
+     */
+    private static final long IDLE_TIMEOUT_MILLIS = 5000;
+    private static final long TRIM_INTERVAL_MILLIS = 1000;
+
+    private static final ThreadLocal<GlResourcePool> CURRENT = new ThreadLocal<GlResourcePool>() {
+        @Override
+        protected GlResourcePool initialValue() {
+            return new GlResourcePool(false);
+        }
+    };
+
+    /**
+     * 获取当前线程的缓存池
+     */
+    @NonNull
+    public static GlResourcePool current() {
+        return CURRENT.get();
+    }
+
+    private final boolean mIsCacheEnabled;
+    private final LongSparseArray<ArrayDeque<GlResource>> mIdleTextures = new LongSparseArray<>();
+    private final LongSparseArray<ArrayDeque<GlResource>> mIdleFramebuffers = new LongSparseArray<>();
+    private FullscreenQuad mQuad;
+    private long mLastTrimTime;
+
+    /**
+     * 每次解绑 EGL 环境后递增, 用于识别上一个环境中创建的资源
+     */
+    int generation;
+
+    public GlResourcePool() {
+        this(true);
+    }
+
+    private GlResourcePool(boolean isCacheEnabled) {
+        this.mIsCacheEnabled = isCacheEnabled;
+    }
+
+    /**
+     * 在 EGL 环境创建之后调用
+     */
+    public void attachToCurrentThread() {
+        CURRENT.set(this);
+    }
+
+    /**
+     * 在 EGL 环境释放之前调用, 删除所有缓存的资源
+     */
+    public void detachFromCurrentThread() {
+        trimAll();
+        if (mQuad != null && mQuad.refCount == 0) {
+            mQuad.delete();
+        }
+        mQuad = null;
+        // 仍被引用的资源会随 EGL 环境一起销毁, 之后归还的资源直接丢弃
+        generation++;
+        if (CURRENT.get() == this) {
+            CURRENT.remove();
+        }
+    }
+
+    /**
+     * 获取指定规格的 2D 纹理
+     *
+     * @param format 如 {@link GLES20#GL_RGBA}
+     */
+    @NonNull
+    public GlTexture acquireTexture(int width, int height, int format) {
+        long key = buildKey(width, height, format);
+        GlTexture texture = (GlTexture) poll(mIdleTextures, key);
+        if (texture == null) {
+            texture = new GlTexture(this, key, width, height, format);
+        }
+        texture.refCount = 1;
+        return texture;
+    }
+
+    /**
+     * 获取以指定规格纹理为颜色附件的 FBO
+     *
+     * @param format 如 {@link GLES20#GL_RGBA}
+     */
+    @NonNull
+    public Framebuffer acquireFramebuffer(int width, int height, int format) {
+        long key = buildKey(width, height, format);
+        Framebuffer framebuffer = (Framebuffer) poll(mIdleFramebuffers, key);
+        if (framebuffer == null) {
+            framebuffer = new Framebuffer(this, key, width, height, format);
+        }
+        framebuffer.refCount = 1;
+        return framebuffer;
+    }
+
+    /**
+     * 获取共享的全屏矩形
+     */
+    @NonNull
+    public FullscreenQuad acquireFullscreenQuad() {
+        if (mQuad == null) {
+            mQuad = new FullscreenQuad(this, 0);
+        }
+        mQuad.refCount++;
+        return mQuad;
+    }
+
+    /**
+     * 删除空闲超时的资源, 可以在每一帧绘制后调用, 实际的检查不会超过每秒一次
+     */
+    public void trim() {
+        long now = SystemClock.uptimeMillis();
+        if (now - mLastTrimTime < TRIM_INTERVAL_MILLIS) {
+            return;
+        }
+        mLastTrimTime = now;
+        trim(mIdleTextures, now);
+        trim(mIdleFramebuffers, now);
+        if (mQuad != null && mQuad.refCount == 0 && now - mQuad.idleSince >= IDLE_TIMEOUT_MILLIS) {
+            mQuad.delete();
+            mQuad = null;
+        }
+    }
+
+    /**
+     * 删除所有空闲的资源
+     */
+    public void trimAll() {
+        trim(mIdleTextures, Long.MAX_VALUE);
+        trim(mIdleFramebuffers, Long.MAX_VALUE);
+    }
+
+    /**
+     * 引用计数归零的资源进入空闲队列
+     */
+    void recycle(GlResource resource) {
+        if (resource.generation != generation) {
+            return;
+        }
+        if (resource == mQuad && mIsCacheEnabled) {
+            resource.idleSince = SystemClock.uptimeMillis();
+            return;
+        }
+        if (resource == mQuad) {
+            mQuad = null;
+        }
+        if (!mIsCacheEnabled || resource instanceof FullscreenQuad) {
+            resource.delete();
+            return;
+        }
+        LongSparseArray<ArrayDeque<GlResource>> idle =
+                resource instanceof Framebuffer ? mIdleFramebuffers : mIdleTextures;
+        ArrayDeque<GlResource> queue = idle.get(resource.key);
+        if (queue == null) {
+            queue = new ArrayDeque<>();
+            idle.put(resource.key, queue);
+        }
+        resource.idleSince = SystemClock.uptimeMillis();
+        queue.offerLast(resource);
+    }
+
+    private static GlResource poll(LongSparseArray<ArrayDeque<GlResource>> idle, long key) {
+        ArrayDeque<GlResource> queue = idle.get(key);
+        // 优先复用最近归还的资源, 较早归还的更可能被 trim
+        return queue == null ? null : queue.pollLast();
+    }
+
+    private static void trim(LongSparseArray<ArrayDeque<GlResource>> idle, long now) {
+        for (int i = idle.size() - 1; i >= 0; i--) {
+            ArrayDeque<GlResource> queue = idle.valueAt(i);
+            Iterator<GlResource> iterator = queue.iterator();
+            while (iterator.hasNext()) {
+                GlResource resource = iterator.next();
+                if (now - resource.idleSince < IDLE_TIMEOUT_MILLIS) {
+                    // 队列按归还时间排序, 之后的都未超时
+                    break;
+                }
+                resource.delete();
+                iterator.remove();
+            }
+            if (queue.isEmpty()) {
+                idle.removeAt(i);
+            }
+        }
+    }
+
+    /**
+     * GL 中纹理的尺寸不会超过 16 位
+     */
+    private static long buildKey(int width, int height, int format) {
+        return ((long) format << 32) | ((long) (width & 0xFFFF) << 16) | (height & 0xFFFF);
+    }
+
+}
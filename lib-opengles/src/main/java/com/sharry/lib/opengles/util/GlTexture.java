@@ -0,0 +1,69 @@
+package com.sharry.lib.opengles.util;
+
+import android.opengl.GLES20;
+
+/**
+ * 已开辟存储空间的 2D 纹理, 通过 {@link GlResourcePool#acquireTexture} 获取
+ *
+ * @author Sharry <a href="sharrychoochn@gmail.com">Contact me.</a>
+ * @version 1.0
+ * @since 2020-03-22 17:00
+ */
+public final class GlTexture extends GlResource {
+
+    private final int mTextureId;
+    private final int mWidth;
+    private final int mHeight;
+    private final int mFormat;
+
+    GlTexture(GlResourcePool pool, long key, int width, int height, int format) {
+        super(pool, key);
+        this.mWidth = width;
+        this.mHeight = height;
+        this.mFormat = format;
+        this.mTextureId = allocate(width, height, format);
+    }
+
+    public int getTextureId() {
+        return mTextureId;
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    public int getFormat() {
+        return mFormat;
+    }
+
+    @Override
+    void delete() {
+        int[] textures = new int[]{mTextureId};
+        GLES20.glDeleteTextures(1, textures, 0);
+    }
+
+    /**
+     * 创建纹理并开辟空间
+     */
+    static int allocate(int width, int height, int format) {
+        int textureId = GlUtil.createTexture2D();
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, textureId);
+        GLES20.glTexImage2D(
+                GLES20.GL_TEXTURE_2D,
+                0,
+                format,
+                width, height,
+                0,
+                format,
+                GLES20.GL_UNSIGNED_BYTE,
+                null
+        );
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, 0);
+        return textureId;
+    }
+
+}
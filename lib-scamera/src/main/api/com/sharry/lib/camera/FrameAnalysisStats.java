@@ -0,0 +1,67 @@
+package com.sharry.lib.camera;
+
+import androidx.annotation.NonNull;
+
+/**
+ * 帧分析的统计数据, 统计范围为当前的预览会话
+ *
+ * @author Sharry <a href="sharrychoochn@gmail.com">Contact me.</a>
+ * @version 1.0
+ * @since 2020-03-21 10:25
+ */
+public final class FrameAnalysisStats {
+
+    static final FrameAnalysisStats EMPTY = new FrameAnalysisStats(0, 0, 0, 0);
+
+    private final long analyzedFrames;
+    private final long droppedFrames;
+    private final long lastLatencyNanos;
+    private final long totalLatencyNanos;
+
+    FrameAnalysisStats(long analyzedFrames, long droppedFrames, long lastLatencyNanos, long totalLatencyNanos) {
+        this.analyzedFrames = analyzedFrames;
+        this.droppedFrames = droppedFrames;
+        this.lastLatencyNanos = lastLatencyNanos;
+        this.totalLatencyNanos = totalLatencyNanos;
+    }
+
+    /**
+     * 已分析的帧数
+     */
+    public long getAnalyzedFrames() {
+        return analyzedFrames;
+    }
+
+    /**
+     * 分析线程处理不及时而丢弃的帧数
+     */
+    public long getDroppedFrames() {
+        return droppedFrames;
+    }
+
+    /**
+     * 最近一帧从相机输出到分析完成的耗时
+     */
+    public long getLastLatencyMillis() {
+        return lastLatencyNanos / 1000000;
+    }
+
+    /**
+     * 平均每帧从相机输出到分析完成的耗时
+     */
+    public long getAverageLatencyMillis() {
+        return analyzedFrames == 0 ? 0 : totalLatencyNanos / analyzedFrames / 1000000;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "FrameAnalysisStats{" +
+                "analyzedFrames=" + analyzedFrames +
+                ", droppedFrames=" + droppedFrames +
+                ", lastLatencyMillis=" + getLastLatencyMillis() +
+                ", averageLatencyMillis=" + getAverageLatencyMillis() +
+                '}';
+    }
+
+}
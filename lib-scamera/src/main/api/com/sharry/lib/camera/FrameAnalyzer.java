@@ -0,0 +1,29 @@
+package com.sharry.lib.camera;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+
+/**
+ * 预览帧的分析器, 用于二维码识别, 人脸检测等场景
+ * <p>
+ * 所有的帧在同一个分析线程中按顺序回调. 分析速度跟不上预览帧率时, 会丢弃最早未处理的帧,
+ * 保证分析的始终是最新的画面.
+ *
+ * @author Sharry <a href="sharrychoochn@gmail.com">Contact me.</a>
+ * @version 1.0
+ * @since 2020-03-21 10:20
+ */
+public interface FrameAnalyzer {
+
+    /**
+     * 分析一帧预览数据
+     *
+     * @param nv21     NV21 格式的帧数据, 为复用的缓冲区, 仅在本方法执行期间有效
+     * @param width    帧的宽度
+     * @param height   帧的高度
+     * @param rotation 将帧旋转为正向需要顺时针旋转的角度
+     */
+    @WorkerThread
+    void analyze(@NonNull byte[] nv21, int width, int height, int rotation);
+
+}
@@ -95,6 +95,16 @@ public class SCameraView extends FrameLayout implements
      */
     private final ScreenOrientationDetector mScreenOrientationDetector;
 
+    /**
+     * Decode the taken picture.
+     */
+    private final PictureDecoder mPictureDecoder = new PictureDecoder();
+
+    /**
+     * Observe the camera state.
+     */
+    private CameraCallback mCameraCallback;
+
     public SCameraView(@NonNull Context context) {
         this(context, null);
     }
@@ -139,6 +149,8 @@ public class SCameraView extends FrameLayout implements
         if (!isInEditMode()) {
             mScreenOrientationDetector.disable();
         }
+        mDevice.release();
+        mPictureDecoder.clear();
         super.onDetachedFromWindow();
     }
 
@@ -153,6 +165,16 @@ public class SCameraView extends FrameLayout implements
         mPreviewer.setDataSource(dataSource);
         mPreviewer.setRotate(rotation);
         mPreviewer.setScaleType(ScaleType.CENTER_CROP, mScreenOrientationDetector.isLandscape(), size);
+        if (mCameraCallback != null) {
+            mCameraCallback.onCameraOpened();
+        }
+    }
+
+    @Override
+    public void onCameraFailed(@NonNull Throwable e) {
+        if (mCameraCallback != null) {
+            mCameraCallback.onCameraFailed(e);
+        }
     }
 
     @Override
@@ -223,6 +245,9 @@ public class SCameraView extends FrameLayout implements
     /**
      * Open a camera device and start showing camera preview. This is typically called from
      * {@link Activity#onResume}.
+     * <p>
+     * The camera is opened on a dedicated camera thread, the result will be delivered to
+     * {@link CameraCallback} on main thread.
      */
     public void startPreview() {
         post(new Runnable() {
@@ -243,13 +268,124 @@ public class SCameraView extends FrameLayout implements
 
     /**
      * 获取照片
+     *
+     * @deprecated 仅能获取预览视图分辨率的图像, 并且会停止预览, 使用 {@link #takePicture(PictureCallback)} 代替
      */
     @Nullable
+    @Deprecated
     public Bitmap takePicture() {
         stopPreview();
         return mPreviewer.getBitmap();
     }
 
+    /**
+     * Take a full resolution picture at the picture size chosen by camera device asynchronously.
+     * <p>
+     * The preview keeps running after the picture taken, the picture is decoded in background
+     * and delivered on main thread.
+     *
+     * @param callback The callback to receive the picture.
+     */
+    public void takePicture(@NonNull final PictureCallback callback) {
+        takePicture(0, 0, callback);
+    }
+
+    /**
+     * Take a picture asynchronously, the decoded bitmap is subsampled to the requested size.
+     * <p>
+     * The camera picture is decoded with the largest power of two sample size that keeps both
+     * sides of the upright bitmap no smaller than the requested size, it is much cheaper than
+     * decoding at full resolution when the picture is only displayed. Use {@link JpegPictureCallback}
+     * to receive the original JPEG for saving.
+     *
+     * @param reqWidth  The required width of the upright picture, 0 to decode at full resolution.
+     * @param reqHeight The required height of the upright picture, 0 to decode at full resolution.
+     * @param callback  The callback to receive the picture.
+     */
+    public void takePicture(final int reqWidth, final int reqHeight, @NonNull final PictureCallback callback) {
+        mDevice.takePicture(new ICameraDevice.OnPictureTakenListener() {
+            @Override
+            public void onPictureTaken(@NonNull final byte[] jpeg) {
+                mPictureDecoder.decode(jpeg, reqWidth, reqHeight, new PictureDecoder.Callback() {
+                    @Override
+                    public void onDecoded(@NonNull Bitmap picture) {
+                        if (callback instanceof JpegPictureCallback) {
+                            ((JpegPictureCallback) callback).onJpegTaken(jpeg);
+                        }
+                        callback.onPictureTaken(picture);
+                    }
+
+                    @Override
+                    public void onFailed(@NonNull Throwable e) {
+                        callback.onPictureFailed(e);
+                    }
+                });
+            }
+
+            @Override
+            public void onPictureFailed(@NonNull Throwable e) {
+                callback.onPictureFailed(e);
+            }
+        });
+    }
+
+    /**
+     * Sets the JPEG quality of the taken picture.
+     *
+     * @param quality The quality in range [1, 100], 0 to use the device default.
+     */
+    public void setPictureQuality(int quality) {
+        mContext.setPictureQuality(Math.max(0, Math.min(quality, 100)));
+    }
+
+    /**
+     * Release the picture delivered by {@link #takePicture(PictureCallback)}, it will be reused
+     * in the next taking.
+     *
+     * @param picture The picture not used any more.
+     */
+    public void releasePicture(@Nullable Bitmap picture) {
+        mPictureDecoder.release(picture);
+    }
+
+    /**
+     * Recycle the pictures kept for reuse, call it when no more picture will be taken for a while.
+     */
+    public void clearPictureCache() {
+        mPictureDecoder.clear();
+    }
+
+    /**
+     * Sets the analyzer to receive NV21 preview frames on a dedicated analysis thread.
+     * <p>
+     * The frames are delivered in reused buffers, and the oldest pending frame will be dropped
+     * when the analyzer falls behind.
+     *
+     * @param analyzer The analyzer, null to stop analysis.
+     */
+    public void setFrameAnalyzer(@Nullable FrameAnalyzer analyzer) {
+        mDevice.setFrameAnalyzer(analyzer);
+    }
+
+    /**
+     * Gets the analysis latency and dropped frame counts of current preview session.
+     *
+     * @return The stats snapshot.
+     */
+    @NonNull
+    public FrameAnalysisStats getFrameAnalysisStats() {
+        return mDevice.getFrameAnalysisStats();
+    }
+
+    /**
+     * Sets the callback to observe the camera opened or failed.
+     *
+     * @param callback The callback invoked on main thread.
+     */
+    public void setCameraCallback(@Nullable CameraCallback callback) {
+        mCameraCallback = callback;
+    }
+
     /**
      * Chooses camera by the direction it faces.
      *
@@ -374,4 +510,36 @@ public class SCameraView extends FrameLayout implements
         return mScreenOrientationDetector.isLandscape();
     }
 
+    /**
+     * The callback of camera state, invoked on main thread.
+     */
+    public interface CameraCallback {
+
+        void onCameraOpened();
+
+        void onCameraFailed(@NonNull Throwable e);
+
+    }
+
+    /**
+     * The callback of {@link #takePicture(PictureCallback)}, invoked on main thread.
+     */
+    public interface PictureCallback {
+
+        void onPictureTaken(@NonNull Bitmap picture);
+
+        void onPictureFailed(@NonNull Throwable e);
+
+    }
+
+    /**
+     * The picture callback also receives the JPEG output by camera, invoked on main thread
+     * right before {@link #onPictureTaken(Bitmap)}.
+     */
+    public interface JpegPictureCallback extends PictureCallback {
+
+        void onJpegTaken(@NonNull byte[] jpeg);
+
+    }
+
 }
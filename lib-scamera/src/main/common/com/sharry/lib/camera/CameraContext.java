@@ -15,6 +15,7 @@ class CameraContext extends ContextWrapper {
     private boolean autoFocus;
     private int flashMode;
     private int screenOrientationDegrees;
+    private volatile int pictureQuality;
     boolean adjustViewBounds;
     Size desiredSize;
 
@@ -62,6 +63,17 @@ class CameraContext extends ContextWrapper {
         this.screenOrientationDegrees = screenOrientationDegrees;
     }
 
+    /**
+     * @return 拍照输出的 JPEG 质量, 0 表示使用设备默认值
+     */
+    int getPictureQuality() {
+        return pictureQuality;
+    }
+
+    void setPictureQuality(int pictureQuality) {
+        this.pictureQuality = pictureQuality;
+    }
+
     boolean isAdjustViewBounds() {
         return adjustViewBounds;
     }
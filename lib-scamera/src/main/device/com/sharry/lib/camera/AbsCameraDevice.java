@@ -1,12 +1,33 @@
 package com.sharry.lib.camera;
 
+import android.graphics.SurfaceTexture;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
 /**
+ * 相机引擎的基类
+ * <p>
+ * 对外的方法均在主线程调用, 真正的相机操作全部投递到独立的相机线程中执行:
+ * 1. 多次触发的重启请求会合并为一次 open
+ * 2. 同一批次中的参数变更合并为一次 setParameters
+ * 3. 相机就绪与失败的结果异步回调到主线程
+ * <p>
+ * 除 {@link #context} 之外的成员变量仅在相机线程中访问.
+ * 相机线程仅由 {@link #open()} 创建, 由 {@link #release()} 退出并等待其结束; 线程不存在时相机必然处于关闭状态,
+ * 其他调用仅在主线程记录状态, 待下一次 open 时生效. 新旧相机线程不会同时存在, 不会并发访问相机.
+ *
  * @author Sharry <a href="sharrychoochn@gmail.com">Contact me.</a>
  * @version 1.0
  * @since 2019-08-05
  */
 abstract class AbsCameraDevice implements ICameraDevice {
 
+    private static final String THREAD_NAME = "SCamera";
+
     final CameraContext context;
     OnCameraReadyListener listener;
     AspectRatio aspectRatio = AspectRatio.DEFAULT;
@@ -15,6 +36,46 @@ abstract class AbsCameraDevice implements ICameraDevice {
     int flashMode;
     int screenOrientationDegrees;
     int previewWidth, previewHeight;
+    FrameAnalyzer frameAnalyzer;
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private HandlerThread mCameraThread;
+    private volatile Handler mCameraHandler;
+    private boolean mIsParametersDirty;
+
+    private final Runnable mOpenTask = new Runnable() {
+        @Override
+        public void run() {
+            // 重新打开时会应用所有参数, 无需再单独提交
+            mIsParametersDirty = false;
+            openInternal();
+        }
+    };
+
+    private final Runnable mCloseTask = new Runnable() {
+        @Override
+        public void run() {
+            mIsParametersDirty = false;
+            closeInternal();
+        }
+    };
+
+    private final Runnable mCommitParametersTask = new Runnable() {
+        @Override
+        public void run() {
+            if (!mIsParametersDirty) {
+                return;
+            }
+            // 拍摄期间 setParameters 可能导致拍摄失败, 保留变更, 拍摄结束后再提交
+            if (isTakingPicture()) {
+                return;
+            }
+            mIsParametersDirty = false;
+            if (isCameraOpened()) {
+                commitParameters();
+            }
+        }
+    };
 
     AbsCameraDevice(CameraContext context, OnCameraReadyListener listener) {
         this.context = context;
@@ -22,51 +83,311 @@ abstract class AbsCameraDevice implements ICameraDevice {
     }
 
     @Override
-    public void notifyFacingChanged() {
-        if (this.facing == context.getFacing()) {
+    public void open() {
+        Handler handler = obtainCameraHandler();
+        handler.removeCallbacks(mOpenTask);
+        handler.post(mOpenTask);
+    }
+
+    @Override
+    public void close() {
+        Handler handler = mCameraHandler;
+        if (handler == null) {
             return;
         }
-        this.facing = context.getFacing();
-        if (isCameraOpened()) {
-            open();
+        handler.removeCallbacks(mOpenTask);
+        handler.post(mCloseTask);
+    }
+
+    @Override
+    public void release() {
+        if (mCameraThread == null) {
+            return;
         }
+        close();
+        // 执行完关闭任务后退出
+        mCameraThread.quitSafely();
+        // 等待相机释放完成, 之后在主线程记录状态与再次 open 均不会与旧线程竞争
+        boolean interrupted = false;
+        while (mCameraThread.isAlive()) {
+            try {
+                mCameraThread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        mCameraThread = null;
+        mCameraHandler = null;
+    }
+
+    @Override
+    public void takePicture(@NonNull final OnPictureTakenListener listener) {
+        Handler handler = mCameraHandler;
+        if (handler == null) {
+            listener.onPictureFailed(new IllegalStateException("Camera is not opened."));
+            return;
+        }
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                takePictureInternal(new OnPictureTakenListener() {
+                    @Override
+                    public void onPictureTaken(@NonNull final byte[] jpeg) {
+                        mMainHandler.post(new Runnable() {
+                            @Override
+                            public void run() {
+                                listener.onPictureTaken(jpeg);
+                            }
+                        });
+                    }
+
+                    @Override
+                    public void onPictureFailed(@NonNull final Throwable e) {
+                        mMainHandler.post(new Runnable() {
+                            @Override
+                            public void run() {
+                                listener.onPictureFailed(e);
+                            }
+                        });
+                    }
+                });
+            }
+        });
+    }
+
+    @Override
+    public void setFrameAnalyzer(@Nullable final FrameAnalyzer analyzer) {
+        Handler handler = mCameraHandler;
+        if (handler == null) {
+            frameAnalyzer = analyzer;
+            return;
+        }
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (frameAnalyzer == analyzer) {
+                    return;
+                }
+                frameAnalyzer = analyzer;
+                if (isCameraOpened()) {
+                    applyFrameAnalyzer(analyzer);
+                }
+            }
+        });
+    }
+
+    @Override
+    public void notifyFacingChanged() {
+        final int facing = context.getFacing();
+        Handler handler = mCameraHandler;
+        if (handler == null) {
+            this.facing = facing;
+            return;
+        }
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (AbsCameraDevice.this.facing == facing) {
+                    return;
+                }
+                AbsCameraDevice.this.facing = facing;
+                requestReopen();
+            }
+        });
     }
 
     @Override
     public void notifyAspectRatioChanged() {
-        // Handle this later when camera is opened
-        if (!isCameraOpened()) {
-            aspectRatio = context.getAspectRatio();
+        final AspectRatio aspectRatio = context.getAspectRatio();
+        Handler handler = mCameraHandler;
+        if (handler == null) {
+            this.aspectRatio = aspectRatio;
+            return;
+        }
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (AbsCameraDevice.this.aspectRatio.equals(aspectRatio)) {
+                    return;
+                }
+                AbsCameraDevice.this.aspectRatio = aspectRatio;
+                requestReopen();
+            }
+        });
+    }
+
+    @Override
+    public void notifyAutoFocusChanged() {
+        final boolean autoFocus = context.isAutoFocus();
+        Handler handler = mCameraHandler;
+        if (handler == null) {
+            this.autoFocus = autoFocus;
+            return;
         }
-        // if camera opened
-        if (!aspectRatio.equals(context.getAspectRatio())) {
-            aspectRatio = context.getAspectRatio();
-            open();
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (AbsCameraDevice.this.autoFocus == autoFocus) {
+                    return;
+                }
+                AbsCameraDevice.this.autoFocus = autoFocus;
+                if (isCameraOpened() && applyAutoFocus(autoFocus)) {
+                    requestCommitParameters();
+                }
+            }
+        });
+    }
+
+    @Override
+    public void notifyFlashModeChanged() {
+        final int flashMode = context.getFlashMode();
+        Handler handler = mCameraHandler;
+        if (handler == null) {
+            this.flashMode = flashMode;
+            return;
         }
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                // not previewing, handle this later when camera is opened
+                if (!isCameraOpened()) {
+                    AbsCameraDevice.this.flashMode = flashMode;
+                    return;
+                }
+                if (AbsCameraDevice.this.flashMode == flashMode) {
+                    return;
+                }
+                if (applyFlashMode(flashMode)) {
+                    requestCommitParameters();
+                }
+            }
+        });
     }
 
     @Override
     public void notifyScreenOrientationChanged() {
-        if (this.screenOrientationDegrees == context.getScreenOrientationDegrees()) {
+        final int screenOrientationDegrees = context.getScreenOrientationDegrees();
+        Handler handler = mCameraHandler;
+        if (handler == null) {
+            this.screenOrientationDegrees = screenOrientationDegrees;
             return;
         }
-        this.screenOrientationDegrees = context.getScreenOrientationDegrees();
-        if (isCameraOpened()) {
-            open();
-        }
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (AbsCameraDevice.this.screenOrientationDegrees == screenOrientationDegrees) {
+                    return;
+                }
+                AbsCameraDevice.this.screenOrientationDegrees = screenOrientationDegrees;
+                requestReopen();
+            }
+        });
     }
 
     @Override
     public void notifyDesiredSizeChanged() {
-        if (previewWidth == context.getDesiredSize().getWidth()
-                && previewHeight == context.getDesiredSize().getHeight()) {
+        final int width = context.getDesiredSize().getWidth();
+        final int height = context.getDesiredSize().getHeight();
+        Handler handler = mCameraHandler;
+        if (handler == null) {
+            previewWidth = width;
+            previewHeight = height;
             return;
         }
-        previewWidth = context.getDesiredSize().getWidth();
-        previewHeight = context.getDesiredSize().getHeight();
-        if (isCameraOpened()) {
-            open();
-        }
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (previewWidth == width && previewHeight == height) {
+                    return;
+                }
+                previewWidth = width;
+                previewHeight = height;
+                requestReopen();
+            }
+        });
+    }
+
+    /**
+     * 相机是否已打开, 仅在相机线程中调用
+     */
+    abstract boolean isCameraOpened();
+
+    /**
+     * 是否正在拍摄照片, 即已调用拍摄且尚未收到结果, 仅在相机线程中调用
+     */
+    abstract boolean isTakingPicture();
+
+    /**
+     * 打开相机并开启预览, 在相机线程中执行
+     */
+    abstract void openInternal();
+
+    /**
+     * 关闭相机, 在相机线程中执行
+     */
+    abstract void closeInternal();
+
+    /**
+     * 拍摄照片, 在相机线程中执行
+     */
+    abstract void takePictureInternal(@NonNull OnPictureTakenListener listener);
+
+    /**
+     * 将自动对焦写入待提交的参数
+     *
+     * @return {@code true} 参数发生了变更
+     */
+    abstract boolean applyAutoFocus(boolean autoFocus);
+
+    /**
+     * 将闪光灯模式写入待提交的参数
+     *
+     * @return {@code true} 参数发生了变更
+     */
+    abstract boolean applyFlashMode(int flashMode);
+
+    /**
+     * 将待提交的参数一次性设置给相机
+     */
+    abstract void commitParameters();
+
+    /**
+     * 在预览中切换帧分析器
+     */
+    abstract void applyFrameAnalyzer(@Nullable FrameAnalyzer analyzer);
+
+    /**
+     * 在主线程中通知相机就绪
+     */
+    void notifyCameraReady(@NonNull final SurfaceTexture texture, @NonNull final Size size, final int rotation) {
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                listener.onCameraReady(texture, size, rotation);
+            }
+        });
+    }
+
+    /**
+     * 在主线程中通知相机不可用
+     */
+    void notifyCameraFailed(@NonNull final Throwable e) {
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                listener.onCameraFailed(e);
+            }
+        });
+    }
+
+    /**
+     * 拍摄结束后提交拍摄期间推迟的参数变更, 在相机线程中调用
+     */
+    void commitPendingParameters() {
+        mCommitParametersTask.run();
     }
 
     /**
@@ -79,5 +400,42 @@ abstract class AbsCameraDevice implements ICameraDevice {
                 || screenOrientationDegrees == Constants.LANDSCAPE_270);
     }
 
+    /**
+     * 相机已打开时请求重新打开, 同一批次的多次请求只会执行一次
+     */
+    private void requestReopen() {
+        Handler handler = mCameraHandler;
+        if (handler == null || !isCameraOpened()) {
+            return;
+        }
+        handler.removeCallbacks(mOpenTask);
+        handler.post(mOpenTask);
+    }
+
+    /**
+     * 请求提交参数, 同一批次的多次变更只会调用一次 setParameters
+     */
+    private void requestCommitParameters() {
+        Handler handler = mCameraHandler;
+        if (handler == null || mIsParametersDirty) {
+            return;
+        }
+        mIsParametersDirty = true;
+        handler.post(mCommitParametersTask);
+    }
+
+    /**
+     * 获取相机线程, 不存在时创建, 仅在 open 时调用
+     * <p>
+     * 线程不存在期间在主线程记录的状态, 通过 post 建立的 happens-before 关系对相机线程可见
+     */
+    private Handler obtainCameraHandler() {
+        if (mCameraHandler == null) {
+            mCameraThread = new HandlerThread(THREAD_NAME);
+            mCameraThread.start();
+            mCameraHandler = new Handler(mCameraThread.getLooper());
+        }
+        return mCameraHandler;
+    }
 
 }
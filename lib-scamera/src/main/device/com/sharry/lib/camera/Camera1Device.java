@@ -1,10 +1,11 @@
 package com.sharry.lib.camera;
 
-import android.graphics.Bitmap;
 import android.graphics.SurfaceTexture;
 import android.hardware.Camera;
 import android.util.Log;
 
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.collection.SparseArrayCompat;
 
 import java.util.List;
@@ -34,12 +35,14 @@ class Camera1Device extends AbsCameraDevice {
     private static final int INVALID_CAMERA_ID = -1;
 
     private final Camera.CameraInfo mCameraInfo = new Camera.CameraInfo();
-    private final SizeMap mPreviewSizes = new SizeMap();
-    private final SizeMap mPictureSizes = new SizeMap();
     private final SurfaceTexture mBufferTexture;
 
     private Camera mImpl;
     private Camera.Parameters mCameraParams;
+    private CameraCapabilities mCapabilities;
+    private OnPictureTakenListener mPendingPictureListener;
+    private Size mPreviewSize;
+    private volatile PreviewFrameDispatcher mFrameDispatcher;
 
     Camera1Device(CameraContext context, OnCameraReadyListener listener) {
         super(context, listener);
@@ -47,21 +50,33 @@ class Camera1Device extends AbsCameraDevice {
     }
 
     @Override
-    public boolean isCameraOpened() {
+    boolean isCameraOpened() {
         return mImpl != null;
     }
 
     @Override
-    public void open() {
+    boolean isTakingPicture() {
+        return mPendingPictureListener != null;
+    }
+
+    @Override
+    void openInternal() {
         // Stop preview first.
-        close();
+        closeInternal();
         // 根据 Options 初始化相机
         startPreviewInternal();
     }
 
     @Override
-    public void close() {
+    void closeInternal() {
+        // 相机关闭后不会再回调拍摄结果, 通知等待中的拍摄失败
+        if (mPendingPictureListener != null) {
+            OnPictureTakenListener pending = mPendingPictureListener;
+            mPendingPictureListener = null;
+            pending.onPictureFailed(new IllegalStateException("Camera closed before picture taken."));
+        }
         if (null != mImpl) {
+            stopFrameAnalysis();
             try {
                 // 停止预览
                 mImpl.stopPreview();
@@ -79,44 +94,101 @@ class Camera1Device extends AbsCameraDevice {
     }
 
     @Override
-    public Bitmap takePicture() {
-        close();
-        return null;
+    void takePictureInternal(@NonNull OnPictureTakenListener listener) {
+        if (!isCameraOpened()) {
+            listener.onPictureFailed(new IllegalStateException("Camera is not opened."));
+            return;
+        }
+        if (mPendingPictureListener != null) {
+            listener.onPictureFailed(new IllegalStateException("Another picture is being taken."));
+            return;
+        }
+        mPendingPictureListener = listener;
+        try {
+            // 由相机直接输出目标质量的 JPEG, 保存时无需重新编码
+            int quality = context.getPictureQuality();
+            if (quality > 0 && quality != mCameraParams.getJpegQuality()) {
+                mCameraParams.setJpegQuality(quality);
+                mImpl.setParameters(mCameraParams);
+            }
+            mImpl.takePicture(null, null, new Camera.PictureCallback() {
+                @Override
+                public void onPictureTaken(byte[] data, Camera camera) {
+                    OnPictureTakenListener pending = mPendingPictureListener;
+                    mPendingPictureListener = null;
+                    // 拍摄完成后相机会停止预览, 重新开启以保持预览
+                    try {
+                        camera.startPreview();
+                    } catch (Throwable e) {
+                        Log.w(TAG, "Restart preview after taken picture failed.", e);
+                    }
+                    commitPendingParameters();
+                    if (pending == null) {
+                        return;
+                    }
+                    if (data == null || data.length == 0) {
+                        pending.onPictureFailed(new IllegalStateException("Camera output an empty picture."));
+                    } else {
+                        pending.onPictureTaken(data);
+                    }
+                }
+            });
+        } catch (Throwable e) {
+            mPendingPictureListener = null;
+            commitPendingParameters();
+            listener.onPictureFailed(e);
+        }
+    }
+
+    @Override
+    boolean applyAutoFocus(boolean autoFocus) {
+        setAutoFocusInternal(autoFocus);
+        return true;
     }
 
     @Override
-    public void notifyAutoFocusChanged() {
-        // is previewing
-        if (isCameraOpened()) {
-            if (this.autoFocus == context.isAutoFocus()) {
-                return;
-            }
-            this.autoFocus = context.isAutoFocus();
-            // resetMatrix params
-            setAutoFocusInternal(autoFocus);
+    boolean applyFlashMode(int flashMode) {
+        return setFlashInternal(flashMode);
+    }
+
+    @Override
+    void commitParameters() {
+        try {
             mImpl.setParameters(mCameraParams);
-        }
-        // not previewing
-        else {
-            this.autoFocus = context.isAutoFocus();
+        } catch (Throwable e) {
+            Log.e(TAG, "Camera set parameters failed.", e);
         }
     }
 
     @Override
-    public void notifyFlashModeChanged() {
-        // is previewing
-        if (isCameraOpened()) {
-            if (flashMode == context.getFlashMode()) {
-                return;
-            }
-            // resetMatrix params
-            if (setFlashInternal(context.getFlashMode())) {
-                mImpl.setParameters(mCameraParams);
-            }
+    void applyFrameAnalyzer(@Nullable FrameAnalyzer analyzer) {
+        stopFrameAnalysis();
+        startFrameAnalysis(analyzer);
+    }
+
+    @NonNull
+    @Override
+    public FrameAnalysisStats getFrameAnalysisStats() {
+        PreviewFrameDispatcher dispatcher = mFrameDispatcher;
+        return dispatcher == null ? FrameAnalysisStats.EMPTY : dispatcher.getStats();
+    }
+
+    private void startFrameAnalysis(@Nullable FrameAnalyzer analyzer) {
+        if (analyzer == null || mImpl == null) {
+            return;
         }
-        // not previewing
-        else {
-            flashMode = context.getFlashMode();
+        PreviewFrameDispatcher dispatcher = new PreviewFrameDispatcher(mImpl, analyzer,
+                mPreviewSize.getWidth(), mPreviewSize.getHeight(),
+                calcAnalysisFrameRotation(screenOrientationDegrees));
+        dispatcher.start();
+        mFrameDispatcher = dispatcher;
+    }
+
+    private void stopFrameAnalysis() {
+        PreviewFrameDispatcher dispatcher = mFrameDispatcher;
+        if (dispatcher != null) {
+            // 保留分发器以便停止后仍可读取统计数据
+            dispatcher.stop();
         }
     }
 
@@ -124,45 +196,29 @@ class Camera1Device extends AbsCameraDevice {
      * 开启预览真正的逻辑实现
      */
     private void startPreviewInternal() {
+        boolean isCapabilitiesCached = false;
         try {
-            // 1. 打开相机
             int cameraId = chooseCamera(facing);
+            // 1. 命中能力集缓存时, 在打开相机之前完成尺寸的选择
+            mCapabilities = CameraCapabilities.obtain(context, cameraId);
+            Size previewSize = null;
+            Size pictureSize = null;
+            if (mCapabilities != null) {
+                isCapabilitiesCached = true;
+                previewSize = choosePreviewSize();
+                pictureSize = choosePictureSize();
+            }
+            // 2. 打开相机
             mImpl = Camera.open(cameraId);
-            // 2. 设置相机参数
             mCameraParams = mImpl.getParameters();
-            /*
-             3. 设置预览尺寸
-             */
-            // 采集所有的预览尺寸
-            mPreviewSizes.clear();
-            for (Camera.Size size : mCameraParams.getSupportedPreviewSizes()) {
-                mPreviewSizes.add(new Size(size.width, size.height));
+            // 3. 未命中缓存时, 从相机参数中采集能力集并缓存
+            if (mCapabilities == null) {
+                mCapabilities = CameraCapabilities.create(context, cameraId, mCameraInfo, mCameraParams);
+                previewSize = choosePreviewSize();
+                pictureSize = choosePictureSize();
             }
-            // 获取用户期望的比例的集合
-            SortedSet<Size> previewSizes = mPreviewSizes.sizes(aspectRatio);
-            if (previewSizes == null) {
-                // 用户期望的比例不存在, 获取默认比例
-                previewSizes = mPreviewSizes.sizes(chooseDefaultAspectRatio());
-            }
-            final Size previewSize = chooseOptimalPreviewSize(previewSizes);
+            // 4. 设置预览与拍照尺寸
             mCameraParams.setPreviewSize(previewSize.getWidth(), previewSize.getHeight());
-
-            /*
-             4. 设置拍照尺寸
-             */
-            // 采集所有照片的尺寸
-            mPictureSizes.clear();
-            for (Camera.Size size : mCameraParams.getSupportedPictureSizes()) {
-                mPictureSizes.add(new Size(size.width, size.height));
-            }
-            // 获取用户期望的比例集合
-            SortedSet<Size> pictureSizes = mPictureSizes.sizes(aspectRatio);
-            if (pictureSizes == null) {
-                // 用户期望的尺寸不存在, 获取默认比例
-                pictureSizes = mPreviewSizes.sizes(chooseDefaultAspectRatio());
-            }
-            // 选择期望集合中, 尺寸最大的一个, 保证拍照后输出图像的清晰度
-            Size pictureSize = pictureSizes.last();
             mCameraParams.setPictureSize(pictureSize.getWidth(), pictureSize.getHeight());
             // 5. 设置拍摄后的图像输出的方向
             mCameraParams.setRotation(calcTakenPictureRotation(screenOrientationDegrees));
@@ -177,13 +233,48 @@ class Camera1Device extends AbsCameraDevice {
             mImpl.setPreviewTexture(mBufferTexture);
             // 10. 启动预览
             mImpl.startPreview();
+            mPreviewSize = previewSize;
+            // 11. 开启帧分析
+            startFrameAnalysis(frameAnalyzer);
             // 6. 通知外界, Camera 数据准备好了
-            listener.onCameraReady(mBufferTexture, previewSize, 0);
+            notifyCameraReady(mBufferTexture, previewSize, 0);
             Log.i(TAG, "Camera start preview success.");
         } catch (Throwable e) {
             Log.e(TAG, "Camera start preview failed.", e);
-            close();
+            // 相机打开后配置失败, 缓存的能力集可能与相机不符, 下次打开时重新采集
+            if (isCapabilitiesCached && mImpl != null) {
+                CameraCapabilities.invalidate(context, mCapabilities.cameraId);
+            }
+            closeInternal();
+            notifyCameraFailed(e);
+        }
+    }
+
+    /**
+     * 选择预览尺寸
+     */
+    private Size choosePreviewSize() {
+        // 获取用户期望的比例的集合
+        SortedSet<Size> previewSizes = mCapabilities.previewSizes.sizes(aspectRatio);
+        if (previewSizes == null) {
+            // 用户期望的比例不存在, 获取默认比例
+            previewSizes = mCapabilities.previewSizes.sizes(chooseDefaultAspectRatio());
         }
+        return chooseOptimalPreviewSize(previewSizes);
+    }
+
+    /**
+     * 选择拍照尺寸
+     */
+    private Size choosePictureSize() {
+        // 获取用户期望的比例集合
+        SortedSet<Size> pictureSizes = mCapabilities.pictureSizes.sizes(aspectRatio);
+        if (pictureSizes == null) {
+            // 用户期望的尺寸不存在, 获取默认比例
+            pictureSizes = mCapabilities.previewSizes.sizes(chooseDefaultAspectRatio());
+        }
+        // 选择期望集合中, 尺寸最大的一个, 保证拍照后输出图像的清晰度
+        return pictureSizes.last();
     }
 
     /**
@@ -192,7 +283,13 @@ class Camera1Device extends AbsCameraDevice {
     private int chooseCamera(int facing) {
         int cameraId = INVALID_CAMERA_ID;
         for (int i = 0, count = Camera.getNumberOfCameras(); i < count; i++) {
-            Camera.getCameraInfo(i, mCameraInfo);
+            CameraCapabilities cached = CameraCapabilities.obtain(context, i);
+            if (cached != null) {
+                mCameraInfo.facing = cached.facing;
+                mCameraInfo.orientation = cached.orientation;
+            } else {
+                Camera.getCameraInfo(i, mCameraInfo);
+            }
             if (mCameraInfo.facing == facing) {
                 cameraId = i;
                 break;
@@ -206,7 +303,7 @@ class Camera1Device extends AbsCameraDevice {
      */
     private AspectRatio chooseDefaultAspectRatio() {
         AspectRatio result = null;
-        for (AspectRatio ratio : mPreviewSizes.ratios()) {
+        for (AspectRatio ratio : mCapabilities.previewSizes.ratios()) {
             result = ratio;
             if (AspectRatio.DEFAULT.equals(ratio)) {
                 break;
@@ -221,7 +318,7 @@ class Camera1Device extends AbsCameraDevice {
      * it will modify {@link #mCameraParams}.
      */
     private void setAutoFocusInternal(boolean autoFocus) {
-        final List<String> modes = mCameraParams.getSupportedFocusModes();
+        final List<String> modes = mCapabilities.focusModes;
         if (autoFocus && modes.contains(Camera.Parameters.FOCUS_MODE_CONTINUOUS_PICTURE)) {
             mCameraParams.setFocusMode(Camera.Parameters.FOCUS_MODE_CONTINUOUS_PICTURE);
         } else if (modes.contains(Camera.Parameters.FOCUS_MODE_FIXED)) {
@@ -239,7 +336,7 @@ class Camera1Device extends AbsCameraDevice {
      * @return {@code true} if {@link #mCameraParams} was modified.
      */
     private boolean setFlashInternal(int flash) {
-        List<String> modes = mCameraParams.getSupportedFlashModes();
+        List<String> modes = mCapabilities.flashModes;
         String mode = FLASH_MODES.get(flash);
         if (modes != null && modes.contains(mode)) {
             mCameraParams.setFlashMode(mode);
@@ -325,4 +422,20 @@ class Camera1Device extends AbsCameraDevice {
         return result;
     }
 
+    /**
+     * Calculate the rotation of analysis frame
+     * <p>
+     * The preview callback frames are always in the sensor orientation and never mirrored.
+     *
+     * @param screenOrientationDegrees Screen orientation in degrees(anticlockwise)
+     * @return Number of degrees clockwise required to rotate frame upright
+     */
+    private int calcAnalysisFrameRotation(int screenOrientationDegrees) {
+        if (mCameraInfo.facing == Camera.CameraInfo.CAMERA_FACING_FRONT) {
+            return (mCameraInfo.orientation + screenOrientationDegrees) % 360;
+        } else {
+            return (mCameraInfo.orientation - screenOrientationDegrees + 360) % 360;
+        }
+    }
+
 }
@@ -0,0 +1,220 @@
+package com.sharry.lib.camera;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.hardware.Camera;
+import android.os.Build;
+import android.util.Log;
+import android.util.SparseArray;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 相机的能力集
+ * <p>
+ * 包括预览与拍照尺寸, 对焦与闪光灯模式, 以及传感器方向. 这些信息在同一台设备上不会变化,
+ * 以设备指纹与相机 id 为键缓存在内存与磁盘中, 命中缓存时可以在打开相机之前完成尺寸的选择,
+ * 避免每次打开都重新解析 {@link Camera.Parameters}.
+ *
+ * @author Sharry <a href="sharrychoochn@gmail.com">Contact me.</a>
+ * @version 1.0
+ * @since 2020-03-20 15:10
+ */
+final class CameraCapabilities {
+
+    private static final String TAG = CameraCapabilities.class.getSimpleName();
+    private static final String PREFERENCES_NAME = "lib_scamera_capabilities";
+    private static final String KEY_FACING = "facing";
+    private static final String KEY_ORIENTATION = "orientation";
+    private static final String KEY_PREVIEW_SIZES = "preview_sizes";
+    private static final String KEY_PICTURE_SIZES = "picture_sizes";
+    private static final String KEY_FOCUS_MODES = "focus_modes";
+    private static final String KEY_FLASH_MODES = "flash_modes";
+
+    /**
+     * 内存缓存, 仅在相机线程中访问
+     */
+    private static final SparseArray<CameraCapabilities> MEMORY_CACHE = new SparseArray<>();
+
+    /**
+     * 获取缓存的能力集, 优先从内存读取, 其次从磁盘读取
+     *
+     * @return 未缓存时返回 null
+     */
+    @Nullable
+    static CameraCapabilities obtain(@NonNull Context context, int cameraId) {
+        CameraCapabilities capabilities = MEMORY_CACHE.get(cameraId);
+        if (capabilities != null) {
+            return capabilities;
+        }
+        String json = getPreferences(context).getString(buildKey(cameraId), null);
+        if (json == null) {
+            return null;
+        }
+        try {
+            capabilities = fromJson(cameraId, new JSONObject(json));
+            MEMORY_CACHE.put(cameraId, capabilities);
+        } catch (JSONException e) {
+            Log.w(TAG, "Parse cached capabilities failed.", e);
+            invalidate(context, cameraId);
+        }
+        return capabilities;
+    }
+
+    /**
+     * 根据相机参数创建能力集, 并写入缓存
+     */
+    @NonNull
+    static CameraCapabilities create(@NonNull Context context, int cameraId, @NonNull Camera.CameraInfo info,
+                                     @NonNull Camera.Parameters params) {
+        CameraCapabilities capabilities = new CameraCapabilities(
+                cameraId,
+                info.facing,
+                info.orientation,
+                toSizes(params.getSupportedPreviewSizes()),
+                toSizes(params.getSupportedPictureSizes()),
+                nonNull(params.getSupportedFocusModes()),
+                nonNull(params.getSupportedFlashModes())
+        );
+        MEMORY_CACHE.put(cameraId, capabilities);
+        try {
+            getPreferences(context).edit()
+                    .putString(buildKey(cameraId), capabilities.toJson().toString())
+                    .apply();
+        } catch (JSONException e) {
+            Log.w(TAG, "Save capabilities failed.", e);
+        }
+        return capabilities;
+    }
+
+    /**
+     * 移除缓存, 缓存的能力集与相机实际不符时调用
+     */
+    static void invalidate(@NonNull Context context, int cameraId) {
+        MEMORY_CACHE.remove(cameraId);
+        getPreferences(context).edit().remove(buildKey(cameraId)).apply();
+    }
+
+    final int cameraId;
+    final int facing;
+
+    /**
+     * 传感器方向
+     */
+    final int orientation;
+    final SizeMap previewSizes = new SizeMap();
+    final SizeMap pictureSizes = new SizeMap();
+
+    /**
+     * 不支持时为空集合
+     */
+    final List<String> focusModes;
+    final List<String> flashModes;
+
+    private final List<Size> mPreviewSizeList;
+    private final List<Size> mPictureSizeList;
+
+    private CameraCapabilities(int cameraId, int facing, int orientation, List<Size> previewSizes,
+                               List<Size> pictureSizes, List<String> focusModes, List<String> flashModes) {
+        this.cameraId = cameraId;
+        this.facing = facing;
+        this.orientation = orientation;
+        this.mPreviewSizeList = previewSizes;
+        this.mPictureSizeList = pictureSizes;
+        this.focusModes = focusModes;
+        this.flashModes = flashModes;
+        for (Size size : previewSizes) {
+            this.previewSizes.add(size);
+        }
+        for (Size size : pictureSizes) {
+            this.pictureSizes.add(size);
+        }
+    }
+
+    private JSONObject toJson() throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put(KEY_FACING, facing);
+        json.put(KEY_ORIENTATION, orientation);
+        json.put(KEY_PREVIEW_SIZES, sizesToJson(mPreviewSizeList));
+        json.put(KEY_PICTURE_SIZES, sizesToJson(mPictureSizeList));
+        json.put(KEY_FOCUS_MODES, new JSONArray(focusModes));
+        json.put(KEY_FLASH_MODES, new JSONArray(flashModes));
+        return json;
+    }
+
+    private static CameraCapabilities fromJson(int cameraId, JSONObject json) throws JSONException {
+        return new CameraCapabilities(
+                cameraId,
+                json.getInt(KEY_FACING),
+                json.getInt(KEY_ORIENTATION),
+                sizesFromJson(json.getJSONArray(KEY_PREVIEW_SIZES)),
+                sizesFromJson(json.getJSONArray(KEY_PICTURE_SIZES)),
+                stringsFromJson(json.getJSONArray(KEY_FOCUS_MODES)),
+                stringsFromJson(json.getJSONArray(KEY_FLASH_MODES))
+        );
+    }
+
+    /**
+     * 以 [w0, h0, w1, h1, ...] 的形式存储尺寸
+     */
+    private static JSONArray sizesToJson(List<Size> sizes) {
+        JSONArray array = new JSONArray();
+        for (Size size : sizes) {
+            array.put(size.getWidth());
+            array.put(size.getHeight());
+        }
+        return array;
+    }
+
+    private static List<Size> sizesFromJson(JSONArray array) throws JSONException {
+        List<Size> sizes = new ArrayList<>(array.length() / 2);
+        for (int i = 0; i + 1 < array.length(); i += 2) {
+            sizes.add(new Size(array.getInt(i), array.getInt(i + 1)));
+        }
+        return sizes;
+    }
+
+    private static List<String> stringsFromJson(JSONArray array) throws JSONException {
+        List<String> strings = new ArrayList<>(array.length());
+        for (int i = 0; i < array.length(); i++) {
+            strings.add(array.getString(i));
+        }
+        return strings;
+    }
+
+    private static List<Size> toSizes(List<Camera.Size> cameraSizes) {
+        if (cameraSizes == null) {
+            return Collections.emptyList();
+        }
+        List<Size> sizes = new ArrayList<>(cameraSizes.size());
+        for (Camera.Size size : cameraSizes) {
+            sizes.add(new Size(size.width, size.height));
+        }
+        return sizes;
+    }
+
+    private static List<String> nonNull(List<String> modes) {
+        return modes == null ? Collections.<String>emptyList() : modes;
+    }
+
+    private static SharedPreferences getPreferences(Context context) {
+        return context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * 系统升级后相机的能力可能发生变化, 因此以设备指纹作为键的一部分
+     */
+    private static String buildKey(int cameraId) {
+        return Build.FINGERPRINT + "#" + cameraId;
+    }
+
+}
@@ -1,9 +1,9 @@
 package com.sharry.lib.camera;
 
-import android.graphics.Bitmap;
 import android.graphics.SurfaceTexture;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 /**
  * The interface desc camera device.
@@ -18,9 +18,26 @@ interface ICameraDevice {
 
     void close();
 
-    Bitmap takePicture();
+    /**
+     * 关闭相机并释放相机线程
+     */
+    void release();
 
-    boolean isCameraOpened();
+    /**
+     * 以选定的拍照尺寸拍摄一张照片, 拍摄完成后保持预览
+     */
+    void takePicture(@NonNull OnPictureTakenListener listener);
+
+    /**
+     * 设置预览帧的分析器, 传入 null 停止分析
+     */
+    void setFrameAnalyzer(@Nullable FrameAnalyzer analyzer);
+
+    /**
+     * 获取当前预览会话中帧分析的统计数据, 可在任意线程调用
+     */
+    @NonNull
+    FrameAnalysisStats getFrameAnalysisStats();
 
     void notifyFacingChanged();
 
@@ -38,6 +55,16 @@ interface ICameraDevice {
 
         void onCameraReady(@NonNull SurfaceTexture cameraTexture, @NonNull Size textureSize, int displayRotation);
 
+        void onCameraFailed(@NonNull Throwable e);
+
+    }
+
+    interface OnPictureTakenListener {
+
+        void onPictureTaken(@NonNull byte[] jpeg);
+
+        void onPictureFailed(@NonNull Throwable e);
+
     }
 
 }
@@ -0,0 +1,180 @@
+package com.sharry.lib.camera;
+
+import android.graphics.ImageFormat;
+import android.hardware.Camera;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Message;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+/**
+ * 预览帧的分发器
+ * <p>
+ * 1. 通过 {@link Camera#setPreviewCallbackWithBuffer} 接收预览帧, 固定数量的 NV21 缓冲区循环复用
+ * 2. 帧交由单独的分析线程处理, 仅保留一个待处理的帧, 分析线程繁忙时丢弃最早的待处理帧
+ * 3. 缓冲区通过复用的 Message 归还给相机线程, 整个过程不会按帧分配内存
+ * <p>
+ * 除分析线程外, 所有的方法均在相机线程中调用.
+ *
+ * @author Sharry <a href="sharrychoochn@gmail.com">Contact me.</a>
+ * @version 1.0
+ * @since 2020-03-21 10:40
+ */
+final class PreviewFrameDispatcher implements Camera.PreviewCallback, Handler.Callback {
+
+    private static final String TAG = PreviewFrameDispatcher.class.getSimpleName();
+
+    /**
+     * 缓冲区数量: 相机写入中, 等待分析, 分析中各占一个
+     */
+    private static final int BUFFER_COUNT = 3;
+    private static final int MSG_RECYCLE_BUFFER = 1;
+
+    private final Camera mCamera;
+    private final FrameAnalyzer mAnalyzer;
+    private final int mWidth;
+    private final int mHeight;
+    private final int mRotation;
+    private final Handler mCameraHandler;
+    private final Object mLock = new Object();
+    private final Thread mAnalyzeThread;
+
+    /**
+     * 以下字段由 {@link #mLock} 保护
+     */
+    private boolean mIsRunning;
+    private byte[] mPendingFrame;
+    private long mPendingTimestamp;
+    private long mAnalyzedFrames;
+    private long mDroppedFrames;
+    private long mLastLatencyNanos;
+    private long mTotalLatencyNanos;
+
+    PreviewFrameDispatcher(@NonNull Camera camera, @NonNull FrameAnalyzer analyzer,
+                           int width, int height, int rotation) {
+        this.mCamera = camera;
+        this.mAnalyzer = analyzer;
+        this.mWidth = width;
+        this.mHeight = height;
+        this.mRotation = rotation;
+        this.mCameraHandler = new Handler(Looper.myLooper(), this);
+        this.mAnalyzeThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                analyzeLoop();
+            }
+        }, TAG);
+    }
+
+    void start() {
+        int bufferSize = mWidth * mHeight * ImageFormat.getBitsPerPixel(ImageFormat.NV21) / 8;
+        for (int i = 0; i < BUFFER_COUNT; i++) {
+            mCamera.addCallbackBuffer(new byte[bufferSize]);
+        }
+        synchronized (mLock) {
+            mIsRunning = true;
+        }
+        mAnalyzeThread.start();
+        mCamera.setPreviewCallbackWithBuffer(this);
+    }
+
+    void stop() {
+        synchronized (mLock) {
+            if (!mIsRunning) {
+                return;
+            }
+            mIsRunning = false;
+            mPendingFrame = null;
+            mLock.notifyAll();
+        }
+        mCameraHandler.removeMessages(MSG_RECYCLE_BUFFER);
+        try {
+            mCamera.setPreviewCallbackWithBuffer(null);
+        } catch (Throwable e) {
+            // ignore.
+        }
+    }
+
+    @NonNull
+    FrameAnalysisStats getStats() {
+        synchronized (mLock) {
+            return new FrameAnalysisStats(mAnalyzedFrames, mDroppedFrames, mLastLatencyNanos, mTotalLatencyNanos);
+        }
+    }
+
+    @Override
+    public void onPreviewFrame(byte[] data, Camera camera) {
+        if (data == null) {
+            return;
+        }
+        byte[] dropped;
+        synchronized (mLock) {
+            if (!mIsRunning) {
+                return;
+            }
+            // 分析线程未取走上一帧, 丢弃最早的帧
+            dropped = mPendingFrame;
+            if (dropped != null) {
+                mDroppedFrames++;
+            }
+            mPendingFrame = data;
+            mPendingTimestamp = System.nanoTime();
+            mLock.notifyAll();
+        }
+        if (dropped != null) {
+            camera.addCallbackBuffer(dropped);
+        }
+    }
+
+    @Override
+    public boolean handleMessage(@NonNull Message msg) {
+        if (msg.what != MSG_RECYCLE_BUFFER) {
+            return false;
+        }
+        synchronized (mLock) {
+            if (!mIsRunning) {
+                return true;
+            }
+        }
+        mCamera.addCallbackBuffer((byte[]) msg.obj);
+        return true;
+    }
+
+    private void analyzeLoop() {
+        while (true) {
+            byte[] frame;
+            long timestamp;
+            synchronized (mLock) {
+                while (mIsRunning && mPendingFrame == null) {
+                    try {
+                        mLock.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (!mIsRunning) {
+                    return;
+                }
+                frame = mPendingFrame;
+                timestamp = mPendingTimestamp;
+                mPendingFrame = null;
+            }
+            try {
+                mAnalyzer.analyze(frame, mWidth, mHeight, mRotation);
+            } catch (Throwable e) {
+                Log.e(TAG, "Analyze frame failed.", e);
+            }
+            long latency = System.nanoTime() - timestamp;
+            synchronized (mLock) {
+                mAnalyzedFrames++;
+                mLastLatencyNanos = latency;
+                mTotalLatencyNanos += latency;
+            }
+            // 在相机线程中归还缓冲区
+            mCameraHandler.obtainMessage(MSG_RECYCLE_BUFFER, frame).sendToTarget();
+        }
+    }
+
+}
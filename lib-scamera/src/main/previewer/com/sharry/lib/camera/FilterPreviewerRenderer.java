@@ -0,0 +1,76 @@
+package com.sharry.lib.camera;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+
+import com.sharry.lib.opengles.filter.FilterGraph;
+import com.sharry.lib.opengles.filter.IFilter;
+
+/**
+ * 支持多个滤镜串联的预览渲染器
+ * <p>
+ * 相机输出的 2D 纹理依次经过 {@link FilterGraph} 中启用的滤镜, 最终结果绘制到屏幕上,
+ * 并作为 {@link #getPreviewerTextureId()} 输出给录制等下游使用.
+ * 相比每个效果各自包装一层 {@link PreviewerRendererWrapper}, 增加滤镜不会额外占用 FBO.
+ *
+ * @author Sharry <a href="sharrychoochn@gmail.com">Contact me.</a>
+ * @version 1.0
+ * @since 2020-03-22 15:00
+ */
+public class FilterPreviewerRenderer extends PreviewerRendererWrapper {
+
+    private final FilterGraph mFilterGraph = new FilterGraph();
+    private int mOutputTextureId;
+
+    public FilterPreviewerRenderer(Context context) {
+        super(new PreviewerRendererImpl(context));
+    }
+
+    /**
+     * 追加一个滤镜, 可在任意线程调用
+     */
+    public void addFilter(@NonNull IFilter filter) {
+        mFilterGraph.addFilter(filter);
+    }
+
+    /**
+     * 移除一个滤镜, 可在任意线程调用
+     */
+    public void removeFilter(@NonNull IFilter filter) {
+        mFilterGraph.removeFilter(filter);
+    }
+
+    @Override
+    public void onAttach() {
+        super.onAttach();
+        mFilterGraph.onAttach();
+    }
+
+    @Override
+    public void onSizeChanged(int width, int height) {
+        super.onSizeChanged(width, height);
+        mFilterGraph.onSizeChanged(width, height);
+    }
+
+    @Override
+    protected void onDrawTexture(int textureId) {
+        // 执行滤镜
+        mOutputTextureId = mFilterGraph.process(textureId);
+        // 绘制到屏幕
+        mFilterGraph.drawTexture(mOutputTextureId);
+    }
+
+    @Override
+    public int getPreviewerTextureId() {
+        return mOutputTextureId != 0 ? mOutputTextureId : super.getPreviewerTextureId();
+    }
+
+    @Override
+    public void onDetach() {
+        mFilterGraph.onDetach();
+        mOutputTextureId = 0;
+        super.onDetach();
+    }
+
+}
@@ -7,8 +7,10 @@ import android.view.View;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
 
 import com.sharry.lib.opengles.texture.ITextureRenderer;
+import com.sharry.lib.opengles.texture.RenderStats;
 
 /**
  * 相机预览器的抽象描述
@@ -66,6 +68,38 @@ public interface IPreviewer {
      */
     EGLContext getEglContext();
 
+    /**
+     * 获取最近若干帧的渲染统计, 包括绘制的 CPU 与 GPU 耗时, 帧延迟, 帧率等
+     */
+    @NonNull
+    RenderStats.Snapshot getRenderStats();
+
+    /**
+     * 添加帧渲染完成的监听
+     */
+    void addOnFrameRenderedListener(@NonNull OnFrameRenderedListener listener);
+
+    /**
+     * 移除帧渲染完成的监听
+     */
+    void removeOnFrameRenderedListener(@NonNull OnFrameRenderedListener listener);
+
+    /**
+     * 帧渲染完成的监听, 供录制等需要跟随预览帧的使用者驱动自身的绘制
+     */
+    interface OnFrameRenderedListener {
+
+        /**
+         * 在渲染线程中回调, 此时预览器输出的纹理已更新, 实现中不可阻塞
+         *
+         * @param textureId      预览器输出的纹理 ID
+         * @param timestampNanos 数据源 SurfaceTexture 中该帧的时间戳
+         */
+        @WorkerThread
+        void onFrameRendered(int textureId, long timestampNanos);
+
+    }
+
     /**
      * 相机预览器的 Renderer
      * <p>
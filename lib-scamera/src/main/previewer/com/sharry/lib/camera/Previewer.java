@@ -16,6 +16,8 @@ import androidx.annotation.Nullable;
 import com.sharry.lib.opengles.texture.GLTextureView;
 
 import java.lang.ref.WeakReference;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Camera 预览器
@@ -32,7 +34,8 @@ public final class Previewer extends GLTextureView implements IPreviewer {
     private static final String TAG = Previewer.class.getSimpleName();
 
     private final SurfaceTexture.OnFrameAvailableListener mFrameAvailableListener;
-    private Renderer mPreviewerRenderer;
+    private final List<OnFrameRenderedListener> mFrameRenderedListeners = new CopyOnWriteArrayList<>();
+    private volatile Renderer mPreviewerRenderer;
 
     Previewer(Context context, FrameLayout parent) {
         super(context);
@@ -49,7 +52,7 @@ public final class Previewer extends GLTextureView implements IPreviewer {
     /**
      * 暂存 Renderer 的状态值, 方便 Renderer 切换时快速还原
      */
-    private SurfaceTexture mDataSource;
+    private volatile SurfaceTexture mDataSource;
     private Size mDataSourceSize = getSize();
     private int mDegree = 0;
     private ScaleType mScaleType = ScaleType.CENTER_CROP;
@@ -106,6 +109,36 @@ public final class Previewer extends GLTextureView implements IPreviewer {
         mDataSourceSize = dataSourceSize;
     }
 
+    @Override
+    public void addOnFrameRenderedListener(@NonNull OnFrameRenderedListener listener) {
+        if (!mFrameRenderedListeners.contains(listener)) {
+            mFrameRenderedListeners.add(listener);
+        }
+    }
+
+    @Override
+    public void removeOnFrameRenderedListener(@NonNull OnFrameRenderedListener listener) {
+        mFrameRenderedListeners.remove(listener);
+    }
+
+    @Override
+    protected void onFrameRendered() {
+        if (mFrameRenderedListeners.isEmpty()) {
+            return;
+        }
+        SurfaceTexture dataSource = mDataSource;
+        Renderer renderer = mPreviewerRenderer;
+        if (dataSource == null || renderer == null) {
+            return;
+        }
+        // 渲染线程中执行了 updateTexImage, 时间戳即为当前纹理中的帧
+        long timestamp = dataSource.getTimestamp();
+        int textureId = renderer.getPreviewerTextureId();
+        for (OnFrameRenderedListener listener : mFrameRenderedListeners) {
+            listener.onFrameRendered(textureId, timestamp);
+        }
+    }
+
     @Override
     public View getView() {
         return this;
@@ -7,12 +7,12 @@ import android.opengl.GLES20;
 import android.opengl.Matrix;
 import android.util.Log;
 
+import com.sharry.lib.opengles.texture.RenderStats;
 import com.sharry.lib.opengles.util.FboHelper;
+import com.sharry.lib.opengles.util.FullscreenQuad;
+import com.sharry.lib.opengles.util.GlResourcePool;
 import com.sharry.lib.opengles.util.GlUtil;
 
-import java.nio.FloatBuffer;
-
-import static android.opengl.GLES20.GL_FLOAT;
 import static android.opengl.GLES20.glGetUniformLocation;
 
 /**
@@ -26,21 +26,6 @@ public class PreviewerRendererImpl implements IPreviewer.Renderer {
 
     private static final String TAG = PreviewerRendererImpl.class.getSimpleName();
 
-    private final float[] mVertexCoordinate = new float[]{
-            -1f, 1f,  // 左上
-            -1f, -1f, // 左下
-            1f, 1f,   // 右上
-            1f, -1f   // 右下
-    };
-    private final float[] mTextureCoordinate = new float[]{
-            0f, 1f,   // 左上
-            0f, 0f,   // 左下
-            1f, 1f,   // 右上
-            1f, 0f    // 右下
-    };
-    private final FloatBuffer mVertexBuffer = GlUtil.createFloatBuffer(mVertexCoordinate);
-    private final FloatBuffer mTextureBuffer = GlUtil.createFloatBuffer(mTextureCoordinate);
-
     private final Context mContext;
     private final FboHelper mFboHelper;
 
@@ -55,9 +40,9 @@ public class PreviewerRendererImpl implements IPreviewer.Renderer {
     private int uTexture;
 
     /**
-     * Vertex buffer object 相关
+     * 共享的顶点缓冲
      */
-    private int mVboId = 0;
+    private FullscreenQuad mQuad;
 
     /**
      * 用于和数据源绑定的外部纹理 ID
@@ -97,7 +82,7 @@ public class PreviewerRendererImpl implements IPreviewer.Renderer {
         // 配置着色器
         setupShaders();
         // 配置坐标
-        setupCoordinates();
+        mQuad = GlResourcePool.current().acquireFullscreenQuad();
         // 创建一个 OES 的纹理 ID, 用于后续绑定 DataSource.
         mOesTextureId = createOESTexture();
     }
@@ -115,38 +100,6 @@ public class PreviewerRendererImpl implements IPreviewer.Renderer {
         uTexture = glGetUniformLocation(mProgram, "uTexture");
     }
 
-    private void setupCoordinates() {
-        // 创建 vbo
-        int vboSize = 1;
-        int[] vboIds = new int[vboSize];
-        GLES20.glGenBuffers(vboSize, vboIds, 0);
-        // 将顶点坐标写入 vbo
-        mVboId = vboIds[0];
-        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, mVboId);
-        // 开辟 VBO 空间
-        GLES20.glBufferData(
-                GLES20.GL_ARRAY_BUFFER,
-                (mVertexCoordinate.length + mTextureCoordinate.length) * 4,
-                null,
-                GLES20.GL_STATIC_DRAW
-        );
-        // 写入顶点坐标
-        GLES20.glBufferSubData(
-                GLES20.GL_ARRAY_BUFFER,
-                0,
-                (mVertexCoordinate.length) * 4,
-                mVertexBuffer
-        );
-        // 写入纹理坐标
-        GLES20.glBufferSubData(
-                GLES20.GL_ARRAY_BUFFER,
-                (mVertexCoordinate.length) * 4,
-                (mTextureCoordinate.length) * 4,
-                mTextureBuffer
-        );
-        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
-    }
-
     private int createOESTexture() {
         // 生成绑定纹理
         int[] textures = new int[1];
@@ -187,7 +140,12 @@ public class PreviewerRendererImpl implements IPreviewer.Renderer {
                     attachDataSource();
                 }
                 // 从获取数据源中获取数据
+                long startTime = System.nanoTime();
                 mDataSource.updateTexImage();
+                RenderStats stats = RenderStats.current();
+                if (stats != null) {
+                    stats.recordUpdateTexImage(System.nanoTime() - startTime);
+                }
                 // 获取数据源的 transform 矩阵
                 mDataSource.getTransformMatrix(mDataSourceMatrix);
             } catch (Throwable e) {
@@ -222,16 +180,6 @@ public class PreviewerRendererImpl implements IPreviewer.Renderer {
         /*
          顶点着色器
          */
-        // 顶点坐标赋值
-        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, mVboId);
-        GLES20.glEnableVertexAttribArray(aVertexCoordinate);
-        GLES20.glVertexAttribPointer(aVertexCoordinate, 2, GL_FLOAT, false,
-                8, 0);
-        // 纹理坐标赋值
-        GLES20.glEnableVertexAttribArray(aTextureCoordinate);
-        GLES20.glVertexAttribPointer(aTextureCoordinate, 2, GL_FLOAT, false,
-                8, mVertexCoordinate.length * 4);
-        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
         // 使裁剪矩阵合并旋转矩阵
         Matrix.multiplyMM(mFinalMatrix, 0, mProjectionMatrix, 0,
                 mRotationMatrix, 0);
@@ -248,8 +196,8 @@ public class PreviewerRendererImpl implements IPreviewer.Renderer {
         GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
         GLES20.glBindTexture(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, mOesTextureId);
 
-        // 绘制矩形区域
-        GLES20.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
+        // 写入顶点与纹理坐标, 绘制矩形区域
+        mQuad.draw(aVertexCoordinate, aTextureCoordinate);
 
         // 解绑纹理
         GLES20.glBindTexture(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, 0);
@@ -262,12 +210,10 @@ public class PreviewerRendererImpl implements IPreviewer.Renderer {
         if (mProgram != 0) {
             GLES20.glDeleteProgram(mProgram);
         }
-        // 释放 VBO
-        if (mVboId != 0) {
-            int size = 1;
-            int[] vboIds = new int[size];
-            vboIds[0] = mVboId;
-            GLES20.glDeleteBuffers(1, vboIds, 0);
+        // 归还 VBO
+        if (mQuad != null) {
+            mQuad.release();
+            mQuad = null;
         }
         // 释放纹理
         if (mOesTextureId != 0) {
@@ -0,0 +1,284 @@
+package com.sharry.lib.camera;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 拍摄照片的解码器
+ * <p>
+ * 在后台线程将相机输出的 JPEG 解码为 Bitmap, 并按照 EXIF 方向旋转为正向.
+ * 解码时通过 inSampleSize 缩小到调用方需要的尺寸, 避免全尺寸解码占用大块内存.
+ * 使用完毕的照片可以通过 {@link #release(Bitmap)} 归还, 连续拍摄时作为 inBitmap 复用, 避免重复申请大块内存.
+ *
+ * @author Sharry <a href="sharrychoochn@gmail.com">Contact me.</a>
+ * @version 1.0
+ * @since 2020-03-20 10:40
+ */
+final class PictureDecoder {
+
+    /**
+     * 复用的 Bitmap 数量上限: 一张用于解码, 一张用于旋转
+     */
+    private static final int MAX_POOL_SIZE = 2;
+    private static final int EXIF_TAG_ORIENTATION = 0x0112;
+    private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+    private static final ThreadPoolExecutor EXECUTOR;
+
+    static {
+        EXECUTOR = new ThreadPoolExecutor(
+                1, 1,
+                30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(@NonNull Runnable r) {
+                        Thread thread = new Thread(r, PictureDecoder.class.getSimpleName());
+                        thread.setDaemon(false);
+                        return thread;
+                    }
+                }
+        );
+        // 拍照为低频操作, 无需常驻线程
+        EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
+    private final LinkedList<Bitmap> mPool = new LinkedList<>();
+
+    /**
+     * 异步解码照片
+     *
+     * @param jpeg      相机输出的 JPEG 数据
+     * @param reqWidth  旋转为正向后需要的宽度, 解码后的宽度不小于该值, 0 表示不缩小
+     * @param reqHeight 旋转为正向后需要的高度, 解码后的高度不小于该值, 0 表示不缩小
+     * @param callback  主线程回调
+     */
+    void decode(@NonNull final byte[] jpeg, final int reqWidth, final int reqHeight,
+                @NonNull final Callback callback) {
+        EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                Bitmap picture = null;
+                Throwable error = null;
+                try {
+                    picture = decodeInternal(jpeg, reqWidth, reqHeight);
+                } catch (Throwable e) {
+                    error = e;
+                }
+                final Bitmap result = picture;
+                final Throwable failure = error;
+                MAIN_HANDLER.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (result != null) {
+                            callback.onDecoded(result);
+                        } else {
+                            callback.onFailed(failure);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * 归还不再使用的照片, 用于下次解码时复用
+     */
+    synchronized void release(@Nullable Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled() || !bitmap.isMutable()) {
+            return;
+        }
+        if (mPool.contains(bitmap)) {
+            return;
+        }
+        mPool.addLast(bitmap);
+        // 超出上限时淘汰最早放入的 Bitmap
+        while (mPool.size() > MAX_POOL_SIZE) {
+            mPool.removeFirst().recycle();
+        }
+    }
+
+    /**
+     * 清空复用的 Bitmap
+     */
+    synchronized void clear() {
+        for (Bitmap bitmap : mPool) {
+            bitmap.recycle();
+        }
+        mPool.clear();
+    }
+
+    private Bitmap decodeInternal(byte[] jpeg, int reqWidth, int reqHeight) throws IOException {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(jpeg, 0, jpeg.length, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            throw new IOException("Decode picture bounds failed.");
+        }
+        // 部分设备直接旋转像素, 部分设备仅写入 EXIF 方向, 以 EXIF 为准
+        int angle = readExifAngle(jpeg);
+        boolean swap = angle % 180 != 0;
+        int sampleSize = calculateSampleSize(
+                swap ? options.outHeight : options.outWidth,
+                swap ? options.outWidth : options.outHeight,
+                reqWidth, reqHeight
+        );
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        options.inMutable = true;
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        // 采样后的尺寸以解码器的向上取整为准, 按上限申请
+        options.inBitmap = obtain(ceilDiv(options.outWidth, sampleSize), ceilDiv(options.outHeight, sampleSize));
+        Bitmap decoded;
+        try {
+            decoded = BitmapFactory.decodeByteArray(jpeg, 0, jpeg.length, options);
+        } catch (IllegalArgumentException e) {
+            // inBitmap 无法复用, 重新申请
+            release(options.inBitmap);
+            options.inBitmap = null;
+            decoded = BitmapFactory.decodeByteArray(jpeg, 0, jpeg.length, options);
+        }
+        if (decoded == null) {
+            throw new IOException("Decode picture failed.");
+        }
+        if (angle == 0) {
+            return decoded;
+        }
+        int width = decoded.getWidth();
+        int height = decoded.getHeight();
+        int dstWidth = swap ? height : width;
+        int dstHeight = swap ? width : height;
+        Bitmap rotated = obtain(dstWidth, dstHeight);
+        if (rotated == null) {
+            rotated = Bitmap.createBitmap(dstWidth, dstHeight, Bitmap.Config.ARGB_8888);
+        }
+        Matrix matrix = new Matrix();
+        matrix.setRotate(angle, width / 2f, height / 2f);
+        matrix.postTranslate((dstWidth - width) / 2f, (dstHeight - height) / 2f);
+        new Canvas(rotated).drawBitmap(decoded, matrix, null);
+        release(decoded);
+        return rotated;
+    }
+
+    /**
+     * 计算 2 的幂次的采样率, 保证采样后的宽高均不小于需要的尺寸
+     */
+    private static int calculateSampleSize(int width, int height, int reqWidth, int reqHeight) {
+        int sampleSize = 1;
+        if (reqWidth <= 0 || reqHeight <= 0) {
+            return sampleSize;
+        }
+        while (width / (sampleSize * 2) >= reqWidth && height / (sampleSize * 2) >= reqHeight) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    private static int ceilDiv(int value, int divisor) {
+        return (value + divisor - 1) / divisor;
+    }
+
+    /**
+     * 从池中获取一个可容纳指定尺寸的 Bitmap
+     */
+    @Nullable
+    private synchronized Bitmap obtain(int width, int height) {
+        long required = (long) width * height * 4;
+        Iterator<Bitmap> iterator = mPool.iterator();
+        while (iterator.hasNext()) {
+            Bitmap bitmap = iterator.next();
+            if (bitmap.getAllocationByteCount() >= required) {
+                iterator.remove();
+                bitmap.reconfigure(width, height, Bitmap.Config.ARGB_8888);
+                return bitmap;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 解析 JPEG 中 APP1 段的方向标签
+     *
+     * @return 顺时针旋转的角度
+     */
+    private static int readExifAngle(byte[] jpeg) {
+        ByteBuffer buffer = ByteBuffer.wrap(jpeg).order(ByteOrder.BIG_ENDIAN);
+        int position = 2;
+        while (position + 4 <= jpeg.length && (jpeg[position] & 0xFF) == 0xFF) {
+            int type = jpeg[position + 1] & 0xFF;
+            // 读到图像数据仍未找到 EXIF
+            if (type == 0xDA || type == 0xD9) {
+                break;
+            }
+            int length = buffer.getShort(position + 2) & 0xFFFF;
+            if (type == 0xE1) {
+                return readOrientation(buffer, position + 4, Math.min(position + 2 + length, jpeg.length));
+            }
+            position += 2 + length;
+        }
+        return 0;
+    }
+
+    private static int readOrientation(ByteBuffer buffer, int start, int end) {
+        // "Exif\0\0" 之后为 TIFF 头
+        int tiff = start + 6;
+        if (tiff + 8 > end || buffer.getInt(start) != 0x45786966) {
+            return 0;
+        }
+        short byteOrder = buffer.getShort(tiff);
+        ByteBuffer segment = buffer.duplicate().order(
+                byteOrder == 0x4949 ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+        long ifd = tiff + (segment.getInt(tiff + 4) & 0xFFFFFFFFL);
+        if (ifd + 2 > end) {
+            return 0;
+        }
+        int count = segment.getShort((int) ifd) & 0xFFFF;
+        for (int i = 0; i < count; i++) {
+            int entry = (int) ifd + 2 + i * 12;
+            if (entry + 12 > end) {
+                break;
+            }
+            if ((segment.getShort(entry) & 0xFFFF) == EXIF_TAG_ORIENTATION) {
+                switch (segment.getShort(entry + 8) & 0xFFFF) {
+                    case 3:
+                        return 180;
+                    case 6:
+                        return 90;
+                    case 8:
+                        return 270;
+                    default:
+                        return 0;
+                }
+            }
+        }
+        return 0;
+    }
+
+    interface Callback {
+
+        @MainThread
+        void onDecoded(@NonNull Bitmap picture);
+
+        @MainThread
+        void onFailed(@NonNull Throwable e);
+
+    }
+
+}